@@ -0,0 +1,234 @@
+package cn.faury.android.library.common.helper;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * 二进制日志编码，只在日志文件写入线程中使用
+ * <p>
+ * 每条记录以类型字节开头：
+ * <ul>
+ * <li>{@link #TYPE_STRING}：字典项，varint编号 + 字符串</li>
+ * <li>{@link #TYPE_TIME}：时间基准，varint毫秒时间戳</li>
+ * <li>{@link #TYPE_LOG}：日志，级别字节 + varint时间增量 + 线程 + tag + 标志字节 +
+ * （格式 + varint参数个数 + 参数）或消息 + 可选的异常堆栈</li>
+ * <li>{@link #TYPE_DROPPED}：丢弃的日志条数</li>
+ * </ul>
+ * 线程名、tag及格式以引用写入：varint 0后跟内联字符串，或字典编号+1；字符串为varint字节数 + UTF-8。
+ * 字典编号从0开始递增，在每个文件内有效；重新定义编号0表示字典重新开始（文件轮转或重新打开已有文件后）
+ */
+
+final class BinaryLogWriter {
+
+    static final int TYPE_STRING = 1;
+    static final int TYPE_TIME = 2;
+    static final int TYPE_LOG = 3;
+    static final int TYPE_DROPPED = 4;
+
+    static final int FLAG_PATTERN = 1;
+    static final int FLAG_THROWABLE = 2;
+
+    static final int ARG_NULL = 0;
+    static final int ARG_LONG = 1;
+    static final int ARG_DOUBLE = 2;
+    static final int ARG_STRING = 3;
+    static final int ARG_TRUE = 4;
+    static final int ARG_FALSE = 5;
+
+    /**
+     * 单个文件字典最大条数
+     */
+    private static final int MAX_DICTIONARY_SIZE = 4096;
+
+    /**
+     * 超过该长度的字符串不放入字典
+     */
+    private static final int MAX_INTERN_LENGTH = 256;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final HashMap<String, Integer> dictionary = new HashMap<>();
+    private long lastTime = -1;
+
+    /**
+     * 最近一次编码新增的字典项及编码前的时间基准，记录未写入时用于撤销
+     */
+    private final ArrayList<String> added = new ArrayList<>();
+    private long savedTime = -1;
+    private byte[] buffer = new byte[512];
+    private int length = 0;
+
+    /**
+     * 开始新文件时重置字典及时间基准
+     */
+    void reset() {
+        dictionary.clear();
+        added.clear();
+        lastTime = -1;
+        savedTime = -1;
+    }
+
+    /**
+     * 撤销最近一次{@link #encode}对字典及时间基准的修改，编码结果未写入文件时调用，
+     * 否则之后的记录会引用文件中不存在的字典项
+     */
+    void rollback() {
+        for (String s : added) {
+            dictionary.remove(s);
+        }
+        added.clear();
+        lastTime = savedTime;
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int length() {
+        return length;
+    }
+
+    /**
+     * 编码一条日志，结果通过{@link #buffer()}及{@link #length()}获取；未写入文件时需调用{@link #rollback()}
+     *
+     * @param level      日志级别
+     * @param time       时间戳
+     * @param thread     线程名
+     * @param tag        标签
+     * @param pattern    格式，为null时使用msg
+     * @param args       参数
+     * @param msg        消息
+     * @param stackTrace 异常堆栈，可为null
+     */
+    void encode(int level, long time, String thread, String tag, String pattern, Object[] args, String msg, String stackTrace) {
+        length = 0;
+        added.clear();
+        savedTime = lastTime;
+        // 先写入新的字典项，再写日志记录
+        int threadRef = intern(thread);
+        int tagRef = intern(tag);
+        int patternRef = pattern == null ? 0 : intern(pattern);
+        if (lastTime < 0 || time < lastTime) {
+            writeByte(TYPE_TIME);
+            writeVarLong(time);
+            lastTime = time;
+        }
+        writeByte(TYPE_LOG);
+        writeByte(level);
+        writeVarLong(time - lastTime);
+        lastTime = time;
+        writeRef(threadRef, thread);
+        writeRef(tagRef, tag);
+        writeByte((pattern != null ? FLAG_PATTERN : 0) | (stackTrace != null ? FLAG_THROWABLE : 0));
+        if (pattern != null) {
+            writeRef(patternRef, pattern);
+            int count = args == null ? 0 : args.length;
+            writeVarLong(count);
+            for (int i = 0; i < count; i++) {
+                writeArg(args[i]);
+            }
+        } else {
+            writeString(msg);
+        }
+        if (stackTrace != null) {
+            writeString(stackTrace);
+        }
+    }
+
+    /**
+     * 编码丢弃条数
+     *
+     * @param count 条数
+     */
+    void encodeDropped(long count) {
+        length = 0;
+        added.clear();
+        savedTime = lastTime;
+        writeByte(TYPE_DROPPED);
+        writeVarLong(count);
+    }
+
+    // 查找或添加字典项，返回编号+1，不放入字典时返回0
+    private int intern(String s) {
+        if (s == null || s.length() > MAX_INTERN_LENGTH) {
+            return 0;
+        }
+        Integer id = dictionary.get(s);
+        if (id != null) {
+            return id + 1;
+        }
+        if (dictionary.size() >= MAX_DICTIONARY_SIZE) {
+            return 0;
+        }
+        int newId = dictionary.size();
+        dictionary.put(s, newId);
+        added.add(s);
+        writeByte(TYPE_STRING);
+        writeVarLong(newId);
+        writeString(s);
+        return newId + 1;
+    }
+
+    private void writeRef(int ref, String s) {
+        writeVarLong(ref);
+        if (ref == 0) {
+            writeString(s);
+        }
+    }
+
+    private void writeArg(Object arg) {
+        if (arg == null) {
+            writeByte(ARG_NULL);
+        } else if (arg instanceof Integer || arg instanceof Long || arg instanceof Short || arg instanceof Byte) {
+            long value = ((Number) arg).longValue();
+            writeByte(ARG_LONG);
+            writeVarLong((value << 1) ^ (value >> 63));
+        } else if (arg instanceof Double || arg instanceof Float) {
+            long bits = Double.doubleToLongBits(((Number) arg).doubleValue());
+            writeByte(ARG_DOUBLE);
+            ensure(8);
+            for (int i = 56; i >= 0; i -= 8) {
+                buffer[length++] = (byte) (bits >>> i);
+            }
+        } else if (arg instanceof Boolean) {
+            writeByte((Boolean) arg ? ARG_TRUE : ARG_FALSE);
+        } else {
+            writeByte(ARG_STRING);
+            writeString(arg.toString());
+        }
+    }
+
+    private void writeString(String s) {
+        if (s == null) {
+            s = "null";
+        }
+        byte[] bytes = s.getBytes(UTF_8);
+        writeVarLong(bytes.length);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+
+    private void writeByte(int b) {
+        ensure(1);
+        buffer[length++] = (byte) b;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, length + extra)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+    }
+}
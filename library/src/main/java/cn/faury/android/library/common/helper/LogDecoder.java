@@ -0,0 +1,276 @@
+package cn.faury.android.library.common.helper;
+
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 日志文件解码器
+ * <p>
+ * 将{@link LogFileSink}写入的二进制日志还原为与文本格式相同的日志行，文本格式的文件原样输出已写入部分。
+ * 不依赖Android，可在开发机上执行：java cn.faury.android.library.common.helper.LogDecoder f-common.blog ...
+ */
+
+public final class LogDecoder {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private LogDecoder() {
+    }
+
+    /**
+     * 依次解码日志文件并输出到标准输出
+     *
+     * @param args 日志文件路径
+     * @throws IOException 读取异常
+     */
+    public static void main(String[] args) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, UTF_8));
+        try {
+            for (String path : args) {
+                decode(new File(path), out);
+            }
+        } finally {
+            out.flush();
+        }
+    }
+
+    /**
+     * 解码日志文件
+     *
+     * @param file 日志文件
+     * @param out  输出
+     * @throws IOException 读取或格式异常
+     */
+    public static void decode(File file, Writer out) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            decode(in, out);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 解码日志流，只读取头部记录的已写入长度
+     *
+     * @param in  输入
+     * @param out 输出
+     * @throws IOException 读取或格式异常
+     */
+    public static void decode(InputStream in, Writer out) throws IOException {
+        DataInputStream input = new DataInputStream(in);
+        byte[] header = new byte[LogFileSink.HEADER_SIZE];
+        input.readFully(header);
+        String text = new String(header, UTF_8);
+        boolean binary = text.startsWith(LogFileSink.BINARY_HEADER_MAGIC);
+        if (!binary && !text.startsWith(LogFileSink.HEADER_MAGIC)) {
+            throw new IOException("not a log file");
+        }
+        int committed;
+        try {
+            committed = Integer.parseInt(text.substring(LogFileSink.HEADER_MAGIC.length(), LogFileSink.HEADER_SIZE - 1));
+        } catch (NumberFormatException e) {
+            throw new IOException("invalid log file header: " + text.trim());
+        }
+        byte[] data = new byte[Math.max(0, committed - LogFileSink.HEADER_SIZE)];
+        input.readFully(data);
+        if (binary) {
+            new Reader(data, out).run();
+        } else {
+            out.write(new String(data, UTF_8));
+        }
+    }
+
+    /**
+     * 格式化消息，格式与参数不匹配时输出格式及参数
+     *
+     * @param pattern 格式
+     * @param args    参数
+     * @return 消息
+     */
+    static String format(String pattern, Object[] args) {
+        try {
+            return String.format(pattern, args);
+        } catch (IllegalFormatException e) {
+            return pattern + " " + Arrays.toString(args);
+        }
+    }
+
+    private static char levelChar(int level) {
+        switch (level) {
+            case 2:
+                return 'V';
+            case 3:
+                return 'D';
+            case 4:
+                return 'I';
+            case 5:
+                return 'W';
+            case 6:
+                return 'E';
+            default:
+                return 'A';
+        }
+    }
+
+    /**
+     * 二进制记录读取，格式参考{@link BinaryLogWriter}
+     */
+    private static class Reader {
+        private final byte[] data;
+        private final Writer out;
+        private final List<String> dictionary = new ArrayList<>();
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+        private final Date date = new Date();
+        private final StringBuilder line = new StringBuilder(256);
+        private int pos = 0;
+        private long time = 0;
+
+        Reader(byte[] data, Writer out) {
+            this.data = data;
+            this.out = out;
+        }
+
+        void run() throws IOException {
+            while (pos < data.length) {
+                int type = readByte();
+                switch (type) {
+                    case BinaryLogWriter.TYPE_STRING:
+                        readDefinition();
+                        break;
+                    case BinaryLogWriter.TYPE_TIME:
+                        time = readVarLong();
+                        break;
+                    case BinaryLogWriter.TYPE_LOG:
+                        readLog();
+                        break;
+                    case BinaryLogWriter.TYPE_DROPPED:
+                        out.write("--- " + readVarLong() + " log records dropped ---\n");
+                        break;
+                    default:
+                        throw new IOException("unknown record type " + type + " at " + (pos - 1));
+                }
+            }
+        }
+
+        // 字典项，编号0表示字典重新开始
+        private void readDefinition() throws IOException {
+            int id = (int) readVarLong();
+            String value = readString();
+            if (id == 0) {
+                dictionary.clear();
+            }
+            if (id != dictionary.size()) {
+                throw new IOException("unexpected dictionary id " + id + " at " + pos);
+            }
+            dictionary.add(value);
+        }
+
+        private void readLog() throws IOException {
+            int level = readByte();
+            time += readVarLong();
+            String thread = readRef();
+            String tag = readRef();
+            int flags = readByte();
+            String msg;
+            if ((flags & BinaryLogWriter.FLAG_PATTERN) != 0) {
+                String pattern = readRef();
+                Object[] args = new Object[(int) readVarLong()];
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = readArg();
+                }
+                msg = format(pattern, args);
+            } else {
+                msg = readString();
+            }
+            line.setLength(0);
+            date.setTime(time);
+            line.append(dateFormat.format(date)).append(' ').append(levelChar(level)).append('/')
+                    .append(tag).append('(').append(thread).append("): ").append(msg).append('\n');
+            if ((flags & BinaryLogWriter.FLAG_THROWABLE) != 0) {
+                line.append(readString());
+            }
+            out.write(line.toString());
+        }
+
+        private Object readArg() throws IOException {
+            int type = readByte();
+            switch (type) {
+                case BinaryLogWriter.ARG_NULL:
+                    return null;
+                case BinaryLogWriter.ARG_LONG:
+                    long value = readVarLong();
+                    return (value >>> 1) ^ -(value & 1);
+                case BinaryLogWriter.ARG_DOUBLE:
+                    long bits = 0;
+                    for (int i = 0; i < 8; i++) {
+                        bits = (bits << 8) | readByte();
+                    }
+                    return Double.longBitsToDouble(bits);
+                case BinaryLogWriter.ARG_STRING:
+                    return readString();
+                case BinaryLogWriter.ARG_TRUE:
+                    return Boolean.TRUE;
+                case BinaryLogWriter.ARG_FALSE:
+                    return Boolean.FALSE;
+                default:
+                    throw new IOException("unknown argument type " + type + " at " + (pos - 1));
+            }
+        }
+
+        private String readRef() throws IOException {
+            int ref = (int) readVarLong();
+            if (ref == 0) {
+                return readString();
+            }
+            if (ref > dictionary.size()) {
+                throw new IOException("undefined dictionary id " + (ref - 1) + " at " + pos);
+            }
+            return dictionary.get(ref - 1);
+        }
+
+        private String readString() throws IOException {
+            int length = (int) readVarLong();
+            if (length < 0 || pos + length > data.length) {
+                throw new EOFException("truncated string at " + pos);
+            }
+            String value = new String(data, pos, length, UTF_8);
+            pos += length;
+            return value;
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("malformed varint at " + pos);
+        }
+
+        private int readByte() throws IOException {
+            if (pos >= data.length) {
+                throw new EOFException("truncated record at " + pos);
+            }
+            return data[pos++] & 0xFF;
+        }
+    }
+}
@@ -0,0 +1,634 @@
+package cn.faury.android.library.common.helper;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import cn.faury.android.library.common.core.FCommonGlobalConfigure;
+import cn.faury.android.library.common.util.StorageUtils;
+
+/**
+ * 日志文件输出
+ * <p>
+ * 调用线程只将日志放入无锁环形缓冲即返回，后台线程批量写入内存映射的日志文件，文件达到上限后轮转。
+ * 缓冲满时丢弃最旧的日志，并在文件中记录丢弃条数。
+ * 文件第一行记录已完整写入的长度，每批写完后更新，进程崩溃时未完整写入的部分在下次打开时被覆盖。
+ * 二进制模式（{@link #setBinary(boolean)}）下线程名、tag及格式字符串写入文件内字典，只记录编号和参数，
+ * 格式化推迟到离线解码（{@link LogDecoder}），文件更小且调用线程不做格式化。
+ * 用于{@link cn.faury.android.library.common.core.DevMode#PROD_LOG}等需要在设备上保留日志的场景，
+ * 通过{@link Logger#setFileSink(LogFileSink)}安装
+ */
+
+public final class LogFileSink {
+
+    /**
+     * 默认单个文件大小上限
+     */
+    public static final int DEFAULT_MAX_FILE_SIZE = 2 * 1024 * 1024;
+
+    /**
+     * 默认保留文件数，包括当前文件
+     */
+    public static final int DEFAULT_MAX_FILES = 5;
+
+    /**
+     * 默认缓冲条数
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * 默认写入间隔（毫秒）
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL = 500;
+
+    /**
+     * 默认文件名
+     */
+    public static final String DEFAULT_FILE_NAME = "f-common";
+
+    /**
+     * 头部行：魔数 + 10位已写入长度 + 换行，文本及二进制格式魔数长度相同
+     */
+    static final String HEADER_MAGIC = "#FLOG ";
+    static final String BINARY_HEADER_MAGIC = "#FLGB ";
+    static final int HEADER_SIZE = HEADER_MAGIC.length() + 10 + 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String TAG = FCommonGlobalConfigure.TAG + " - LogFileSink";
+
+    private final File dir;
+    private final String name;
+    private int maxFileSize = DEFAULT_MAX_FILE_SIZE;
+    private int maxFiles = DEFAULT_MAX_FILES;
+    private int level = Logger.LEVEL.INFO;
+    private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+    private boolean binary = false;
+
+    private AtomicReferenceArray<Record> ring;
+    private int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head = 0;
+    private volatile boolean running = false;
+    private Thread writer;
+
+    // 以下字段只在写入线程中访问
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private int committed;
+    private long dropped = 0;
+    private boolean forceAfterBatch = false;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+    private final Date date = new Date();
+    private final StringBuilder line = new StringBuilder(256);
+    private final BinaryLogWriter encoder = new BinaryLogWriter();
+
+    /**
+     * 构造函数，日志保存在包存储路径的{@link FCommonGlobalConfigure#DIR_LOG}目录下
+     *
+     * @param context 上下文
+     */
+    public LogFileSink(Context context) {
+        this(new File(StorageUtils.getStoragePackageDir(context), FCommonGlobalConfigure.DIR_LOG), DEFAULT_FILE_NAME);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param dir  日志目录
+     * @param name 文件名，不含扩展名
+     */
+    public LogFileSink(File dir, String name) {
+        this.dir = dir;
+        this.name = name;
+        setCapacity(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * 设置单个文件大小上限，启动前设置有效
+     *
+     * @param maxFileSize 字节数
+     * @return 当前对象
+     */
+    public LogFileSink setMaxFileSize(int maxFileSize) {
+        this.maxFileSize = Math.max(HEADER_SIZE + 4096, maxFileSize);
+        return this;
+    }
+
+    /**
+     * 设置保留文件数，包括当前文件
+     *
+     * @param maxFiles 文件数
+     * @return 当前对象
+     */
+    public LogFileSink setMaxFiles(int maxFiles) {
+        this.maxFiles = Math.max(1, maxFiles);
+        return this;
+    }
+
+    /**
+     * 设置缓冲条数，向上取整为2的幂，启动前设置有效
+     *
+     * @param capacity 缓冲条数
+     * @return 当前对象
+     */
+    public LogFileSink setCapacity(int capacity) {
+        int size = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        return this;
+    }
+
+    /**
+     * 设置写入间隔，ERROR及以上级别的日志立即写入
+     *
+     * @param flushInterval 间隔（毫秒）
+     * @return 当前对象
+     */
+    public LogFileSink setFlushInterval(long flushInterval) {
+        this.flushInterval = Math.max(10, flushInterval);
+        return this;
+    }
+
+    /**
+     * 设置写入文件的最低日志级别，与logcat的级别{@link Logger#setLevel(int)}相互独立
+     *
+     * @param level 日志级别，参考{@link Logger.LEVEL}
+     * @return 当前对象
+     */
+    public LogFileSink setLevel(int level) {
+        this.level = level;
+        return this;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * 设置是否以二进制格式写入，启动前设置有效，文件扩展名为.blog，需通过{@link LogDecoder}解码查看
+     *
+     * @param binary 是否二进制格式
+     * @return 当前对象
+     */
+    public LogFileSink setBinary(boolean binary) {
+        if (!running) {
+            this.binary = binary;
+        }
+        return this;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * 该级别的日志是否会写入文件
+     *
+     * @param level 日志级别
+     * @return 是否写入
+     */
+    public boolean isLoggable(int level) {
+        return level >= this.level && running;
+    }
+
+    /**
+     * 获取当前日志文件
+     *
+     * @return 日志文件
+     */
+    public File getFile() {
+        return getFile(0);
+    }
+
+    // 获取第index个日志文件，0为当前文件
+    private File getFile(int index) {
+        String ext = binary ? ".blog" : ".log";
+        return new File(dir, index == 0 ? name + ext : name + "." + index + ext);
+    }
+
+    /**
+     * 启动后台写入线程
+     *
+     * @return 当前对象
+     */
+    public synchronized LogFileSink start() {
+        if (!running) {
+            running = true;
+            writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    loop();
+                }
+            }, "log-file-sink");
+            writer.setDaemon(true);
+            writer.setPriority(Thread.MIN_PRIORITY);
+            writer.start();
+        }
+        return this;
+    }
+
+    /**
+     * 写入剩余日志并停止后台线程
+     */
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 等待已记录的日志写入文件
+     *
+     * @param timeoutMillis 最长等待时间（毫秒）
+     * @return 是否全部写入
+     */
+    public boolean flush(long timeoutMillis) {
+        long target = tail.get();
+        Thread thread = writer;
+        if (thread == null) {
+            return false;
+        }
+        LockSupport.unpark(thread);
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (head < target && running && System.currentTimeMillis() < deadline) {
+            LockSupport.parkNanos(1000000L);
+        }
+        return head >= target;
+    }
+
+    /**
+     * 记录日志，不阻塞，缓冲满时覆盖最旧的日志
+     *
+     * @param level 日志级别
+     * @param tag   标签
+     * @param msg   消息
+     * @param tr    异常，可为null
+     */
+    public void append(int level, String tag, String msg, Throwable tr) {
+        if (level < this.level || !running) {
+            return;
+        }
+        publish(new Record(level, System.currentTimeMillis(), Thread.currentThread().getName(), tag, msg, tr));
+    }
+
+    /**
+     * 记录未格式化的日志，二进制模式下由写入线程记录格式及参数，文本模式下由写入线程格式化
+     * <p>
+     * 数值、布尔及字符串参数原样保存，其他参数在调用线程转换为字符串，避免写入时对象已被修改
+     *
+     * @param level   日志级别
+     * @param tag     标签
+     * @param pattern 格式，参考{@link String#format(String, Object...)}
+     * @param args    参数
+     */
+    void appendFormat(int level, String tag, String pattern, Object[] args) {
+        if (level < this.level || !running) {
+            return;
+        }
+        Object[] values = new Object[args == null ? 0 : args.length];
+        for (int i = 0; i < values.length; i++) {
+            Object arg = args[i];
+            values[i] = arg == null || arg instanceof String || arg instanceof Number || arg instanceof Boolean
+                    ? arg : String.valueOf(arg);
+        }
+        Record record = new Record(level, System.currentTimeMillis(), Thread.currentThread().getName(), tag, null, null);
+        record.pattern = pattern;
+        record.args = values;
+        publish(record);
+    }
+
+    // 放入环形缓冲，ERROR及以上级别唤醒写入线程
+    private void publish(Record record) {
+        long seq = tail.getAndIncrement();
+        record.seq = seq;
+        int index = (int) (seq & mask);
+        // 槽位中的序号只增不减：较慢的调用线程不能覆盖已写入的更新的日志，否则写入线程会一直等待被覆盖的序号；
+        // 放弃写入的日志由写入线程按序号计入丢弃条数
+        while (true) {
+            Record current = ring.get(index);
+            if (current != null && current.seq > seq) {
+                return;
+            }
+            if (ring.compareAndSet(index, current, record)) {
+                break;
+            }
+        }
+        if (record.level >= Logger.LEVEL.ERROR) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    // 写入线程主循环
+    private void loop() {
+        try {
+            open();
+        } catch (IOException e) {
+            Log.e(TAG, "open log file exception", e);
+            running = false;
+            return;
+        }
+        while (running) {
+            if (!drain()) {
+                LockSupport.parkNanos(flushInterval * 1000000L);
+            }
+        }
+        drain();
+        finish();
+    }
+
+    // 取出并写入缓冲中已发布的日志，返回是否写入了日志
+    private boolean drain() {
+        long read = head;
+        long end = tail.get();
+        int capacity = mask + 1;
+        if (end - read > capacity) {
+            // 已被覆盖的日志
+            dropped += end - read - capacity;
+            read = end - capacity;
+        }
+        boolean wrote = false;
+        while (read < end) {
+            int index = (int) (read & mask);
+            Record record = ring.get(index);
+            if (record == null || record.seq < read) {
+                // 已分配序号但尚未写入缓冲
+                break;
+            }
+            if (record.seq > read) {
+                dropped++;
+                read++;
+                continue;
+            }
+            ring.compareAndSet(index, record, null);
+            if (dropped > 0) {
+                writeDropped();
+            }
+            write(record);
+            wrote = true;
+            read++;
+        }
+        head = read;
+        if (wrote) {
+            commit();
+        }
+        return wrote;
+    }
+
+    // 格式化并写入一条日志
+    private void write(Record record) {
+        if (record.level >= Logger.LEVEL.ERROR) {
+            forceAfterBatch = true;
+        }
+        String stackTrace = null;
+        if (record.tr != null) {
+            StringWriter sw = new StringWriter();
+            record.tr.printStackTrace(new PrintWriter(sw));
+            stackTrace = sw.toString();
+        }
+        if (binary) {
+            encoder.encode(record.level, record.time, record.thread, record.tag, record.pattern, record.args, record.msg, stackTrace);
+            if (!fits(encoder.length())) {
+                // 新文件的字典为空，需要重新编码
+                rotate();
+                encoder.encode(record.level, record.time, record.thread, record.tag, record.pattern, record.args, record.msg, stackTrace);
+            }
+            writeBinary();
+            return;
+        }
+        line.setLength(0);
+        date.setTime(record.time);
+        line.append(dateFormat.format(date)).append(' ').append(levelChar(record.level)).append('/')
+                .append(record.tag).append('(').append(record.thread).append("): ")
+                .append(record.msg != null || record.pattern == null ? record.msg : LogDecoder.format(record.pattern, record.args))
+                .append('\n');
+        if (stackTrace != null) {
+            line.append(stackTrace);
+        }
+        writeBytes(line.toString().getBytes(UTF_8));
+    }
+
+    // 记录丢弃条数
+    private void writeDropped() {
+        long count = dropped;
+        dropped = 0;
+        if (binary) {
+            encoder.encodeDropped(count);
+            if (!fits(encoder.length())) {
+                rotate();
+            }
+            writeBinary();
+            return;
+        }
+        writeBytes(("--- " + count + " log records dropped ---\n").getBytes(UTF_8));
+    }
+
+    // 当前文件剩余空间是否足够
+    private boolean fits(int length) {
+        return committed + length <= maxFileSize;
+    }
+
+    // 写入编码后的二进制记录，超过单个文件大小的记录无法截断，只记为丢弃并撤销其字典项及时间基准
+    private void writeBinary() {
+        int length = encoder.length();
+        if (mapped == null || !fits(length)) {
+            encoder.rollback();
+            dropped++;
+            return;
+        }
+        mapped.position(committed);
+        mapped.put(encoder.buffer(), 0, length);
+        committed += length;
+    }
+
+    // 写入字节，空间不足时轮转文件
+    private void writeBytes(byte[] bytes) {
+        if (mapped == null) {
+            return;
+        }
+        int length = Math.min(bytes.length, maxFileSize - HEADER_SIZE);
+        if (!fits(length)) {
+            rotate();
+            if (mapped == null) {
+                return;
+            }
+        }
+        mapped.position(committed);
+        mapped.put(bytes, 0, length);
+        committed += length;
+    }
+
+    // 更新头部记录的已写入长度，ERROR日志写入后同步到磁盘
+    private void commit() {
+        if (mapped == null) {
+            return;
+        }
+        writeHeader();
+        if (forceAfterBatch) {
+            forceAfterBatch = false;
+            mapped.force();
+        }
+    }
+
+    private void writeHeader() {
+        String header = (binary ? BINARY_HEADER_MAGIC : HEADER_MAGIC) + String.format(Locale.US, "%010d", committed) + "\n";
+        mapped.position(0);
+        mapped.put(header.getBytes(UTF_8));
+    }
+
+    // 打开当前文件，从头部记录的长度继续写入，二进制文件的字典从编号0重新开始
+    private void open() throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("create log dir failed: " + dir);
+        }
+        File current = getFile();
+        file = new RandomAccessFile(current, "rw");
+        channel = file.getChannel();
+        committed = HEADER_SIZE;
+        long size = file.length();
+        if (size >= HEADER_SIZE) {
+            byte[] header = new byte[HEADER_SIZE];
+            file.seek(0);
+            file.readFully(header);
+            String text = new String(header, UTF_8);
+            if (text.startsWith(binary ? BINARY_HEADER_MAGIC : HEADER_MAGIC)) {
+                try {
+                    committed = Math.max(HEADER_SIZE, Integer.parseInt(text.substring(HEADER_MAGIC.length(), HEADER_SIZE - 1)));
+                } catch (NumberFormatException e) {
+                    committed = HEADER_SIZE;
+                }
+            }
+        }
+        if (committed >= maxFileSize) {
+            closeFile();
+            rotateFiles();
+            open();
+            return;
+        }
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, maxFileSize);
+        encoder.reset();
+        writeHeader();
+    }
+
+    // 轮转文件：当前文件截断到已写入长度后依次重命名
+    private void rotate() {
+        closeFile();
+        rotateFiles();
+        try {
+            open();
+        } catch (IOException e) {
+            Log.e(TAG, "rotate log file exception", e);
+            mapped = null;
+        }
+    }
+
+    private void rotateFiles() {
+        File oldest = getFile(maxFiles - 1);
+        if (oldest.exists() && !oldest.delete()) {
+            Log.w(TAG, "delete log file failed: " + oldest);
+        }
+        for (int i = maxFiles - 2; i >= 0; i--) {
+            File from = getFile(i);
+            if (from.exists() && !from.renameTo(getFile(i + 1))) {
+                Log.w(TAG, "rename log file failed: " + from);
+            }
+        }
+    }
+
+    // 关闭当前文件并截断未使用的部分
+    private void closeFile() {
+        try {
+            if (mapped != null) {
+                writeHeader();
+                mapped.force();
+                mapped = null;
+            }
+            if (channel != null) {
+                channel.truncate(committed);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "truncate log file exception", e);
+        }
+        try {
+            if (file != null) {
+                file.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "close log file exception", e);
+        }
+        file = null;
+        channel = null;
+    }
+
+    // 停止时关闭文件
+    private void finish() {
+        if (dropped > 0) {
+            writeDropped();
+            commit();
+        }
+        closeFile();
+    }
+
+    private static char levelChar(int level) {
+        switch (level) {
+            case Logger.LEVEL.VERBOSE:
+                return 'V';
+            case Logger.LEVEL.DEBUG:
+                return 'D';
+            case Logger.LEVEL.INFO:
+                return 'I';
+            case Logger.LEVEL.WARN:
+                return 'W';
+            case Logger.LEVEL.ERROR:
+                return 'E';
+            default:
+                return 'A';
+        }
+    }
+
+    /**
+     * 缓冲中的一条日志
+     */
+    private static class Record {
+        final int level;
+        final long time;
+        final String thread;
+        final String tag;
+        final String msg;
+        final Throwable tr;
+        String pattern;
+        Object[] args;
+        long seq;
+
+        Record(int level, long time, String thread, String tag, String msg, Throwable tr) {
+            this.level = level;
+            this.time = time;
+            this.thread = thread;
+            this.tag = tag;
+            this.msg = msg;
+            this.tr = tr;
+        }
+    }
+}
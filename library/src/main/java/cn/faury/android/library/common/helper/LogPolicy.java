@@ -0,0 +1,144 @@
+package cn.faury.android.library.common.helper;
+
+import java.util.Arrays;
+
+import cn.faury.android.library.common.core.DevMode;
+
+/**
+ * 日志限流策略
+ * <p>
+ * 每个tag一个令牌桶，超过速率的日志被丢弃；WARN以下级别的日志可按比例随机采样。
+ * 被丢弃的条数按tag累计，每隔一段时间以被丢弃日志中的最高级别输出一条汇总，通过{@link Logger#setPolicy(LogPolicy)}安装
+ */
+
+public class LogPolicy {
+
+    /**
+     * 默认汇总间隔（毫秒）
+     */
+    public static final long DEFAULT_SUMMARY_INTERVAL = 60 * 1000;
+
+    private final double[] sampleRates = new double[Logger.LEVEL.ASSERT + 1];
+    private double ratePerSecond = 0;
+    private int burst = 0;
+    private long summaryInterval = DEFAULT_SUMMARY_INTERVAL;
+
+    public LogPolicy() {
+        Arrays.fill(sampleRates, 1.0);
+    }
+
+    /**
+     * 获取开发模式对应的默认策略
+     * <ul>
+     * <li>DEV：不限流、不采样</li>
+     * <li>TEST：每个tag每秒50条，突发200条</li>
+     * <li>PROD_LOG：每个tag每秒20条，突发50条，VERBOSE采样10%，DEBUG采样50%</li>
+     * <li>PROD：每个tag每秒10条，突发20条，VERBOSE、DEBUG采样1%，INFO采样10%</li>
+     * </ul>
+     *
+     * @param mode 开发模式
+     * @return 策略
+     */
+    public static LogPolicy forMode(DevMode mode) {
+        LogPolicy policy = new LogPolicy();
+        if (mode == null) {
+            return policy;
+        }
+        switch (mode) {
+            case TEST:
+                policy.setRateLimit(50, 200);
+                break;
+            case PROD_LOG:
+                policy.setRateLimit(20, 50)
+                        .setSampleRate(Logger.LEVEL.VERBOSE, 0.1)
+                        .setSampleRate(Logger.LEVEL.DEBUG, 0.5);
+                break;
+            case PROD:
+                policy.setRateLimit(10, 20)
+                        .setSampleRate(Logger.LEVEL.VERBOSE, 0.01)
+                        .setSampleRate(Logger.LEVEL.DEBUG, 0.01)
+                        .setSampleRate(Logger.LEVEL.INFO, 0.1);
+                break;
+            default:
+                break;
+        }
+        return policy;
+    }
+
+    /**
+     * 设置采样比例，只对WARN以下级别生效
+     *
+     * @param level 日志级别，参考{@link Logger.LEVEL}
+     * @param rate  输出比例，0~1
+     * @return 当前策略
+     */
+    public LogPolicy setSampleRate(int level, double rate) {
+        if (level >= 0 && level < Logger.LEVEL.WARN) {
+            sampleRates[level] = Math.max(0, Math.min(1, rate));
+        }
+        return this;
+    }
+
+    /**
+     * 获取采样比例
+     *
+     * @param level 日志级别
+     * @return 输出比例，WARN及以上级别总是1
+     */
+    public double getSampleRate(int level) {
+        return level >= 0 && level < Logger.LEVEL.WARN ? sampleRates[level] : 1.0;
+    }
+
+    /**
+     * 设置每个tag的速率限制，ASSERT级别不限制
+     *
+     * @param ratePerSecond 每秒条数，小于等于0表示不限制
+     * @param burst         突发条数
+     * @return 当前策略
+     */
+    public LogPolicy setRateLimit(double ratePerSecond, int burst) {
+        this.ratePerSecond = Math.max(0, ratePerSecond);
+        this.burst = Math.max(1, burst);
+        return this;
+    }
+
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    /**
+     * 设置被丢弃日志的汇总间隔
+     *
+     * @param summaryInterval 间隔（毫秒）
+     * @return 当前策略
+     */
+    public LogPolicy setSummaryInterval(long summaryInterval) {
+        this.summaryInterval = Math.max(1000, summaryInterval);
+        return this;
+    }
+
+    public long getSummaryInterval() {
+        return summaryInterval;
+    }
+
+    /**
+     * 是否需要限流或采样
+     *
+     * @return 是否不做任何限制
+     */
+    public boolean isUnlimited() {
+        if (ratePerSecond > 0) {
+            return false;
+        }
+        for (double rate : sampleRates) {
+            if (rate < 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
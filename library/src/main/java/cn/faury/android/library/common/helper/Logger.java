@@ -2,8 +2,23 @@ package cn.faury.android.library.common.helper;
 
 import android.util.Log;
 
+import java.util.Arrays;
+import java.util.Formattable;
+import java.util.IllegalFormatException;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cn.faury.android.library.common.core.DevMode;
+
 /**
  * 自定义日志辅助器
+ * <p>
+ * 带参数的重载方法在级别开启后才格式化消息，%s及整数的%d直接写入线程内复用的缓冲，不经过String.format；
+ * 基本类型参数在调用时仍会装箱，热点代码或需要计算参数时先用{@link #isLoggable(int)}判断。
+ * 日志文件为二进制格式（{@link LogFileSink#setBinary(boolean)}）时，写入文件的带参数日志只记录格式及参数，不在调用线程格式化。
+ * 安装{@link LogPolicy}后按tag限流及采样，被丢弃的日志定期汇总输出；{@link #event(int, String, String, Object...)}输出键值对形式的结构化日志
  */
 
 public final class Logger {
@@ -54,6 +69,80 @@ public final class Logger {
      */
     public static String prefix = "【Logger-%s】%s";
 
+    /**
+     * 线程内复用的格式化缓冲最大容量，超过后丢弃
+     */
+    private static final int MAX_BUFFER_CAPACITY = 4096;
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator", "\n");
+
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    /**
+     * 日志文件输出
+     */
+    private static volatile LogFileSink fileSink;
+
+    /**
+     * 设置日志文件输出，null表示不写入文件；写入文件的级别由{@link LogFileSink#setLevel(int)}单独设置
+     *
+     * @param sink 日志文件输出，需已调用{@link LogFileSink#start()}
+     */
+    public static void setFileSink(LogFileSink sink) {
+        fileSink = sink;
+    }
+
+    public static LogFileSink getFileSink() {
+        return fileSink;
+    }
+
+    /**
+     * 限流策略，null表示不限流
+     */
+    private static volatile LogPolicy policy;
+
+    /**
+     * 各tag的限流状态
+     */
+    private static final ConcurrentHashMap<String, TagLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    /**
+     * 下次汇总被丢弃日志的时间
+     */
+    private static final AtomicLong NEXT_SUMMARY = new AtomicLong();
+
+    private static final Random RANDOM = new Random();
+
+    /**
+     * 设置限流策略
+     *
+     * @param logPolicy 限流策略，null表示不限流
+     */
+    public static void setPolicy(LogPolicy logPolicy) {
+        summarizeSuppressed();
+        LIMITERS.clear();
+        policy = logPolicy == null || logPolicy.isUnlimited() ? null : logPolicy;
+        NEXT_SUMMARY.set(0);
+    }
+
+    public static LogPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * 按开发模式设置限流策略，参考{@link LogPolicy#forMode(DevMode)}
+     *
+     * @param mode 开发模式
+     */
+    public static void setDevMode(DevMode mode) {
+        setPolicy(LogPolicy.forMode(mode));
+    }
+
     /**
      * 日志级别
      *
@@ -82,20 +171,76 @@ public final class Logger {
      * @param msg 消息
      */
     public static void v(String tag, String msg) {
-        if (LEVEL.VERBOSE >= _level) {
-            Log.v(tag, String.format(prefix, "VERBOSE", msg));
+        if (isLoggable(LEVEL.VERBOSE) && allow(LEVEL.VERBOSE, tag)) {
+            println(LEVEL.VERBOSE, tag, msg, null);
         }
     }
 
     /**
-     * 输出输出verbose信息信息
+     * 输出verbose信息
      *
      * @param tag 标签
      * @param msg 消息
+     * @param tr  异常信息
      */
     public static void v(String tag, String msg, Throwable tr) {
-        if (LEVEL.VERBOSE >= _level) {
-            Log.v(tag, String.format(prefix, "VERBOSE", msg), tr);
+        if (isLoggable(LEVEL.VERBOSE) && allow(LEVEL.VERBOSE, tag)) {
+            println(LEVEL.VERBOSE, tag, msg, tr);
+        }
+    }
+
+    /**
+     * 输出verbose信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param arg1    参数1
+     */
+    public static void v(String tag, String pattern, Object arg1) {
+        if (isLoggable(LEVEL.VERBOSE) && allow(LEVEL.VERBOSE, tag)) {
+            printf(LEVEL.VERBOSE, tag, pattern, 1, arg1, null, null, null);
+        }
+    }
+
+    /**
+     * 输出verbose信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param arg1    参数1
+     * @param arg2    参数2
+     */
+    public static void v(String tag, String pattern, Object arg1, Object arg2) {
+        if (isLoggable(LEVEL.VERBOSE) && allow(LEVEL.VERBOSE, tag)) {
+            printf(LEVEL.VERBOSE, tag, pattern, 2, arg1, arg2, null, null);
+        }
+    }
+
+    /**
+     * 输出verbose信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param arg1    参数1
+     * @param arg2    参数2
+     * @param arg3    参数3
+     */
+    public static void v(String tag, String pattern, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(LEVEL.VERBOSE) && allow(LEVEL.VERBOSE, tag)) {
+            printf(LEVEL.VERBOSE, tag, pattern, 3, arg1, arg2, arg3, null);
+        }
+    }
+
+    /**
+     * 输出verbose信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param args    参数
+     */
+    public static void v(String tag, String pattern, Object... args) {
+        if (isLoggable(LEVEL.VERBOSE) && allow(LEVEL.VERBOSE, tag)) {
+            printf(LEVEL.VERBOSE, tag, pattern, args.length, null, null, null, args);
         }
     }
 
@@ -106,8 +251,8 @@ public final class Logger {
      * @param msg 消息
      */
     public static void d(String tag, String msg) {
-        if (LEVEL.DEBUG >= _level) {
-            Log.d(tag, String.format(prefix, "DEBUG", msg));
+        if (isLoggable(LEVEL.DEBUG) && allow(LEVEL.DEBUG, tag)) {
+            println(LEVEL.DEBUG, tag, msg, null);
         }
     }
 
@@ -119,8 +264,63 @@ public final class Logger {
      * @param tr  异常信息
      */
     public static void d(String tag, String msg, Throwable tr) {
-        if (LEVEL.DEBUG >= _level) {
-            Log.d(tag, String.format(prefix, "DEBUG", msg), tr);
+        if (isLoggable(LEVEL.DEBUG) && allow(LEVEL.DEBUG, tag)) {
+            println(LEVEL.DEBUG, tag, msg, tr);
+        }
+    }
+
+    /**
+     * 输出debug信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param arg1    参数1
+     */
+    public static void d(String tag, String pattern, Object arg1) {
+        if (isLoggable(LEVEL.DEBUG) && allow(LEVEL.DEBUG, tag)) {
+            printf(LEVEL.DEBUG, tag, pattern, 1, arg1, null, null, null);
+        }
+    }
+
+    /**
+     * 输出debug信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param arg1    参数1
+     * @param arg2    参数2
+     */
+    public static void d(String tag, String pattern, Object arg1, Object arg2) {
+        if (isLoggable(LEVEL.DEBUG) && allow(LEVEL.DEBUG, tag)) {
+            printf(LEVEL.DEBUG, tag, pattern, 2, arg1, arg2, null, null);
+        }
+    }
+
+    /**
+     * 输出debug信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param arg1    参数1
+     * @param arg2    参数2
+     * @param arg3    参数3
+     */
+    public static void d(String tag, String pattern, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(LEVEL.DEBUG) && allow(LEVEL.DEBUG, tag)) {
+            printf(LEVEL.DEBUG, tag, pattern, 3, arg1, arg2, arg3, null);
+        }
+    }
+
+    /**
+     * 输出debug信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param args    参数
+     */
+    public static void d(String tag, String pattern, Object... args) {
+        if (isLoggable(LEVEL.DEBUG) && allow(LEVEL.DEBUG, tag)) {
+            printf(LEVEL.DEBUG, tag, pattern, args.length, null, null, null, args);
         }
     }
 
@@ -131,8 +331,8 @@ public final class Logger {
      * @param msg 消息
      */
     public static void i(String tag, String msg) {
-        if (LEVEL.INFO >= _level) {
-            Log.i(tag, String.format(prefix, "INFO", msg));
+        if (isLoggable(LEVEL.INFO) && allow(LEVEL.INFO, tag)) {
+            println(LEVEL.INFO, tag, msg, null);
         }
     }
 
@@ -144,8 +344,63 @@ public final class Logger {
      * @param tr  异常信息
      */
     public static void i(String tag, String msg, Throwable tr) {
-        if (LEVEL.INFO >= _level) {
-            Log.i(tag, String.format(prefix, "INFO", msg), tr);
+        if (isLoggable(LEVEL.INFO) && allow(LEVEL.INFO, tag)) {
+            println(LEVEL.INFO, tag, msg, tr);
+        }
+    }
+
+    /**
+     * 输出info信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param arg1    参数1
+     */
+    public static void i(String tag, String pattern, Object arg1) {
+        if (isLoggable(LEVEL.INFO) && allow(LEVEL.INFO, tag)) {
+            printf(LEVEL.INFO, tag, pattern, 1, arg1, null, null, null);
+        }
+    }
+
+    /**
+     * 输出info信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param arg1    参数1
+     * @param arg2    参数2
+     */
+    public static void i(String tag, String pattern, Object arg1, Object arg2) {
+        if (isLoggable(LEVEL.INFO) && allow(LEVEL.INFO, tag)) {
+            printf(LEVEL.INFO, tag, pattern, 2, arg1, arg2, null, null);
+        }
+    }
+
+    /**
+     * 输出info信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param arg1    参数1
+     * @param arg2    参数2
+     * @param arg3    参数3
+     */
+    public static void i(String tag, String pattern, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(LEVEL.INFO) && allow(LEVEL.INFO, tag)) {
+            printf(LEVEL.INFO, tag, pattern, 3, arg1, arg2, arg3, null);
+        }
+    }
+
+    /**
+     * 输出info信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param args    参数
+     */
+    public static void i(String tag, String pattern, Object... args) {
+        if (isLoggable(LEVEL.INFO) && allow(LEVEL.INFO, tag)) {
+            printf(LEVEL.INFO, tag, pattern, args.length, null, null, null, args);
         }
     }
 
@@ -156,21 +411,76 @@ public final class Logger {
      * @param msg 消息
      */
     public static void w(String tag, String msg) {
-        if (LEVEL.WARN >= _level) {
-            Log.w(tag, String.format(prefix, "WARN", msg));
+        if (isLoggable(LEVEL.WARN) && allow(LEVEL.WARN, tag)) {
+            println(LEVEL.WARN, tag, msg, null);
         }
     }
 
     /**
-     * 输出Log.ERROR &ge; _level信息
+     * 输出warn信息
      *
      * @param tag 标签
      * @param msg 消息
      * @param tr  异常信息
      */
     public static void w(String tag, String msg, Throwable tr) {
-        if (LEVEL.WARN >= _level) {
-            Log.w(tag, String.format(prefix, "WARN", msg), tr);
+        if (isLoggable(LEVEL.WARN) && allow(LEVEL.WARN, tag)) {
+            println(LEVEL.WARN, tag, msg, tr);
+        }
+    }
+
+    /**
+     * 输出warn信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param arg1    参数1
+     */
+    public static void w(String tag, String pattern, Object arg1) {
+        if (isLoggable(LEVEL.WARN) && allow(LEVEL.WARN, tag)) {
+            printf(LEVEL.WARN, tag, pattern, 1, arg1, null, null, null);
+        }
+    }
+
+    /**
+     * 输出warn信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param arg1    参数1
+     * @param arg2    参数2
+     */
+    public static void w(String tag, String pattern, Object arg1, Object arg2) {
+        if (isLoggable(LEVEL.WARN) && allow(LEVEL.WARN, tag)) {
+            printf(LEVEL.WARN, tag, pattern, 2, arg1, arg2, null, null);
+        }
+    }
+
+    /**
+     * 输出warn信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param arg1    参数1
+     * @param arg2    参数2
+     * @param arg3    参数3
+     */
+    public static void w(String tag, String pattern, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(LEVEL.WARN) && allow(LEVEL.WARN, tag)) {
+            printf(LEVEL.WARN, tag, pattern, 3, arg1, arg2, arg3, null);
+        }
+    }
+
+    /**
+     * 输出warn信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param args    参数
+     */
+    public static void w(String tag, String pattern, Object... args) {
+        if (isLoggable(LEVEL.WARN) && allow(LEVEL.WARN, tag)) {
+            printf(LEVEL.WARN, tag, pattern, args.length, null, null, null, args);
         }
     }
 
@@ -181,8 +491,8 @@ public final class Logger {
      * @param msg 消息
      */
     public static void e(String tag, String msg) {
-        if (LEVEL.ERROR >= _level) {
-            Log.e(tag, String.format(prefix, "ERROR", msg));
+        if (isLoggable(LEVEL.ERROR) && allow(LEVEL.ERROR, tag)) {
+            println(LEVEL.ERROR, tag, msg, null);
         }
     }
 
@@ -194,8 +504,370 @@ public final class Logger {
      * @param tr  异常信息
      */
     public static void e(String tag, String msg, Throwable tr) {
-        if (LEVEL.ERROR >= _level) {
-            Log.e(tag, String.format(prefix, "ERROR", msg), tr);
+        if (isLoggable(LEVEL.ERROR) && allow(LEVEL.ERROR, tag)) {
+            println(LEVEL.ERROR, tag, msg, tr);
+        }
+    }
+
+    /**
+     * 输出error信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param arg1    参数1
+     */
+    public static void e(String tag, String pattern, Object arg1) {
+        if (isLoggable(LEVEL.ERROR) && allow(LEVEL.ERROR, tag)) {
+            printf(LEVEL.ERROR, tag, pattern, 1, arg1, null, null, null);
+        }
+    }
+
+    /**
+     * 输出error信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param arg1    参数1
+     * @param arg2    参数2
+     */
+    public static void e(String tag, String pattern, Object arg1, Object arg2) {
+        if (isLoggable(LEVEL.ERROR) && allow(LEVEL.ERROR, tag)) {
+            printf(LEVEL.ERROR, tag, pattern, 2, arg1, arg2, null, null);
+        }
+    }
+
+    /**
+     * 输出error信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param arg1    参数1
+     * @param arg2    参数2
+     * @param arg3    参数3
+     */
+    public static void e(String tag, String pattern, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(LEVEL.ERROR) && allow(LEVEL.ERROR, tag)) {
+            printf(LEVEL.ERROR, tag, pattern, 3, arg1, arg2, arg3, null);
+        }
+    }
+
+    /**
+     * 输出error信息，级别未开启时不格式化消息
+     *
+     * @param tag     标签
+     * @param pattern 消息格式，同{@link String#format(String, Object...)}
+     * @param args    参数
+     */
+    public static void e(String tag, String pattern, Object... args) {
+        if (isLoggable(LEVEL.ERROR) && allow(LEVEL.ERROR, tag)) {
+            printf(LEVEL.ERROR, tag, pattern, args.length, null, null, null, args);
+        }
+    }
+
+    /**
+     * 输出结构化日志，格式为“事件名 key1=value1 key2=value2”，含空格或引号的值加引号
+     *
+     * @param level     日志级别，参考{@link LEVEL}
+     * @param tag       标签
+     * @param name      事件名
+     * @param keyValues 交替的键和值
+     */
+    public static void event(int level, String tag, String name, Object... keyValues) {
+        if (!isLoggable(level) || !allow(level, tag)) {
+            return;
+        }
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        sb.append(name);
+        for (int i = 0; i + 1 < keyValues.length; i += 2) {
+            sb.append(' ').append(keyValues[i]).append('=');
+            appendValue(sb, keyValues[i + 1]);
+        }
+        if (keyValues.length % 2 != 0) {
+            sb.append(' ').append(keyValues[keyValues.length - 1]).append("=?");
+        }
+        String msg = sb.toString();
+        if (sb.capacity() > MAX_BUFFER_CAPACITY) {
+            BUFFER.set(new StringBuilder(256));
+        }
+        println(level, tag, msg, null);
+    }
+
+    /**
+     * 立即输出各tag被限流或采样丢弃的日志条数汇总
+     */
+    public static void summarizeSuppressed() {
+        for (Map.Entry<String, TagLimiter> entry : LIMITERS.entrySet()) {
+            TagLimiter limiter = entry.getValue();
+            long limited = limiter.limited.getAndSet(0);
+            long sampled = limiter.sampled.getAndSet(0);
+            if (limited + sampled > 0) {
+                int level = limiter.takeMaxLevel();
+                println(level, entry.getKey(), format("suppressed %d messages (rate limited %d, sampled out %d)",
+                        3, limited + sampled, limited, sampled, null), null);
+            }
+        }
+    }
+
+    // 是否通过限流及采样
+    private static boolean allow(int level, String tag) {
+        LogPolicy p = policy;
+        if (p == null || level >= LEVEL.ASSERT) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        long next = NEXT_SUMMARY.get();
+        if (now >= next && NEXT_SUMMARY.compareAndSet(next, now + p.getSummaryInterval()) && next != 0) {
+            summarizeSuppressed();
+        }
+        TagLimiter limiter = LIMITERS.get(tag);
+        if (limiter == null) {
+            TagLimiter created = new TagLimiter(p.getBurst(), now);
+            limiter = LIMITERS.putIfAbsent(tag, created);
+            if (limiter == null) {
+                limiter = created;
+            }
+        }
+        double rate = p.getSampleRate(level);
+        if (rate < 1 && RANDOM.nextDouble() >= rate) {
+            limiter.sampled.incrementAndGet();
+            limiter.suppress(level);
+            return false;
+        }
+        if (p.getRatePerSecond() > 0 && !limiter.tryAcquire(p, now)) {
+            limiter.limited.incrementAndGet();
+            limiter.suppress(level);
+            return false;
+        }
+        return true;
+    }
+
+    // 追加结构化日志的值
+    private static void appendValue(StringBuilder sb, Object value) {
+        String text = String.valueOf(value);
+        boolean quote = text.isEmpty();
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ' ' || c == '"' || c == '=' || c < 0x20;
+        }
+        if (!quote) {
+            sb.append(text);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * 指定级别的日志是否会输出到logcat或日志文件，用于在拼接复杂消息前判断
+     *
+     * @param level 日志级别，参考{@link LEVEL}
+     * @return 是否输出
+     */
+    public static boolean isLoggable(int level) {
+        if (level >= _level) {
+            return true;
+        }
+        LogFileSink sink = fileSink;
+        return sink != null && level >= sink.getLevel();
+    }
+
+    // 输出带参数的日志，日志文件为二进制格式时只记录格式及参数，不格式化
+    private static void printf(int level, String tag, String pattern, int count, Object arg1, Object arg2, Object arg3, Object[] args) {
+        LogFileSink sink = fileSink;
+        if (sink == null || !sink.isBinary() || !sink.isLoggable(level) || pattern == null) {
+            println(level, tag, format(pattern, count, arg1, arg2, arg3, args), null);
+            return;
+        }
+        if (level >= _level) {
+            println(level, tag, format(pattern, count, arg1, arg2, arg3, args), null, null);
+        }
+        Object[] values;
+        if (args != null) {
+            values = args;
+        } else if (count == 1) {
+            values = new Object[]{arg1};
+        } else if (count == 2) {
+            values = new Object[]{arg1, arg2};
+        } else {
+            values = new Object[]{arg1, arg2, arg3};
+        }
+        sink.appendFormat(level, tag, pattern, values);
+    }
+
+    // 输出到logcat及日志文件
+    private static void println(int level, String tag, String msg, Throwable tr) {
+        println(level, tag, msg, tr, fileSink);
+    }
+
+    // 输出到logcat及指定的日志文件
+    private static void println(int level, String tag, String msg, Throwable tr, LogFileSink sink) {
+        if (level >= _level) {
+            String text = format(prefix, 2, levelName(level), msg, null, null);
+            switch (level) {
+                case LEVEL.VERBOSE:
+                    if (tr == null) {
+                        Log.v(tag, text);
+                    } else {
+                        Log.v(tag, text, tr);
+                    }
+                    break;
+                case LEVEL.DEBUG:
+                    if (tr == null) {
+                        Log.d(tag, text);
+                    } else {
+                        Log.d(tag, text, tr);
+                    }
+                    break;
+                case LEVEL.INFO:
+                    if (tr == null) {
+                        Log.i(tag, text);
+                    } else {
+                        Log.i(tag, text, tr);
+                    }
+                    break;
+                case LEVEL.WARN:
+                    if (tr == null) {
+                        Log.w(tag, text);
+                    } else {
+                        Log.w(tag, text, tr);
+                    }
+                    break;
+                default:
+                    if (tr == null) {
+                        Log.e(tag, text);
+                    } else {
+                        Log.e(tag, text, tr);
+                    }
+                    break;
+            }
+        }
+        if (sink != null) {
+            sink.append(level, tag, msg, tr);
+        }
+    }
+
+    // 日志级别名称
+    private static String levelName(int level) {
+        switch (level) {
+            case LEVEL.VERBOSE:
+                return "VERBOSE";
+            case LEVEL.DEBUG:
+                return "DEBUG";
+            case LEVEL.INFO:
+                return "INFO";
+            case LEVEL.WARN:
+                return "WARN";
+            default:
+                return "ERROR";
+        }
+    }
+
+    // 格式化消息，在线程内复用的缓冲中直接替换%s、%d（整数）及%%、%n，其他格式交给String.format
+    private static String format(String pattern, int count, Object arg1, Object arg2, Object arg3, Object[] args) {
+        if (pattern == null) {
+            return "null";
+        }
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        int length = pattern.length();
+        int start = 0;
+        int index = 0;
+        for (int i = 0; i < length; i++) {
+            if (pattern.charAt(i) != '%') {
+                continue;
+            }
+            if (i + 1 >= length) {
+                return slowFormat(pattern, count, arg1, arg2, arg3, args);
+            }
+            sb.append(pattern, start, i);
+            char c = pattern.charAt(i + 1);
+            if (c == '%') {
+                sb.append('%');
+            } else if (c == 'n') {
+                sb.append(LINE_SEPARATOR);
+            } else {
+                if (index >= count) {
+                    return slowFormat(pattern, count, arg1, arg2, arg3, args);
+                }
+                Object arg = args != null ? args[index] : index == 0 ? arg1 : index == 1 ? arg2 : arg3;
+                index++;
+                if (c == 's' && !(arg instanceof Formattable)) {
+                    sb.append(arg);
+                } else if (c == 'd' && (arg instanceof Integer || arg instanceof Long || arg instanceof Short || arg instanceof Byte)) {
+                    sb.append(((Number) arg).longValue());
+                } else {
+                    return slowFormat(pattern, count, arg1, arg2, arg3, args);
+                }
+            }
+            start = i + 2;
+            i++;
+        }
+        sb.append(pattern, start, length);
+        String result = sb.toString();
+        if (sb.capacity() > MAX_BUFFER_CAPACITY) {
+            BUFFER.set(new StringBuilder(256));
+        }
+        return result;
+    }
+
+    // 使用String.format格式化，格式错误时原样输出格式及参数
+    private static String slowFormat(String pattern, int count, Object arg1, Object arg2, Object arg3, Object[] args) {
+        Object[] values = args != null ? args : Arrays.copyOf(new Object[]{arg1, arg2, arg3}, count);
+        try {
+            return String.format(pattern, values);
+        } catch (IllegalFormatException e) {
+            return pattern + " " + Arrays.toString(values);
+        }
+    }
+
+    /**
+     * 单个tag的令牌桶及被丢弃日志计数
+     */
+    private static class TagLimiter {
+        final AtomicLong limited = new AtomicLong();
+        final AtomicLong sampled = new AtomicLong();
+        private volatile int maxLevel = 0;
+        private double tokens;
+        private long lastRefill;
+
+        TagLimiter(int burst, long now) {
+            this.tokens = burst;
+            this.lastRefill = now;
+        }
+
+        synchronized boolean tryAcquire(LogPolicy p, long now) {
+            if (now > lastRefill) {
+                tokens = Math.min(p.getBurst(), tokens + (now - lastRefill) * p.getRatePerSecond() / 1000.0);
+                lastRefill = now;
+            }
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            return false;
+        }
+
+        void suppress(int level) {
+            if (level > maxLevel) {
+                maxLevel = level;
+            }
+        }
+
+        int takeMaxLevel() {
+            int level = Math.max(LEVEL.VERBOSE, maxLevel);
+            maxLevel = 0;
+            return level;
         }
     }
 }
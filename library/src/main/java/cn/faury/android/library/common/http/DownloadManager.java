@@ -0,0 +1,461 @@
+package cn.faury.android.library.common.http;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import cn.faury.android.library.common.core.FCommonGlobalConfigure;
+import cn.faury.android.library.common.helper.Logger;
+import cn.faury.android.library.common.util.StringUtils;
+import okhttp3.HttpUrl;
+
+/**
+ * 下载管理器
+ * <p>
+ * 下载任务按优先级排队，限制全局及单个主机的同时下载数；相同下载地址及目标文件的任务只下载一次，
+ * 重复提交时将监听器附加到已有任务上。支持暂停、恢复及取消。
+ * <p>
+ * 监听器回调在网络线程中执行；取消下载时已附加的监听器收到{@link HttpRequest.OnDownloadListener#onDownloadFailed(String, Exception)}
+ */
+
+public class DownloadManager {
+
+    /**
+     * 日志tag
+     */
+    private static final String TAG = FCommonGlobalConfigure.TAG + " - DownloadManager";
+
+    /**
+     * 默认全局同时下载数
+     */
+    public static final int DEFAULT_MAX_CONCURRENT = 3;
+
+    /**
+     * 默认单个主机同时下载数
+     */
+    public static final int DEFAULT_MAX_PER_HOST = 2;
+
+    /**
+     * 优先级：低
+     */
+    public static final int PRIORITY_LOW = -10;
+
+    /**
+     * 优先级：普通
+     */
+    public static final int PRIORITY_NORMAL = 0;
+
+    /**
+     * 优先级：高
+     */
+    public static final int PRIORITY_HIGH = 10;
+
+    private final HttpRequest httpRequest;
+
+    private int maxConcurrent = DEFAULT_MAX_CONCURRENT;
+
+    private int maxPerHost = DEFAULT_MAX_PER_HOST;
+
+    /**
+     * 所有未结束的任务
+     */
+    private final Map<String, Job> jobs = new HashMap<>();
+
+    /**
+     * 等待中的任务，优先级高的在前，相同优先级先提交的在前
+     */
+    private final TreeSet<Job> waiting = new TreeSet<>(new Comparator<Job>() {
+        @Override
+        public int compare(Job o1, Job o2) {
+            if (o1.priority != o2.priority) {
+                return o1.priority > o2.priority ? -1 : 1;
+            }
+            return o1.sequence < o2.sequence ? -1 : (o1.sequence == o2.sequence ? 0 : 1);
+        }
+    });
+
+    /**
+     * 各主机正在下载的任务数
+     */
+    private final Map<String, Integer> runningPerHost = new HashMap<>();
+
+    private int runningCount = 0;
+
+    private long sequence = 0;
+
+    /**
+     * 构造函数
+     *
+     * @param httpRequest 网络请求对象，用于创建下载任务
+     */
+    public DownloadManager(HttpRequest httpRequest) {
+        this.httpRequest = httpRequest;
+    }
+
+    /**
+     * 设置全局同时下载数
+     *
+     * @param maxConcurrent 同时下载数
+     * @return 下载管理器
+     */
+    public DownloadManager setMaxConcurrent(int maxConcurrent) {
+        synchronized (this) {
+            this.maxConcurrent = Math.max(1, maxConcurrent);
+        }
+        promote();
+        return this;
+    }
+
+    /**
+     * 设置单个主机同时下载数
+     *
+     * @param maxPerHost 同时下载数
+     * @return 下载管理器
+     */
+    public DownloadManager setMaxPerHost(int maxPerHost) {
+        synchronized (this) {
+            this.maxPerHost = Math.max(1, maxPerHost);
+        }
+        promote();
+        return this;
+    }
+
+    public synchronized int getRunningCount() {
+        return runningCount;
+    }
+
+    public synchronized int getWaitingCount() {
+        return waiting.size();
+    }
+
+    /**
+     * 提交下载，普通优先级
+     *
+     * @param url      下载文件地址
+     * @param toPath   文件保存路径，参考{@link HttpRequest#download(String, String, HttpRequest.OnDownloadListener)}
+     * @param listener 下载监听器
+     * @return 是否提交成功
+     */
+    public boolean enqueue(String url, String toPath, HttpRequest.OnDownloadListener listener) {
+        return enqueue(url, toPath, PRIORITY_NORMAL, listener);
+    }
+
+    /**
+     * 提交下载，相同地址及目标文件的任务已存在时附加监听器，并按较高的优先级排队；已暂停的任务恢复排队
+     *
+     * @param url      下载文件地址
+     * @param toPath   文件保存路径，参考{@link HttpRequest#download(String, String, HttpRequest.OnDownloadListener)}
+     * @param priority 优先级，越大越先下载
+     * @param listener 下载监听器
+     * @return 是否提交成功
+     */
+    public boolean enqueue(String url, String toPath, int priority, HttpRequest.OnDownloadListener listener) {
+        if (StringUtils.isEmpty(url) || StringUtils.isEmpty(toPath)) {
+            listener.onDownloadFailed("下载地址或保存路径不可以为空", null);
+            return false;
+        }
+        final Job job = new Job(url, priority);
+        DownloadTask task = httpRequest.createDownloadTask(url, toPath, httpRequest.getDownloadSegments(), job);
+        if (task == null) {
+            return false;
+        }
+        job.task = task;
+        job.key = getKey(url, task.getTarget());
+        Job attached = null;
+        synchronized (this) {
+            Job exist = jobs.get(job.key);
+            if (exist != null) {
+                exist.listeners.add(listener);
+                if (exist.paused) {
+                    // 已暂停的任务重新提交时恢复排队
+                    exist.paused = false;
+                    exist.priority = Math.max(priority, exist.priority);
+                    waiting.add(exist);
+                } else if (priority > exist.priority && waiting.remove(exist)) {
+                    exist.priority = priority;
+                    waiting.add(exist);
+                }
+                attached = exist;
+            } else {
+                job.listeners.add(listener);
+                job.sequence = sequence++;
+                jobs.put(job.key, job);
+                waiting.add(job);
+            }
+        }
+        if (attached != null) {
+            if (Logger.isLoggable(Logger.LEVEL.VERBOSE)) {
+                Logger.v(TAG, "attach listener to download %s", attached.key.replace('\n', ' '));
+            }
+            if (attached.total != null) {
+                listener.beforeDownloading(attached.total);
+            }
+        }
+        promote();
+        return true;
+    }
+
+    /**
+     * 移除监听器，不影响下载
+     *
+     * @param url      下载文件地址
+     * @param toPath   文件保存路径，与提交时相同
+     * @param listener 下载监听器
+     */
+    public void removeListener(String url, String toPath, HttpRequest.OnDownloadListener listener) {
+        Job job = findJob(url, toPath);
+        if (job != null) {
+            job.listeners.remove(listener);
+        }
+    }
+
+    /**
+     * 暂停下载，保留已下载数据，可通过{@link #resume(String, String)}恢复
+     *
+     * @param url    下载文件地址
+     * @param toPath 文件保存路径，与提交时相同
+     */
+    public void pause(String url, String toPath) {
+        String key = getKey(url, toPath);
+        Job paused = null;
+        synchronized (this) {
+            Job job = key == null ? null : jobs.get(key);
+            if (job != null && !job.paused) {
+                job.paused = true;
+                if (!waiting.remove(job)) {
+                    paused = job;
+                    release(job);
+                }
+            }
+        }
+        if (paused != null) {
+            // 与promote()中的启动互斥，避免暂停后任务仍被启动
+            synchronized (paused) {
+                paused.task.pause();
+            }
+        }
+        promote();
+    }
+
+    /**
+     * 恢复已暂停的下载，重新排队并从断点续传
+     *
+     * @param url    下载文件地址
+     * @param toPath 文件保存路径，与提交时相同
+     */
+    public void resume(String url, String toPath) {
+        String key = getKey(url, toPath);
+        synchronized (this) {
+            Job job = key == null ? null : jobs.get(key);
+            if (job != null && job.paused) {
+                job.paused = false;
+                job.running = false;
+                waiting.add(job);
+            }
+        }
+        promote();
+    }
+
+    /**
+     * 取消下载，删除已下载数据，通知该任务的所有监听器下载失败
+     *
+     * @param url    下载文件地址
+     * @param toPath 文件保存路径，与提交时相同
+     */
+    public void cancel(String url, String toPath) {
+        String key = getKey(url, toPath);
+        Job canceled;
+        synchronized (this) {
+            canceled = key == null ? null : jobs.get(key);
+            if (canceled != null) {
+                remove(canceled);
+            }
+        }
+        if (canceled != null) {
+            notifyCanceled(canceled);
+        }
+        promote();
+    }
+
+    /**
+     * 取消所有下载，通知各任务的监听器下载失败
+     */
+    public void cancelAll() {
+        List<Job> canceled;
+        synchronized (this) {
+            canceled = new ArrayList<>(jobs.values());
+            for (Job job : canceled) {
+                remove(job);
+            }
+        }
+        for (Job job : canceled) {
+            notifyCanceled(job);
+        }
+    }
+
+    // 取消任务并通知其所有监听器
+    private void notifyCanceled(Job job) {
+        boolean canceled;
+        synchronized (job) {
+            canceled = job.task.cancel();
+        }
+        if (canceled) {
+            for (HttpRequest.OnDownloadListener listener : job.listeners) {
+                try {
+                    listener.onDownloadFailed("下载已取消", null);
+                } catch (Exception e) {
+                    Logger.e(TAG, "download listener exception: ", e);
+                }
+            }
+        }
+    }
+
+    // 在并发限制内按优先级启动等待中的任务
+    private void promote() {
+        List<Job> started = new ArrayList<>();
+        synchronized (this) {
+            for (Job job : new ArrayList<>(waiting)) {
+                if (runningCount >= maxConcurrent) {
+                    break;
+                }
+                Integer hostCount = runningPerHost.get(job.host);
+                if (hostCount != null && hostCount >= maxPerHost) {
+                    continue;
+                }
+                waiting.remove(job);
+                job.running = true;
+                runningCount++;
+                runningPerHost.put(job.host, hostCount == null ? 1 : hostCount + 1);
+                started.add(job);
+            }
+        }
+        // 任务回调可能在start()中同步执行，需在锁外启动
+        for (Job job : started) {
+            // 暂停标记在任务锁内重新检查，pause()在同一个锁内暂停任务
+            synchronized (job) {
+                if (job.paused) {
+                    continue;
+                }
+                if (Logger.isLoggable(Logger.LEVEL.VERBOSE)) {
+                    Logger.v(TAG, "start download %s, priority=%d", job.key.replace('\n', ' '), job.priority);
+                }
+                job.task.start();
+            }
+        }
+    }
+
+    // 任务结束，释放并发名额
+    private void onFinished(Job job) {
+        synchronized (this) {
+            if (jobs.get(job.key) != job) {
+                return;
+            }
+            remove(job);
+        }
+        promote();
+    }
+
+    // 移除任务，调用方需持有锁
+    private void remove(Job job) {
+        jobs.remove(job.key);
+        waiting.remove(job);
+        release(job);
+    }
+
+    // 释放运行中任务占用的名额，调用方需持有锁
+    private void release(Job job) {
+        if (job.running) {
+            job.running = false;
+            runningCount--;
+            Integer hostCount = runningPerHost.get(job.host);
+            if (hostCount == null || hostCount <= 1) {
+                runningPerHost.remove(job.host);
+            } else {
+                runningPerHost.put(job.host, hostCount - 1);
+            }
+        }
+    }
+
+    // 按下载地址及目标文件查找任务
+    private synchronized Job findJob(String url, String toPath) {
+        String key = getKey(url, toPath);
+        return key == null ? null : jobs.get(key);
+    }
+
+    // 任务key，与提交时去重使用的key相同，参数为空时返回null
+    private String getKey(String url, String toPath) {
+        if (StringUtils.isEmpty(url) || StringUtils.isEmpty(toPath)) {
+            return null;
+        }
+        return getKey(url, httpRequest.getDownloadTarget(url, toPath));
+    }
+
+    // 任务key：下载地址 + 目标文件绝对路径
+    private static String getKey(String url, File target) {
+        return url + "\n" + target.getAbsolutePath();
+    }
+
+    // 获取主机名
+    private static String getHost(String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        return httpUrl == null ? url : httpUrl.host();
+    }
+
+    /**
+     * 下载任务及其监听器，回调分发给所有监听器
+     */
+    private class Job implements HttpRequest.OnDownloadListener {
+        private final String url;
+        private final String host;
+        private final List<HttpRequest.OnDownloadListener> listeners = new CopyOnWriteArrayList<>();
+        private String key;
+        private DownloadTask task;
+        private int priority;
+        private long sequence;
+        private boolean running = false;
+        private volatile boolean paused = false;
+        private volatile Long total = null;
+
+        Job(String url, int priority) {
+            this.url = url;
+            this.host = getHost(url);
+            this.priority = priority;
+        }
+
+        @Override
+        public void beforeDownloading(long total) {
+            this.total = total;
+            for (HttpRequest.OnDownloadListener listener : listeners) {
+                listener.beforeDownloading(total);
+            }
+        }
+
+        @Override
+        public void onDownloading(long progress) {
+            for (HttpRequest.OnDownloadListener listener : listeners) {
+                listener.onDownloading(progress);
+            }
+        }
+
+        @Override
+        public void onDownloadSuccess(String outPath) {
+            onFinished(this);
+            for (HttpRequest.OnDownloadListener listener : listeners) {
+                listener.onDownloadSuccess(outPath);
+            }
+        }
+
+        @Override
+        public void onDownloadFailed(String message, Exception e) {
+            onFinished(this);
+            for (HttpRequest.OnDownloadListener listener : listeners) {
+                listener.onDownloadFailed(message, e);
+            }
+        }
+    }
+}
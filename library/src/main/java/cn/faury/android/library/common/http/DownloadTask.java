@@ -0,0 +1,652 @@
+package cn.faury.android.library.common.http;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cn.faury.android.library.common.core.FCommonGlobalConfigure;
+import cn.faury.android.library.common.helper.Logger;
+import cn.faury.android.library.common.util.FileUtils;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+/**
+ * 下载任务
+ * <p>
+ * 数据先写入【目标文件.tmp】，进度记录在【目标文件.progress】中，中断后再次下载同一目标时通过HTTP Range续传；
+ * 服务器支持Range且文件足够大时可分段并行下载，各段通过FileChannel按位置写入同一个文件。
+ * 进度回调按时间或字节数节流，不会每次读取都回调。
+ * <p>
+ * 分段请求共用client的Dispatcher，同一主机的并发数受{@link okhttp3.Dispatcher#getMaxRequestsPerHost()}限制
+ */
+
+public class DownloadTask {
+
+    /**
+     * 日志tag
+     */
+    private static final String TAG = FCommonGlobalConfigure.TAG + " - DownloadTask";
+
+    /**
+     * 临时文件后缀
+     */
+    public static final String SUFFIX_TEMP = ".tmp";
+
+    /**
+     * 进度文件后缀
+     */
+    public static final String SUFFIX_PROGRESS = ".progress";
+
+    /**
+     * 默认读写缓冲大小
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 默认进度回调最小间隔（毫秒）
+     */
+    public static final long DEFAULT_PROGRESS_INTERVAL = 200;
+
+    /**
+     * 默认进度回调最小字节数
+     */
+    public static final long DEFAULT_PROGRESS_STEP = 1024 * 1024;
+
+    /**
+     * 默认进度文件保存间隔（毫秒）
+     */
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 1000;
+
+    /**
+     * 默认每段最小字节数
+     */
+    public static final long DEFAULT_MIN_SEGMENT_SIZE = 2 * 1024 * 1024;
+
+    /**
+     * 任务状态
+     */
+    public enum State {
+        WAITING, RUNNING, PAUSED, CANCELED, SUCCESS, FAILED
+    }
+
+    private final OkHttpClient client;
+    private final String url;
+    private final File target;
+    private final File tempFile;
+    private final File progressFile;
+    private final int segmentCount;
+    private final HttpRequest.OnDownloadListener listener;
+
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private long progressInterval = DEFAULT_PROGRESS_INTERVAL;
+    private long progressStep = DEFAULT_PROGRESS_STEP;
+    private long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    private long minSegmentSize = DEFAULT_MIN_SEGMENT_SIZE;
+
+    private volatile State state = State.WAITING;
+
+    /**
+     * 每次开始、暂停、取消、重新下载时递增，旧请求的回调据此忽略
+     */
+    private volatile int generation = 0;
+
+    /**
+     * 续传失败时是否已重新下载
+     */
+    private boolean restarted = false;
+
+    private volatile long total = -1;
+    private String validator;
+    private List<Segment> segments = new ArrayList<>();
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private final List<Call> calls = new CopyOnWriteArrayList<>();
+    private final AtomicInteger activeSegments = new AtomicInteger();
+    private final AtomicLong downloaded = new AtomicLong();
+    private final AtomicLong lastNotifyTime = new AtomicLong();
+    private final AtomicLong lastNotifyBytes = new AtomicLong();
+    private final AtomicLong lastCheckpointTime = new AtomicLong();
+
+    /**
+     * 构造函数
+     *
+     * @param client       网络请求对象
+     * @param url          下载地址
+     * @param target       目标文件绝对路径
+     * @param segmentCount 最大分段数，1表示不分段
+     * @param listener     下载监听器
+     */
+    public DownloadTask(OkHttpClient client, String url, File target, int segmentCount, HttpRequest.OnDownloadListener listener) {
+        this.client = client;
+        this.url = url;
+        this.target = target;
+        this.tempFile = new File(target.getAbsolutePath() + SUFFIX_TEMP);
+        this.progressFile = new File(target.getAbsolutePath() + SUFFIX_PROGRESS);
+        this.segmentCount = Math.max(1, segmentCount);
+        this.listener = listener;
+    }
+
+    public DownloadTask setBufferSize(int bufferSize) {
+        this.bufferSize = Math.max(4096, bufferSize);
+        return this;
+    }
+
+    public DownloadTask setProgressInterval(long progressInterval) {
+        this.progressInterval = progressInterval;
+        return this;
+    }
+
+    public DownloadTask setProgressStep(long progressStep) {
+        this.progressStep = progressStep;
+        return this;
+    }
+
+    public DownloadTask setCheckpointInterval(long checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+        return this;
+    }
+
+    public DownloadTask setMinSegmentSize(long minSegmentSize) {
+        this.minSegmentSize = Math.max(1, minSegmentSize);
+        return this;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public File getTarget() {
+        return target;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 获取文件总大小
+     *
+     * @return 总大小，未知时为-1
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * 获取已下载字节数，包含续传前已下载部分
+     *
+     * @return 已下载字节数
+     */
+    public long getDownloaded() {
+        return downloaded.get();
+    }
+
+    /**
+     * 开始下载，已暂停或失败的任务再次调用时从进度文件续传
+     */
+    public synchronized void start() {
+        if (state == State.RUNNING || state == State.SUCCESS) {
+            return;
+        }
+        state = State.RUNNING;
+        restarted = false;
+        final int gen = ++generation;
+        if (loadProgress()) {
+            try {
+                openChannel();
+            } catch (IOException e) {
+                fail(gen, null, e);
+                return;
+            }
+            Logger.v(TAG, "resume download %s from %d/%d", url, downloaded.get(), total);
+            listener.beforeDownloading(total);
+            activeSegments.set(0);
+            for (Segment segment : segments) {
+                if (!segment.isComplete()) {
+                    activeSegments.incrementAndGet();
+                }
+            }
+            if (activeSegments.get() == 0) {
+                complete(gen);
+                return;
+            }
+            for (Segment segment : segments) {
+                if (!segment.isComplete()) {
+                    enqueueSegment(gen, segment);
+                }
+            }
+        } else {
+            enqueueProbe(gen);
+        }
+    }
+
+    /**
+     * 暂停下载，保留已下载数据及进度文件
+     *
+     * @return 是否暂停成功
+     */
+    public synchronized boolean pause() {
+        if (state != State.RUNNING && state != State.WAITING) {
+            return false;
+        }
+        state = State.PAUSED;
+        generation++;
+        cancelCalls();
+        saveProgress();
+        closeChannel();
+        return true;
+    }
+
+    /**
+     * 取消下载，删除临时文件及进度文件
+     *
+     * @return 是否取消成功
+     */
+    public synchronized boolean cancel() {
+        if (state == State.SUCCESS || state == State.CANCELED) {
+            return false;
+        }
+        state = State.CANCELED;
+        generation++;
+        cancelCalls();
+        closeChannel();
+        FileUtils.deleteFile(tempFile);
+        FileUtils.deleteFile(progressFile);
+        return true;
+    }
+
+    // 首次请求，根据响应决定是否分段
+    private void enqueueProbe(final int gen) {
+        resetFiles();
+        Call call = client.newCall(new Request.Builder().url(url).build());
+        calls.add(call);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                fail(gen, null, e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try {
+                    onProbeResponse(gen, response);
+                } catch (IOException e) {
+                    fail(gen, null, e);
+                } finally {
+                    response.close();
+                }
+            }
+        });
+    }
+
+    private void onProbeResponse(int gen, Response response) throws IOException {
+        ResponseBody body = response.body();
+        if (!response.isSuccessful() || body == null) {
+            fail(gen, body == null ? "下载资源不存在" : "下载失败：HTTP " + response.code(), null);
+            return;
+        }
+        synchronized (this) {
+            if (gen != generation) {
+                return;
+            }
+            total = body.contentLength();
+            validator = response.header("ETag");
+            if (validator == null) {
+                validator = response.header("Last-Modified");
+            }
+            boolean acceptRanges = "bytes".equalsIgnoreCase(response.header("Accept-Ranges"));
+            int count = 1;
+            if (segmentCount > 1 && acceptRanges && total >= minSegmentSize * 2) {
+                count = (int) Math.min(segmentCount, total / minSegmentSize);
+            }
+            segments = new ArrayList<>(count);
+            if (total < 0) {
+                segments.add(new Segment(0, -1, 0));
+            } else {
+                long size = total / count;
+                for (int i = 0; i < count; i++) {
+                    long start = i * size;
+                    long end = i == count - 1 ? total - 1 : start + size - 1;
+                    segments.add(new Segment(start, end, 0));
+                }
+            }
+            activeSegments.set(segments.size());
+            openChannel();
+            if (total > 0) {
+                randomAccessFile.setLength(total);
+            }
+            saveProgress();
+        }
+        Logger.v(TAG, "download %s: total=%d, segments=%d", url, total, segments.size());
+        listener.beforeDownloading(total);
+        for (int i = 1; i < segments.size(); i++) {
+            enqueueSegment(gen, segments.get(i));
+        }
+        readSegment(gen, segments.get(0), body.source());
+    }
+
+    // 续传或分段请求
+    private void enqueueSegment(final int gen, final Segment segment) {
+        Request.Builder builder = new Request.Builder().url(url)
+                .header("Range", "bytes=" + segment.position() + "-" + (segment.end < 0 ? "" : String.valueOf(segment.end)));
+        if (validator != null) {
+            builder.header("If-Range", validator);
+        }
+        Call call = client.newCall(builder.build());
+        calls.add(call);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                fail(gen, null, e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try {
+                    ResponseBody body = response.body();
+                    String contentRange = response.header("Content-Range");
+                    if (response.code() == 206 && body != null && contentRange != null
+                            && contentRange.startsWith("bytes " + segment.position() + "-")) {
+                        readSegment(gen, segment, body.source());
+                    } else if (response.code() == 200 || response.code() == 206 || response.code() == 416) {
+                        // 服务器不支持续传或文件已变化，重新下载
+                        restart(gen, "unexpected response " + response.code() + " " + contentRange);
+                    } else {
+                        fail(gen, "下载失败：HTTP " + response.code(), null);
+                    }
+                } catch (IOException e) {
+                    fail(gen, null, e);
+                } finally {
+                    response.close();
+                }
+            }
+        });
+    }
+
+    // 读取一段数据并按位置写入文件
+    private void readSegment(int gen, Segment segment, BufferedSource source) throws IOException {
+        byte[] buffer = new byte[bufferSize];
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        FileChannel fileChannel = channel;
+        if (fileChannel == null || gen != generation) {
+            return;
+        }
+        long remaining = segment.end < 0 ? Long.MAX_VALUE : segment.end - segment.position() + 1;
+        while (remaining > 0) {
+            int len = source.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (len == -1) {
+                break;
+            }
+            if (gen != generation) {
+                return;
+            }
+            byteBuffer.clear();
+            byteBuffer.limit(len);
+            long position = segment.position();
+            while (byteBuffer.hasRemaining()) {
+                position += fileChannel.write(byteBuffer, position);
+            }
+            segment.done += len;
+            remaining -= len;
+            onProgress(gen, len);
+        }
+        if (segment.end >= 0 && remaining > 0) {
+            throw new IOException("unexpected end of stream at " + segment.position() + ", expected " + (segment.end + 1));
+        }
+        if (segment.end < 0) {
+            total = segment.done;
+        }
+        if (activeSegments.decrementAndGet() == 0) {
+            complete(gen);
+        }
+    }
+
+    // 进度回调及进度文件保存，按时间或字节数节流
+    private void onProgress(int gen, int len) {
+        long sum = downloaded.addAndGet(len);
+        long now = System.currentTimeMillis();
+        long lastTime = lastNotifyTime.get();
+        if ((now - lastTime >= progressInterval || sum - lastNotifyBytes.get() >= progressStep)
+                && lastNotifyTime.compareAndSet(lastTime, now)) {
+            lastNotifyBytes.set(sum);
+            if (Logger.isLoggable(Logger.LEVEL.VERBOSE)) {
+                Logger.event(Logger.LEVEL.VERBOSE, TAG, "download.progress", "url", url, "downloaded", sum, "total", total);
+            }
+            listener.onDownloading(sum);
+        }
+        long lastCheckpoint = lastCheckpointTime.get();
+        if (now - lastCheckpoint >= checkpointInterval && lastCheckpointTime.compareAndSet(lastCheckpoint, now)) {
+            synchronized (this) {
+                if (gen == generation) {
+                    saveProgress();
+                }
+            }
+        }
+    }
+
+    // 所有分段完成，临时文件改名为目标文件
+    private void complete(int gen) {
+        String outPath;
+        synchronized (this) {
+            if (gen != generation || state != State.RUNNING) {
+                return;
+            }
+            try {
+                if (channel != null) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                Logger.w(TAG, "force download file exception", e);
+            }
+            closeChannel();
+            FileUtils.deleteFile(target);
+            if (!tempFile.renameTo(target) && !FileUtils.moveFile(tempFile, target, true)) {
+                state = State.FAILED;
+                outPath = null;
+            } else {
+                FileUtils.deleteFile(progressFile);
+                state = State.SUCCESS;
+                outPath = target.getAbsolutePath();
+            }
+            calls.clear();
+        }
+        if (outPath == null) {
+            listener.onDownloadFailed("下载文件保存失败", null);
+        } else {
+            listener.onDownloading(downloaded.get());
+            listener.onDownloadSuccess(outPath);
+        }
+    }
+
+    // 续传失败时放弃已下载数据重新下载，仅重试一次
+    private void restart(int gen, String reason) {
+        synchronized (this) {
+            if (gen != generation || state != State.RUNNING) {
+                return;
+            }
+            if (restarted) {
+                fail(gen, "下载失败：" + reason, null);
+                return;
+            }
+            Logger.w(TAG, "restart download " + url + ": " + reason);
+            restarted = true;
+            cancelCalls();
+            closeChannel();
+            enqueueProbe(++generation);
+        }
+    }
+
+    private void fail(int gen, String message, Exception e) {
+        synchronized (this) {
+            if (gen != generation || state != State.RUNNING) {
+                return;
+            }
+            state = State.FAILED;
+            generation++;
+            cancelCalls();
+            saveProgress();
+            closeChannel();
+        }
+        listener.onDownloadFailed(message, e);
+    }
+
+    // 删除临时文件及进度文件，重置进度
+    private void resetFiles() {
+        FileUtils.deleteFile(tempFile);
+        FileUtils.deleteFile(progressFile);
+        segments = new ArrayList<>();
+        total = -1;
+        validator = null;
+        downloaded.set(0);
+        lastNotifyBytes.set(0);
+    }
+
+    private void openChannel() throws IOException {
+        closeChannel();
+        FileUtils.createFile(tempFile, FileUtils.Mode.ABSOLUTE_PATH_AND_NOTHING);
+        randomAccessFile = new RandomAccessFile(tempFile, "rw");
+        channel = randomAccessFile.getChannel();
+    }
+
+    private void closeChannel() {
+        if (randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            } catch (IOException ignored) {
+
+            }
+            randomAccessFile = null;
+            channel = null;
+        }
+    }
+
+    private void cancelCalls() {
+        for (Call call : calls) {
+            call.cancel();
+        }
+        calls.clear();
+    }
+
+    // 保存进度文件：先记录各分段进度，再将已写入数据刷到磁盘，保证记录的进度不超过已落盘的数据
+    private void saveProgress() {
+        if (channel == null || segments.isEmpty()) {
+            return;
+        }
+        Writer writer = null;
+        try {
+            // 分段线程仍在写入，进度需在force之前读取
+            StringBuilder sb = new StringBuilder();
+            sb.append(url).append('\n').append(total).append('\n').append(validator == null ? "" : validator).append('\n');
+            for (Segment segment : segments) {
+                sb.append(segment.start).append(' ').append(segment.end).append(' ').append(segment.done).append('\n');
+            }
+            channel.force(false);
+            writer = new OutputStreamWriter(new FileOutputStream(progressFile), "UTF-8");
+            writer.write(sb.toString());
+        } catch (IOException e) {
+            Logger.w(TAG, "save download progress exception", e);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+
+                }
+            }
+        }
+    }
+
+    // 读取进度文件，地址不一致或临时文件不存在时返回false
+    private boolean loadProgress() {
+        if (!progressFile.exists() || !tempFile.exists()) {
+            return false;
+        }
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(progressFile), "UTF-8"));
+            if (!url.equals(reader.readLine())) {
+                return false;
+            }
+            long _total = Long.parseLong(reader.readLine().trim());
+            String _validator = reader.readLine();
+            List<Segment> _segments = new ArrayList<>();
+            long sum = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.trim().split(" ");
+                if (parts.length == 3) {
+                    Segment segment = new Segment(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                    _segments.add(segment);
+                    sum += segment.done;
+                }
+            }
+            if (_segments.isEmpty()) {
+                return false;
+            }
+            total = _total;
+            validator = _validator == null || _validator.length() == 0 ? null : _validator;
+            segments = _segments;
+            downloaded.set(sum);
+            lastNotifyBytes.set(sum);
+            return true;
+        } catch (Exception e) {
+            Logger.w(TAG, "load download progress exception", e);
+            return false;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DownloadTask{url=" + url + ", target=" + target + ", state=" + state
+                + ", downloaded=" + downloaded.get() + "/" + total + ", segments=" + segments.size() + "}";
+    }
+
+    /**
+     * 下载分段，end为-1表示长度未知
+     */
+    private static class Segment {
+        private final long start;
+        private final long end;
+        private volatile long done;
+
+        Segment(long start, long end, long done) {
+            this.start = start;
+            this.end = end;
+            this.done = done;
+        }
+
+        long position() {
+            return start + done;
+        }
+
+        boolean isComplete() {
+            return end >= 0 && position() > end;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package cn.faury.android.library.common.http;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import cn.faury.android.library.common.core.FCommonGlobalConfigure;
+import cn.faury.android.library.common.helper.Logger;
+import cn.faury.android.library.common.http.metrics.HttpMetrics;
+import okhttp3.FormBody;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.GzipSink;
+import okio.Okio;
+import okio.Sink;
+
+/**
+ * 请求体gzip压缩拦截器
+ * <p>
+ * 请求tag中的{@link RequestPolicy}开启压缩时，请求体写出时直接经过GzipSink压缩到网络，不在内存中缓存整个请求体。
+ * 服务器返回415时记录该主机不支持压缩，之后的请求不再压缩；可重放的请求体（表单、JSON）立即以原文重发一次
+ */
+
+public class GzipRequestInterceptor implements Interceptor {
+
+    /**
+     * 日志tag
+     */
+    private static final String TAG = FCommonGlobalConfigure.TAG + " - GzipRequestInterceptor";
+
+    /**
+     * 不支持请求体压缩的主机
+     */
+    private static final ConcurrentHashMap<String, Boolean> UNSUPPORTED_HOSTS = new ConcurrentHashMap<>();
+
+    /**
+     * 主机是否支持请求体压缩
+     *
+     * @param host 主机
+     * @return 是否支持，未协商过的主机视为支持
+     */
+    public static boolean isSupported(String host) {
+        return !UNSUPPORTED_HOSTS.containsKey(host);
+    }
+
+    /**
+     * 清空主机压缩协商结果
+     */
+    public static void resetHosts() {
+        UNSUPPORTED_HOSTS.clear();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestBody body = request.body();
+        if (!shouldCompress(request)) {
+            return chain.proceed(request);
+        }
+        String host = request.url().host();
+        Request compressed = request.newBuilder()
+                .header("Content-Encoding", "gzip")
+                .method(request.method(), new GzipRequestBody(body, host))
+                .build();
+        Response response = chain.proceed(compressed);
+        if (response.code() == 415) {
+            Logger.w(TAG, "request compression unsupported: " + host);
+            UNSUPPORTED_HOSTS.put(host, Boolean.TRUE);
+            if (body instanceof FormBody || body instanceof JsonRequestBody) {
+                response.close();
+                return chain.proceed(request);
+            }
+        }
+        return response;
+    }
+
+    // 是否压缩请求体
+    private boolean shouldCompress(Request request) throws IOException {
+        RequestBody body = request.body();
+        if (body == null || request.header("Content-Encoding") != null || !(request.tag() instanceof RequestPolicy)) {
+            return false;
+        }
+        RequestPolicy policy = (RequestPolicy) request.tag();
+        if (!policy.isCompressionEnabled() || !isSupported(request.url().host())) {
+            return false;
+        }
+        long length = body.contentLength();
+        return length < 0 || length >= policy.getCompressThreshold();
+    }
+
+    /**
+     * 流式gzip压缩的请求体，长度未知，以chunked方式发送
+     */
+    private static class GzipRequestBody extends RequestBody {
+        private final RequestBody delegate;
+        private final String host;
+
+        GzipRequestBody(RequestBody delegate, String host) {
+            this.delegate = delegate;
+            this.host = host;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return -1;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            TimingSink network = new TimingSink(sink);
+            TimingSink raw = new TimingSink(new GzipSink(network));
+            BufferedSink gzipSink = Okio.buffer(raw);
+            delegate.writeTo(gzipSink);
+            gzipSink.close();
+            // 压缩耗时为写入GzipSink的总耗时减去写出到网络的耗时
+            long nanos = raw.nanos - network.nanos;
+            HttpMetrics.recordCompression(host, raw.bytes, network.bytes, nanos);
+            Logger.v(TAG, "compressed %d -> %d bytes in %dus: %s", raw.bytes, network.bytes, nanos / 1000, host);
+        }
+    }
+
+    /**
+     * 统计写出字节数及耗时的Sink
+     */
+    private static class TimingSink extends ForwardingSink {
+        private long bytes = 0;
+        private long nanos = 0;
+
+        TimingSink(Sink delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            long start = System.nanoTime();
+            super.write(source, byteCount);
+            nanos += System.nanoTime() - start;
+            bytes += byteCount;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            long start = System.nanoTime();
+            super.flush();
+            nanos += System.nanoTime() - start;
+        }
+
+        @Override
+        public void close() throws IOException {
+            long start = System.nanoTime();
+            super.close();
+            nanos += System.nanoTime() - start;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package cn.faury.android.library.common.http;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import cn.faury.android.library.common.core.FCommonGlobalConfigure;
+import cn.faury.android.library.common.helper.Logger;
+import cn.faury.android.library.common.http.metrics.HttpMetrics;
+import cn.faury.android.library.common.util.FileUtils;
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Dns;
+import okhttp3.OkHttpClient;
+
+/**
+ * 进程内共享的OkHttpClient池
+ * <p>
+ * 所有client都由同一个根client通过newBuilder()派生，共享连接池和调度线程池；
+ * 同一缓存目录只创建一个{@link Cache}对象；连接、读、写超时均使用传入的超时时间，
+ * 单个请求可通过{@link RequestPolicy}覆盖；网络指标由{@link HttpMetrics}统计
+ */
+
+public final class HttpClientPool {
+    /**
+     * 日志tag
+     */
+    private static final String TAG = FCommonGlobalConfigure.TAG + " - HttpClientPool";
+
+    /**
+     * 根client，持有共享的连接池和调度器
+     */
+    private static OkHttpClient rootClient = null;
+
+    /**
+     * 最多缓存的client数量，超过时淘汰最久未使用的；被淘汰的client仍可继续使用，只是不再被复用
+     */
+    private static final int MAX_CLIENTS = 16;
+
+    /**
+     * 按配置缓存的client，按访问顺序排列
+     */
+    private static final Map<ClientKey, OkHttpClient> clients = new LinkedHashMap<ClientKey, OkHttpClient>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ClientKey, OkHttpClient> eldest) {
+            if (size() > MAX_CLIENTS) {
+                Logger.w(TAG, "too many client configurations, evict " + eldest.getKey());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * 按目录缓存的磁盘缓存对象
+     */
+    private static final Map<String, Cache> caches = new HashMap<>();
+
+    private HttpClientPool() {
+    }
+
+    /**
+     * 获取指定配置的client，相同配置返回同一对象
+     *
+     * @param timeout     超时时间
+     * @param timeoutUnit 超时时间单位
+     * @param dns         DNS解析服务，null表示系统默认；按equals判等，未覆盖equals时子类应返回同一实例
+     * @param cacheFile   缓存目录，null表示不使用缓存
+     * @param cacheSize   缓存大小
+     * @return 网络请求对象
+     */
+    public static synchronized OkHttpClient obtain(long timeout, TimeUnit timeoutUnit, Dns dns, File cacheFile, long cacheSize) {
+        String cachePath = cacheFile == null ? null : cacheFile.getAbsolutePath();
+        ClientKey key = new ClientKey(timeoutUnit.toMillis(timeout), dns, cachePath, cacheSize);
+        OkHttpClient client = clients.get(key);
+        if (client == null) {
+            OkHttpClient.Builder builder = getRootClient().newBuilder()
+                    .connectTimeout(timeout, timeoutUnit)
+                    .readTimeout(timeout, timeoutUnit)
+                    .writeTimeout(timeout, timeoutUnit);
+            if (dns != null) {
+                builder.dns(dns);
+            }
+            Cache cache = getCache(cacheFile, cacheSize);
+            if (cache != null) {
+                builder.cache(cache);
+            }
+            client = builder.build();
+            clients.put(key, client);
+            Logger.v(TAG, "OkHttpClient[cache-path:" + cachePath +
+                    ",cache-size:" + cacheSize +
+                    ",timeout:" + timeout +
+                    ",timeoutUnit:" + timeoutUnit +
+                    ",clients:" + clients.size() + "]");
+        }
+        return client;
+    }
+
+    /**
+     * 获取已创建的client数量
+     *
+     * @return client数量
+     */
+    public static synchronized int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * 获取共享连接池中的连接数
+     *
+     * @return 连接数
+     */
+    public static synchronized int getConnectionCount() {
+        return rootClient == null ? 0 : rootClient.connectionPool().connectionCount();
+    }
+
+    /**
+     * 获取共享连接池中的空闲连接数
+     *
+     * @return 空闲连接数
+     */
+    public static synchronized int getIdleConnectionCount() {
+        return rootClient == null ? 0 : rootClient.connectionPool().idleConnectionCount();
+    }
+
+    /**
+     * 释放所有空闲连接
+     */
+    public static synchronized void evictAll() {
+        if (rootClient != null) {
+            rootClient.connectionPool().evictAll();
+        }
+    }
+
+    // 获取根client，懒加载
+    private static OkHttpClient getRootClient() {
+        if (rootClient == null) {
+            rootClient = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool())
+                    .dispatcher(new Dispatcher())
+                    .addInterceptor(new PolicyCall.TimeoutInterceptor())
+                    .addInterceptor(new GzipRequestInterceptor())
+                    .eventListenerFactory(HttpMetrics.FACTORY)
+                    .build();
+        }
+        return rootClient;
+    }
+
+    // 获取目录对应的缓存对象，同一目录只创建一次
+    private static Cache getCache(File cacheFile, long cacheSize) {
+        if (cacheFile == null) {
+            return null;
+        }
+        String path = cacheFile.getAbsolutePath();
+        Cache cache = caches.get(path);
+        if (cache == null) {
+            try {//如果能够写入磁盘，则创建缓存目录
+                if (!cacheFile.exists()) {
+                    FileUtils.createFolder(cacheFile);
+                }
+                cache = new Cache(cacheFile.getAbsoluteFile(), cacheSize);
+                caches.put(path, cache);
+            } catch (Exception e) {
+                Logger.w(TAG, "create cache exception:" + path, e);
+            }
+        } else if (cache.maxSize() != cacheSize) {
+            Logger.w(TAG, "cache " + path + " already created with size " + cache.maxSize() + ", ignore size " + cacheSize);
+        }
+        return cache;
+    }
+
+    /**
+     * client配置键
+     */
+    private static class ClientKey {
+        private final long timeoutMillis;
+        private final Dns dns;
+        private final String cachePath;
+        private final long cacheSize;
+
+        ClientKey(long timeoutMillis, Dns dns, String cachePath, long cacheSize) {
+            this.timeoutMillis = timeoutMillis;
+            this.dns = dns;
+            this.cachePath = cachePath;
+            this.cacheSize = cacheSize;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ClientKey)) {
+                return false;
+            }
+            ClientKey other = (ClientKey) o;
+            return timeoutMillis == other.timeoutMillis
+                    && (dns == null ? other.dns == null : dns.equals(other.dns))
+                    && cacheSize == other.cacheSize
+                    && (cachePath == null ? other.cachePath == null : cachePath.equals(other.cachePath));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (timeoutMillis ^ (timeoutMillis >>> 32));
+            result = 31 * result + (dns == null ? 0 : dns.hashCode());
+            result = 31 * result + (cachePath == null ? 0 : cachePath.hashCode());
+            result = 31 * result + (int) (cacheSize ^ (cacheSize >>> 32));
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "ClientKey[timeout=" + timeoutMillis + ",dns=" + (dns == null ? null : dns.getClass().getName()) +
+                    ",cache-path=" + cachePath + ",cache-size=" + cacheSize + "]";
+        }
+    }
+}
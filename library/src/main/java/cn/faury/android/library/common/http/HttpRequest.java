@@ -5,10 +5,11 @@ import android.content.Context;
 import org.apache.http.params.HttpParams;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -17,7 +18,6 @@ import cn.faury.android.library.common.helper.Logger;
 import cn.faury.android.library.common.util.FileUtils;
 import cn.faury.android.library.common.util.StorageUtils;
 import cn.faury.android.library.common.util.StringUtils;
-import okhttp3.Cache;
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.Dns;
@@ -28,6 +28,7 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 /**
  * 通用Http请求处理
@@ -44,6 +45,11 @@ public class HttpRequest {
      */
     private Context context;
 
+    /**
+     * 进行中的GET请求
+     */
+    private static final SingleFlight<Callback> FLIGHTS = new SingleFlight<>();
+
     /**
      * 设置client对象
      */
@@ -59,7 +65,7 @@ public class HttpRequest {
     }
 
     /**
-     * 获取DNS解析服务对象
+     * 获取DNS解析服务对象，相同的DNS（equals）共享同一个client，子类应返回同一实例或覆盖equals
      *
      * @return DNS解析服务
      */
@@ -104,36 +110,85 @@ public class HttpRequest {
     }
 
     /**
-     * 获取网络请求对象
+     * 获取请求策略，子类可覆盖；默认为全局策略{@link RequestPolicy#getDefault()}
+     *
+     * @return 请求策略
+     */
+    public RequestPolicy getRequestPolicy() {
+        return RequestPolicy.getDefault();
+    }
+
+    /**
+     * 相同GET请求是否合并为一次网络请求，子类可覆盖
+     *
+     * @return 是否合并
+     */
+    public boolean isRequestCoalescing() {
+        return true;
+    }
+
+    /**
+     * 获取被合并的请求数
+     *
+     * @return 请求数
+     */
+    public static long getCoalescedCount() {
+        return FLIGHTS.getCoalescedCount();
+    }
+
+    /**
+     * 获取请求key：client、请求方法、地址及按名称排序的参数，用于合并相同请求及内存缓存
+     *
+     * @param method 请求方法
+     * @param url    请求地址
+     * @param params 请求参数
+     * @return 请求key
+     */
+    protected String getRequestKey(String method, String url, Map<String, String> params) {
+        StringBuilder key = new StringBuilder(url.length() + 32);
+        key.append(Integer.toHexString(System.identityHashCode(getClient()))).append(' ')
+                .append(method.toUpperCase(Locale.US)).append(' ').append(url);
+        if (params != null && params.size() > 0) {
+            int mark = key.length();
+            key.append(url.indexOf('?') >= 0 ? '&' : '?');
+            if (!QueryStringBuilder.append(key, params, true, false)) {
+                key.setLength(mark);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * 获取合并请求的key：请求key加上请求策略，策略不同的请求不合并，避免使用其他调用方的超时、重试及对冲设置
+     *
+     * @param method 请求方法
+     * @param url    请求地址
+     * @param params 请求参数
+     * @param policy 请求策略，null表示使用{@link #getRequestPolicy()}
+     * @return 合并请求的key
+     */
+    protected String getCoalescingKey(String method, String url, Map<String, String> params, RequestPolicy policy) {
+        if (policy == null) {
+            policy = getRequestPolicy();
+        }
+        return getRequestKey(method, url, params) + ' ' + policy;
+    }
+
+    /**
+     * 获取网络请求对象，相同配置的请求共享同一个client，参考{@link HttpClientPool}
      *
      * @return 网络请求对象
      */
     public synchronized OkHttpClient getClient() {
         if (client == null) {
-            synchronized (HttpRequest.class) {
-                if (client == null) {
-                    OkHttpClient.Builder builder = new OkHttpClient.Builder()
-                            .connectTimeout(getTimeout(), getTimeoutUnit());
-                    if (this.getDns() != null) {
-                        builder.dns(this.getDns());
-                    }
-                    try {//如果能够写入磁盘，则创建缓存目录
-                        File file = getCacheFile();
-                        if (!file.exists()) {
-                            FileUtils.createFolder(file);
-                        }
-                        builder.cache(new Cache(file.getAbsoluteFile(), getCacheSize()));
-                        Logger.v(TAG, "OkHttpClient[cache-path:" + file.getAbsoluteFile() +
-                                ",cache-size:" + getCacheSize() +
-                                ",timeout:" + getTimeout() +
-                                ",timeoutUnit:" + getTimeoutUnit() + "]");
-                    } catch (Exception ignored) {
-                    }
-                    client = builder.build();
-                }
+            File cacheFile = null;
+            try {
+                cacheFile = getCacheFile();
+            } catch (Exception e) {
+                Logger.w(TAG, "get cache file exception", e);
             }
+            client = HttpClientPool.obtain(getTimeout(), getTimeoutUnit(), getDns(), cacheFile, getCacheSize());
         }
-
         return client;
     }
 
@@ -145,29 +200,77 @@ public class HttpRequest {
      * @param params   请求参数
      * @param callback 回调
      */
-    protected void _request(final String method, final String url, final Map<String, String> params, final Callback callback) {
-        Logger.v(TAG, String.format("_request: method=%s,url=%s,params=%s", method, url, params));
+    protected void _request(final String method, final String url, final Map<String, String> params, Callback callback) {
+        _request(method, url, params, null, callback);
+    }
+
+    /**
+     * 网络请求
+     *
+     * @param method   请求方法
+     * @param url      请求地址
+     * @param params   请求参数
+     * @param headers  附加请求头，可为null；有附加请求头的请求不合并
+     * @param callback 回调
+     */
+    protected void _request(final String method, final String url, final Map<String, String> params, final Map<String, String> headers, Callback callback) {
+        _request(method, url, params, headers, null, callback);
+    }
+
+    /**
+     * 网络请求
+     *
+     * @param method   请求方法
+     * @param url      请求地址
+     * @param params   请求参数
+     * @param headers  附加请求头，可为null；有附加请求头的请求不合并
+     * @param policy   请求策略，null表示使用{@link #getRequestPolicy()}；策略设置不同的请求不合并
+     * @param callback 回调
+     */
+    protected void _request(final String method, final String url, final Map<String, String> params, final Map<String, String> headers,
+                            RequestPolicy policy, Callback callback) {
+        Logger.v(TAG, "_request: method=%s,url=%s,params=%s", method, url, params);
         if (url == null) {
             return;
         }
+        // 相同的GET请求进行中时只登记回调
+        String key = null;
+        if ("GET".equalsIgnoreCase(method) && (headers == null || headers.isEmpty()) && isRequestCoalescing()) {
+            key = getCoalescingKey(method, url, params, policy);
+            if (!FLIGHTS.join(key, callback)) {
+                Logger.v(TAG, "_request coalesced: %s", key);
+                return;
+            }
+            callback = new CoalescingCallback(key);
+        }
+        try {
+            _buildAndExecute(method, url, params, headers, policy, callback);
+        } catch (RuntimeException e) {
+            if (key != null) {
+                // 请求未能发起，结束合并并通知其他等待者，首个请求由调用方处理异常
+                List<Callback> callbacks = FLIGHTS.complete(key);
+                IOException failure = new IOException("request not started: " + e.getMessage(), e);
+                for (int i = 1; i < callbacks.size(); i++) {
+                    try {
+                        callbacks.get(i).onFailure(null, failure);
+                    } catch (Exception ex) {
+                        Logger.e(TAG, "coalesced callback exception: ", ex);
+                    }
+                }
+            }
+            throw e;
+        }
+    }
+
+    // 按请求方法组装请求参数并发起请求
+    private void _buildAndExecute(String method, String url, Map<String, String> params, Map<String, String> headers,
+                                  RequestPolicy policy, Callback callback) {
         String _url = url;
-        Request.Builder builder = new Request.Builder();
+        RequestBody body = null;
 
         // 添加查询参数
         if ("GET".equalsIgnoreCase(method)) { // get请求
-            String queryString = "";
-            if (params != null && params.size() > 0) {
-                RequestParams requestParams = new RequestParams(params);
-                queryString = requestParams.getQueryString();
-            }
-            if (!StringUtils.isEmpty(queryString)) {
-                if (_url.indexOf("?") > 0) {
-                    _url = _url + "&" + queryString;
-                } else {
-                    _url = _url + "?" + queryString;
-                }
-            }
-            builder.get();
+            _url = QueryStringBuilder.appendToUrl(_url, params, false);
         } else {// 当做POST处理
             FormBody.Builder formBody = new FormBody.Builder();
             // 传入的参数
@@ -178,9 +281,49 @@ public class HttpRequest {
                     formBody.add(i.getKey(), i.getValue());
                 }
             }
-            builder.post(formBody.build());
+            body = formBody.build();
+        }
+        _execute(_url, body, headers, policy, callback);
+    }
+
+    /**
+     * 以指定请求体发起Post请求，不合并
+     *
+     * @param url      请求地址
+     * @param body     请求体，如{@link JsonRequestBody}
+     * @param headers  附加请求头，可为null
+     * @param policy   请求策略，null表示使用{@link #getRequestPolicy()}
+     * @param callback 回调
+     */
+    protected void _bodyRequest(final String url, final RequestBody body, final Map<String, String> headers, RequestPolicy policy, Callback callback) {
+        Logger.v(TAG, "_bodyRequest: url=%s,body=%s", url, body);
+        if (url == null || body == null) {
+            return;
+        }
+        _execute(url, body, headers, policy, callback);
+    }
+
+    // 发起请求，body为null时为GET请求，否则为POST请求
+    private void _execute(String url, RequestBody body, Map<String, String> headers, RequestPolicy policy, Callback callback) {
+        Request.Builder builder = new Request.Builder();
+        if (body == null) {
+            builder.get();
+        } else {
+            builder.post(body);
+        }
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                builder.header(header.getKey(), header.getValue());
+            }
+        }
+        if (policy == null) {
+            policy = getRequestPolicy();
+        }
+        Request request = builder.url(url).tag(policy).build();
+        if (!policy.isSimple()) {
+            new PolicyCall(getClient(), request, policy, callback).start();
+            return;
         }
-        Request request = builder.url(_url).build();
         Call call = getClient().newCall(request);
         if (call != null) {
             call.enqueue(callback);
@@ -210,61 +353,108 @@ public class HttpRequest {
     }
 
     /**
-     * 下载
+     * 按指定策略发起get请求
+     *
+     * @param url      请求的地址
+     * @param params   请求的参数
+     * @param policy   请求策略，参考{@link RequestPolicy#copy()}
+     * @param callback 回调
+     */
+    public void get(final String url, final Map<String, String> params, final RequestPolicy policy, final Callback callback) {
+        _request("GET", url, params, null, policy, callback);
+    }
+
+    /**
+     * 按指定策略发起Post请求，Post请求不会重试
+     *
+     * @param url      请求的地址
+     * @param params   请求的参数
+     * @param policy   请求策略，参考{@link RequestPolicy#copy()}
+     * @param callback 回调
+     */
+    public void post(final String url, final Map<String, String> params, final RequestPolicy policy, final Callback callback) {
+        _request("POST", url, params, null, policy, callback);
+    }
+
+    /**
+     * 获取下载最大分段数，1表示不分段
+     *
+     * @return 最大分段数
+     */
+    public int getDownloadSegments() {
+        return 1;
+    }
+
+    /**
+     * 获取下载进度回调最小间隔
+     *
+     * @return 间隔毫秒数
+     */
+    public long getDownloadProgressInterval() {
+        return DownloadTask.DEFAULT_PROGRESS_INTERVAL;
+    }
+
+    /**
+     * 下载，中断后再次下载同一目标文件时自动续传
      *
      * @param url              下载文件地址
      * @param toPath           文件保存路径，全路径，如果是以/结尾，则取url最后一段名作为文件名
      * @param downloadListener 下载监听器
+     * @return 下载任务，可用于暂停及取消，参数错误时返回null
      */
-    public void download(final String url, final String toPath, final OnDownloadListener downloadListener) {
-        Logger.v(TAG, String.format("download: url=%s,toPath=%s", url, toPath));
+    public DownloadTask download(final String url, final String toPath, final OnDownloadListener downloadListener) {
+        return download(url, toPath, getDownloadSegments(), downloadListener);
+    }
+
+    /**
+     * 分段下载，服务器支持Range时最多分为segments段并行下载
+     *
+     * @param url              下载文件地址
+     * @param toPath           文件保存路径，全路径，如果是以/结尾，则取url最后一段名作为文件名
+     * @param segments         最大分段数
+     * @param downloadListener 下载监听器
+     * @return 下载任务，可用于暂停及取消，参数错误时返回null
+     */
+    public DownloadTask download(final String url, final String toPath, final int segments, final OnDownloadListener downloadListener) {
+        DownloadTask task = createDownloadTask(url, toPath, segments, downloadListener);
+        if (task != null) {
+            task.start();
+        }
+        return task;
+    }
+
+    /**
+     * 创建下载任务，不立即开始
+     *
+     * @param url              下载文件地址
+     * @param toPath           文件保存路径，全路径，如果是以/结尾，则取url最后一段名作为文件名
+     * @param segments         最大分段数
+     * @param downloadListener 下载监听器
+     * @return 下载任务，参数错误时返回null
+     */
+    public DownloadTask createDownloadTask(final String url, final String toPath, final int segments, final OnDownloadListener downloadListener) {
+        Logger.v(TAG, "download: url=%s,toPath=%s,segments=%s", url, toPath, segments);
         if (StringUtils.isEmpty(url) || StringUtils.isEmpty(toPath)) {
             downloadListener.onDownloadFailed("下载地址或保存路径不可以为空", null);
-        } else {
-            Request builder = new Request.Builder().url(url).build();
-            getClient().newCall(builder).enqueue(new Callback() {
-                @Override
-                public void onFailure(Call call, IOException e) {
-                    downloadListener.onDownloadFailed(null, e);
-                }
+            return null;
+        }
+        return new DownloadTask(getClient(), url, getDownloadTarget(url, toPath), segments, downloadListener)
+                .setProgressInterval(getDownloadProgressInterval());
+    }
 
-                @Override
-                public void onResponse(Call call, Response response) {
-                    if (response.body() == null) {
-                        downloadListener.onDownloadFailed("下载资源不存在", null);
-                    }
-                    try {
-                        // 创建目标文件
-                        String _toPath = toPath;
-                        if (_toPath.endsWith("/")) {
-                            _toPath = _toPath + FileUtils.getNameFromUrl(url);
-                        }
-                        String outPath = FileUtils.createFile(_toPath, FileUtils.Mode.RELATIVE_PATH_AND_COVER);
-                        if (StringUtils.isEmpty(outPath)) {
-                            downloadListener.onDownloadFailed("下载文件保存路径为空", null);
-                        } else {
-                            InputStream is = response.body().byteStream();
-                            long total = response.body().contentLength();
-                            downloadListener.beforeDownloading(total);
-
-                            FileOutputStream fos = new FileOutputStream(new File(outPath));
-                            long sum = 0;
-                            byte[] buff = new byte[2048];
-                            int len = 0;
-                            while ((len = is.read(buff)) != -1) {
-                                fos.write(buff, 0, len);
-                                sum += len;
-                                downloadListener.onDownloading(sum);
-                            }
-                            fos.flush();
-                            downloadListener.onDownloadSuccess(outPath);
-                        }
-                    } catch (IOException e) {
-                        downloadListener.onDownloadFailed(null, e);
-                    }
-                }
-            });
+    /**
+     * 获取下载的目标文件
+     *
+     * @param url    下载文件地址
+     * @param toPath 文件保存路径，全路径，如果是以/结尾，则取url最后一段名作为文件名
+     * @return 目标文件，相对存储根目录
+     */
+    public File getDownloadTarget(final String url, final String toPath) {
+        String _toPath = toPath;
+        if (_toPath.endsWith("/")) {
+            _toPath = _toPath + FileUtils.getNameFromUrl(url);
         }
+        return new File(StorageUtils.getStorageDirFile(), new File(_toPath).getAbsolutePath());
     }
 
     /**
@@ -276,7 +466,7 @@ public class HttpRequest {
      * @param callback 回调
      */
     public void multipart(final String url, final Map<String, String> params, final Map<String, FileWrapper> files, final Callback callback) {
-        Logger.v(TAG, String.format("multipart: url=%s,params=%s,files=%s", url, params, files));
+        Logger.v(TAG, "multipart: url=%s,params=%s,files=%s", url, params, files);
         if (url == null) {
             return;
         }
@@ -310,6 +500,173 @@ public class HttpRequest {
         }
     }
 
+    /**
+     * 多附件混合提交，支持{@link RequestParams}中的字符串、文件、文件数组及输入流参数
+     * <p>
+     * 文件及输入流均在写出时直接复制到网络，不会整体读入内存；输入流参数按其autoClose设置在写出后或请求失败、取消后关闭。
+     * 输入流只能写出一次，含输入流参数的请求不能被重试，连接失败重试、重定向或认证需要再次写出时请求失败
+     *
+     * @param url            请求地址
+     * @param params         请求参数
+     * @param uploadListener 上传监听器，可为null
+     * @param callback       回调
+     */
+    public void multipart(final String url, final RequestParams params, final OnUploadListener uploadListener, final Callback callback) {
+        Logger.v(TAG, "multipart: url=%s,params=%s", url, params);
+        if (url == null) {
+            return;
+        }
+        MultipartBody.Builder multipartBody = new MultipartBody.Builder().setType(MultipartBody.FORM);
+        final List<StreamRequestBody> streams = new ArrayList<>();
+        if (params != null) {
+            for (Map.Entry<String, String> entry : params.getStringParams().entrySet()) {
+                multipartBody.addFormDataPart(entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<String, RequestParams.FileWrapper> entry : params.getFileParams().entrySet()) {
+                addFilePart(multipartBody, entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<String, List<RequestParams.FileWrapper>> entry : params.getFileArrayParams().entrySet()) {
+                if (entry.getValue() != null) {
+                    for (RequestParams.FileWrapper fileWrapper : entry.getValue()) {
+                        addFilePart(multipartBody, entry.getKey(), fileWrapper);
+                    }
+                }
+            }
+            for (Map.Entry<String, RequestParams.StreamWrapper> entry : params.getStreamParams().entrySet()) {
+                RequestParams.StreamWrapper streamWrapper = entry.getValue();
+                String fileName = StringUtils.isEmpty(streamWrapper.name) ? entry.getKey() : streamWrapper.name;
+                StreamRequestBody streamBody = new StreamRequestBody(MediaType.parse(streamWrapper.contentType), streamWrapper.inputStream, streamWrapper.autoClose);
+                streams.add(streamBody);
+                multipartBody.addFormDataPart(entry.getKey(), fileName, streamBody);
+            }
+        }
+        try {
+            RequestBody body = multipartBody.build();
+            if (uploadListener != null) {
+                body = new ProgressRequestBody(body, uploadListener, getUploadProgressInterval());
+            }
+            Request request = new Request.Builder().url(url).post(body).tag(getRequestPolicy()).build();
+            Call call = getClient().newCall(request);
+            if (call != null) {
+                call.enqueue(streams.isEmpty() ? callback : new Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        // 写出前被取消或失败时输入流未关闭
+                        closeStreams(streams);
+                        callback.onFailure(call, e);
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response) throws IOException {
+                        closeStreams(streams);
+                        callback.onResponse(call, response);
+                    }
+                });
+            } else {
+                closeStreams(streams);
+            }
+        } catch (RuntimeException e) {
+            closeStreams(streams);
+            throw e;
+        }
+    }
+
+    // 关闭输入流请求体，已关闭的不重复关闭
+    private static void closeStreams(List<StreamRequestBody> streams) {
+        for (StreamRequestBody stream : streams) {
+            stream.close();
+        }
+    }
+
+    /**
+     * 获取上传进度回调最小间隔
+     *
+     * @return 间隔毫秒数
+     */
+    public long getUploadProgressInterval() {
+        return ProgressRequestBody.DEFAULT_PROGRESS_INTERVAL;
+    }
+
+    // 添加文件参数，文件不存在时忽略
+    private void addFilePart(MultipartBody.Builder multipartBody, String key, RequestParams.FileWrapper fileWrapper) {
+        if (fileWrapper != null && fileWrapper.file != null && fileWrapper.file.exists()) {
+            String fileName = StringUtils.isEmpty(fileWrapper.customFileName) ? fileWrapper.file.getName() : fileWrapper.customFileName;
+            String contentType = StringUtils.isEmpty(fileWrapper.contentType) ? "application/octet-stream" : fileWrapper.contentType;
+            multipartBody.addFormDataPart(key, fileName, RequestBody.create(MediaType.parse(contentType), fileWrapper.file));
+        }
+    }
+
+    /**
+     * 上传监听器
+     */
+    public interface OnUploadListener {
+        /**
+         * 上传中
+         *
+         * @param written 已上传字节数
+         * @param total   总字节数，未知时为-1
+         */
+        void onUploading(final long written, final long total);
+    }
+
+    /**
+     * 合并请求回调，将结果分发给所有等待者
+     * <p>
+     * 只有一个等待者时直接传递响应；多个等待者时读取响应体到内存，每个等待者获得一份独立的响应
+     */
+    private class CoalescingCallback implements Callback {
+        private final String key;
+
+        CoalescingCallback(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            for (Callback callback : FLIGHTS.complete(key)) {
+                try {
+                    callback.onFailure(call, e);
+                } catch (Exception ex) {
+                    Logger.e(TAG, "coalesced callback exception: ", ex);
+                }
+            }
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) throws IOException {
+            List<Callback> callbacks = FLIGHTS.complete(key);
+            if (callbacks.size() == 1) {
+                callbacks.get(0).onResponse(call, response);
+                return;
+            }
+            byte[] bytes;
+            MediaType contentType;
+            try {
+                ResponseBody body = response.body();
+                contentType = body == null ? null : body.contentType();
+                bytes = body == null ? new byte[0] : body.bytes();
+            } catch (IOException e) {
+                for (Callback callback : callbacks) {
+                    try {
+                        callback.onFailure(call, e);
+                    } catch (Exception ex) {
+                        Logger.e(TAG, "coalesced callback exception: ", ex);
+                    }
+                }
+                return;
+            } finally {
+                response.close();
+            }
+            for (Callback callback : callbacks) {
+                try {
+                    callback.onResponse(call, response.newBuilder().body(ResponseBody.create(contentType, bytes)).build());
+                } catch (Exception e) {
+                    Logger.e(TAG, "coalesced callback exception: ", e);
+                }
+            }
+        }
+    }
+
     /**
      * 下载监听器
      */
@@ -3,16 +3,19 @@ package cn.faury.android.library.common.http;
 import android.content.Context;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import cn.faury.android.library.common.core.FCommonGlobalConfigure;
 import cn.faury.android.library.common.helper.Logger;
 import cn.faury.android.library.common.util.JsonHashMapUtils;
 import cn.faury.android.library.common.util.JsonUtils;
-import cn.faury.android.library.common.util.StringUtils;
 import okhttp3.Call;
 import okhttp3.Callback;
+import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 /**
  * JSON网络请求
@@ -24,6 +27,11 @@ public class JsonHttpRequest extends HttpRequest {
      */
     private final String TAG = FCommonGlobalConfigure.TAG + " - JsonHttpRequest";
 
+    /**
+     * 进行中的JSON GET请求
+     */
+    private static final SingleFlight<ResponseHandler> JSON_FLIGHTS = new SingleFlight<>();
+
     /**
      * 构造函数
      *
@@ -42,32 +50,168 @@ public class JsonHttpRequest extends HttpRequest {
      * @param handler 处理返回结果
      */
     protected void _jsonRequest(String method, String url, Map<String, String> params, final ResponseHandler handler) {
-        _request(method, url, params, new Callback() {
+        _jsonRequest(method, url, params, null, handler);
+    }
+
+    /**
+     * JSON请求，返回结果以流的方式解析
+     *
+     * @param method   请求方法
+     * @param url      请求的地址
+     * @param params   请求的参数
+     * @param arrayKey 逐个回调元素的数组所在的顶层键，null表示顶层数组，handler为{@link ArrayResponseHandler}时有效
+     * @param handler  处理返回结果；开启内存缓存时GET请求可能直接由缓存同步返回，或与相同请求合并，此时结果为只读
+     */
+    protected void _jsonRequest(String method, String url, Map<String, String> params, final String arrayKey, ResponseHandler handler) {
+        JsonResponseCache cache = null;
+        String key = null;
+        JsonResponseCache.Entry conditional = null;
+        if (handler != null && url != null && "GET".equalsIgnoreCase(method) && !(handler instanceof ArrayResponseHandler)) {
+            key = getRequestKey(method, url, params);
+            cache = getMemoryCache();
+            if (cache != null) {
+                long now = System.currentTimeMillis();
+                JsonResponseCache.Entry entry = cache.get(key, now);
+                if (entry != null && entry.isFresh(now)) {
+                    handler.onSuccess(entry.getResult());
+                    return;
+                } else if (entry != null && entry.isStaleUsable(now)) {
+                    // 先返回过期结果，后台重新验证
+                    handler.onSuccess(entry.getResult());
+                    revalidate(method, url, params, cache, key, entry);
+                    return;
+                } else if (entry != null && entry.isConditional()) {
+                    conditional = entry;
+                }
+            }
+            // 相同的GET请求进行中时只登记处理器，结果只解析一次
+            if (isRequestCoalescing()) {
+                String flightKey = getCoalescingKey(method, url, params, null);
+                if (!JSON_FLIGHTS.join(flightKey, handler)) {
+                    Logger.v(TAG, "_jsonRequest coalesced: %s", flightKey);
+                    return;
+                }
+                try {
+                    _jsonCall(method, url, params, null, arrayKey, new CoalescingHandler(flightKey), cache, key, conditional);
+                } catch (RuntimeException e) {
+                    // 请求未能发起，结束合并并通知其他等待者，首个请求由调用方处理异常
+                    List<ResponseHandler> handlers = JSON_FLIGHTS.complete(flightKey);
+                    IOException failure = new IOException("request not started: " + e.getMessage(), e);
+                    for (int i = 1; i < handlers.size(); i++) {
+                        deliverFailure(handlers.get(i), failure);
+                    }
+                    throw e;
+                }
+                return;
+            }
+        }
+        _jsonCall(method, url, params, null, arrayKey, handler, cache, key, conditional);
+    }
+
+    /**
+     * 获取JSON解析结果内存缓存，默认不使用；子类可覆盖返回{@link JsonResponseCache#getDefault()}开启，
+     * 开启后命中缓存时返回的结果为只读
+     *
+     * @return 内存缓存，null表示不使用
+     */
+    public JsonResponseCache getMemoryCache() {
+        return null;
+    }
+
+    // 后台重新验证过期的缓存结果，同一缓存项同时只有一个
+    private void revalidate(String method, String url, Map<String, String> params, JsonResponseCache cache, String key, final JsonResponseCache.Entry entry) {
+        if (!entry.beginRevalidate()) {
+            return;
+        }
+        Logger.v(TAG, "revalidate: %s", key);
+        _jsonCall(method, url, params, null, null, new ResponseHandler() {
+            @Override
+            public void onSuccess(JsonHashMapUtils result) {
+                entry.endRevalidate();
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                entry.endRevalidate();
+            }
+
+            @Override
+            public void onFailure(int code) {
+                entry.endRevalidate();
+            }
+        }, cache, key, entry.isConditional() ? entry : null);
+    }
+
+    // 发起请求并解析结果，body不为null时以body作为请求体POST；conditional不为null时发起条件请求，返回304时使用缓存结果
+    private void _jsonCall(String method, String url, Map<String, String> params, RequestBody body, final String arrayKey, final ResponseHandler responseHandler,
+                           final JsonResponseCache cache, final String key, final JsonResponseCache.Entry conditional) {
+        Map<String, String> headers = null;
+        if (conditional != null) {
+            headers = new HashMap<>(2);
+            if (conditional.getEtag() != null) {
+                headers.put("If-None-Match", conditional.getEtag());
+            }
+            if (conditional.getLastModified() != null) {
+                headers.put("If-Modified-Since", conditional.getLastModified());
+            }
+        }
+        Callback callback = new Callback() {
             @Override
             public void onFailure(Call call, IOException e) {
                 Logger.e(TAG, "onFailure: ", e);
-                if (handler != null) {
-                    handler.onFailure(e);
+                if (responseHandler != null) {
+                    responseHandler.onFailure(e);
                 }
             }
 
             @Override
             public void onResponse(Call call, Response response) throws IOException {
-                Logger.v(TAG, "onResponse: " + response);
-                if (handler != null) {
-                    if (response.code() == 200) {
-                        String resultJson = response.body().string();
-                        if (StringUtils.isEmpty(resultJson)) {
-                            handler.onSuccess(new JsonHashMapUtils());
+                Logger.v(TAG, "onResponse: %s", response);
+                try {
+                    if (responseHandler != null) {
+                        if (response.code() == 304 && conditional != null) {
+                            cache.refresh(conditional, response);
+                            responseHandler.onSuccess(conditional.getResult());
+                        } else if (response.code() == 200) {
+                            ResponseBody body = response.body();
+                            JsonHashMapUtils result;
+                            try {
+                                if (body == null) {
+                                    result = new JsonHashMapUtils();
+                                } else if (responseHandler instanceof ArrayResponseHandler) {
+                                    final ArrayResponseHandler arrayHandler = (ArrayResponseHandler) responseHandler;
+                                    result = JsonUtils.fromJson(body.charStream(), arrayKey, new JsonUtils.OnArrayElementListener() {
+                                        @Override
+                                        public void onElement(int index, Object element) {
+                                            arrayHandler.onElement(index, element);
+                                        }
+                                    });
+                                } else {
+                                    result = JsonUtils.fromJson(body.charStream());
+                                }
+                            } catch (IOException e) {
+                                Logger.e(TAG, "parse response exception: ", e);
+                                responseHandler.onFailure(e);
+                                return;
+                            }
+                            if (cache != null && key != null) {
+                                cache.put(key, response, result);
+                            }
+                            responseHandler.onSuccess(result);
                         } else {
-                            handler.onSuccess(JsonUtils.fromJson(resultJson));
+                            responseHandler.onFailure(response.code());
                         }
-                    } else {
-                        handler.onFailure(response.code());
                     }
+                } finally {
+                    response.close();
                 }
             }
-        });
+        };
+        if (body != null) {
+            _bodyRequest(url, body, headers, null, callback);
+        } else {
+            _request(method, url, params, headers, callback);
+        }
     }
 
     /**
@@ -92,8 +236,100 @@ public class JsonHttpRequest extends HttpRequest {
         _jsonRequest("POST", url, params, handler);
     }
 
+    /**
+     * 发起JSON Post请求，请求数据写出时直接序列化为JSON，不生成中间字符串；
+     * 请求策略开启压缩时序列化结果直接写入gzip压缩流，参考{@link RequestPolicy#setCompressThreshold(long)}
+     *
+     * @param url     请求的地址
+     * @param json    请求的数据
+     * @param handler 处理返回结果
+     */
+    public void postJson(String url, JsonHashMapUtils json, final ResponseHandler handler) {
+        _jsonCall("POST", url, null, new JsonRequestBody(json == null ? new JsonHashMapUtils() : json), null, handler, null, null, null);
+    }
+
+    /**
+     * 发起get请求，数组元素逐个回调
+     *
+     * @param url      请求的地址
+     * @param params   请求的参数
+     * @param arrayKey 逐个回调元素的数组所在的顶层键，null表示顶层数组
+     * @param handler  处理返回结果
+     */
+    public void get(String url, Map<String, String> params, String arrayKey, final ArrayResponseHandler handler) {
+        _jsonRequest("GET", url, params, arrayKey, handler);
+    }
+
+    /**
+     * 发起Post请求，数组元素逐个回调
+     *
+     * @param url      请求的地址
+     * @param params   请求的参数
+     * @param arrayKey 逐个回调元素的数组所在的顶层键，null表示顶层数组
+     * @param handler  处理返回结果
+     */
+    public void post(String url, Map<String, String> params, String arrayKey, final ArrayResponseHandler handler) {
+        _jsonRequest("POST", url, params, arrayKey, handler);
+    }
+
+    // 通知合并的处理器失败，处理器异常不影响其他处理器
+    private void deliverFailure(ResponseHandler handler, IOException e) {
+        try {
+            handler.onFailure(e);
+        } catch (Exception ex) {
+            Logger.e(TAG, "coalesced handler exception: ", ex);
+        }
+    }
+
+    /**
+     * 合并请求处理器，将同一个解析结果分发给所有等待的处理器，多个处理器时结果设为只读
+     */
+    private class CoalescingHandler implements ResponseHandler {
+        private final String key;
+
+        CoalescingHandler(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void onSuccess(JsonHashMapUtils result) {
+            List<ResponseHandler> handlers = JSON_FLIGHTS.complete(key);
+            if (handlers.size() > 1) {
+                result.setReadOnly();
+            }
+            for (ResponseHandler handler : handlers) {
+                try {
+                    handler.onSuccess(result);
+                } catch (Exception e) {
+                    Logger.e(TAG, "coalesced handler exception: ", e);
+                }
+            }
+        }
+
+        @Override
+        public void onFailure(IOException e) {
+            for (ResponseHandler handler : JSON_FLIGHTS.complete(key)) {
+                deliverFailure(handler, e);
+            }
+        }
+
+        @Override
+        public void onFailure(int code) {
+            for (ResponseHandler handler : JSON_FLIGHTS.complete(key)) {
+                try {
+                    handler.onFailure(code);
+                } catch (Exception e) {
+                    Logger.e(TAG, "coalesced handler exception: ", e);
+                }
+            }
+        }
+    }
+
     /**
      * JSON请求处理器
+     * <p>
+     * 响应码为200但返回内容不是合法的JSON对象或数组时回调{@link #onFailure(IOException)}；
+     * 早期版本此时回调{@link #onSuccess(JsonHashMapUtils)}并传入空结果。返回内容为空时仍回调空结果
      */
     public interface ResponseHandler {
 
@@ -107,7 +343,7 @@ public class JsonHttpRequest extends HttpRequest {
         /**
          * 网络请求失败
          *
-         * @param e 连接异常
+         * @param e 连接异常，或读取、解析返回内容时的异常
          */
         void onFailure(IOException e);
 
@@ -118,4 +354,18 @@ public class JsonHttpRequest extends HttpRequest {
          */
         void onFailure(int code);
     }
+
+    /**
+     * JSON数组请求处理器，数组元素解析后立即回调，不保存在结果中
+     */
+    public interface ArrayResponseHandler extends ResponseHandler {
+
+        /**
+         * 解析出一个数组元素，在网络线程中回调
+         *
+         * @param index   元素下标
+         * @param element 元素：JsonHashMapUtils、ArrayList、String、Number、Boolean或null
+         */
+        void onElement(int index, Object element);
+    }
 }
@@ -0,0 +1,146 @@
+package cn.faury.android.library.common.http;
+
+import java.io.IOException;
+import java.util.Map;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * JSON请求体，写出时直接将数据序列化到输出，不生成中间JSON字符串
+ * <p>
+ * 支持Map（包括{@link cn.faury.android.library.common.util.JsonHashMapUtils}）、Iterable、数组、
+ * CharSequence、Number、Boolean及null，其他对象按toString()作为字符串输出
+ */
+
+public class JsonRequestBody extends RequestBody {
+
+    /**
+     * JSON内容类型
+     */
+    public static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private static final String HEX = "0123456789abcdef";
+
+    private final Object value;
+
+    /**
+     * 构造函数
+     *
+     * @param value 要序列化的数据
+     */
+    public JsonRequestBody(Object value) {
+        this.value = value;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return JSON;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        writeValue(sink, value);
+    }
+
+    // 写出任意值
+    private static void writeValue(BufferedSink sink, Object value) throws IOException {
+        if (value == null) {
+            sink.writeUtf8("null");
+        } else if (value instanceof Map) {
+            sink.writeByte('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    sink.writeByte(',');
+                }
+                writeString(sink, String.valueOf(entry.getKey()));
+                sink.writeByte(':');
+                writeValue(sink, entry.getValue());
+                first = false;
+            }
+            sink.writeByte('}');
+        } else if (value instanceof Iterable) {
+            sink.writeByte('[');
+            boolean first = true;
+            for (Object element : (Iterable<?>) value) {
+                if (!first) {
+                    sink.writeByte(',');
+                }
+                writeValue(sink, element);
+                first = false;
+            }
+            sink.writeByte(']');
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            sink.writeByte('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    sink.writeByte(',');
+                }
+                writeValue(sink, array[i]);
+            }
+            sink.writeByte(']');
+        } else if (value instanceof Boolean) {
+            sink.writeUtf8(((Boolean) value) ? "true" : "false");
+        } else if (value instanceof Number) {
+            writeNumber(sink, (Number) value);
+        } else {
+            writeString(sink, value.toString());
+        }
+    }
+
+    // 写出数字，整数值的浮点数按整数输出，NaN及无穷大输出null
+    private static void writeNumber(BufferedSink sink, Number number) throws IOException {
+        if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte) {
+            sink.writeDecimalLong(number.longValue());
+        } else if (number instanceof Double || number instanceof Float) {
+            double d = number.doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                sink.writeUtf8("null");
+            } else if (d == (long) d) {
+                sink.writeDecimalLong((long) d);
+            } else {
+                sink.writeUtf8(number.toString());
+            }
+        } else {
+            sink.writeUtf8(number.toString());
+        }
+    }
+
+    // 写出转义后的字符串，不需要转义的片段直接写出
+    private static void writeString(BufferedSink sink, String s) throws IOException {
+        sink.writeByte('"');
+        int start = 0;
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            String replacement;
+            if (c == '"') {
+                replacement = "\\\"";
+            } else if (c == '\\') {
+                replacement = "\\\\";
+            } else if (c == '\n') {
+                replacement = "\\n";
+            } else if (c == '\r') {
+                replacement = "\\r";
+            } else if (c == '\t') {
+                replacement = "\\t";
+            } else if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                replacement = "\\u" + HEX.charAt(c >> 12) + HEX.charAt((c >> 8) & 0xF) + HEX.charAt((c >> 4) & 0xF) + HEX.charAt(c & 0xF);
+            } else {
+                continue;
+            }
+            if (start < i) {
+                sink.writeUtf8(s, start, i);
+            }
+            sink.writeUtf8(replacement);
+            start = i + 1;
+        }
+        if (start < length) {
+            sink.writeUtf8(s, start, length);
+        }
+        sink.writeByte('"');
+    }
+}
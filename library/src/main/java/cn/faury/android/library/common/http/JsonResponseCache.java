@@ -0,0 +1,396 @@
+package cn.faury.android.library.common.http;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import cn.faury.android.library.common.util.JsonHashMapUtils;
+import okhttp3.CacheControl;
+import okhttp3.Response;
+
+/**
+ * JSON解析结果内存缓存
+ * <p>
+ * 位于OkHttp磁盘缓存之前，命中时不需要读文件及重新解析。按响应头Cache-Control的max-age确定有效期，
+ * 支持stale-while-revalidate：过期但在该时间窗口内时先返回缓存结果并在后台重新验证；
+ * 有ETag或Last-Modified的结果过期后发起条件请求，返回304时继续使用缓存结果；没有有效期、只有ETag或Last-Modified的响应不缓存。
+ * <p>
+ * 按估算的内存占用淘汰最久未使用的结果；缓存保存解析结果的只读副本，命中时返回的结果为只读。
+ * 默认不启用，通过覆盖{@link JsonHttpRequest#getMemoryCache()}开启
+ */
+
+public class JsonResponseCache {
+
+    /**
+     * 默认最大内存占用
+     */
+    public static final long DEFAULT_MAX_WEIGHT = 4 * 1024 * 1024;
+
+    /**
+     * 默认实例
+     */
+    private static volatile JsonResponseCache defaultCache;
+
+    private final long maxWeight;
+
+    private long weight = 0;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long hitCount = 0;
+    private long staleHitCount = 0;
+    private long missCount = 0;
+    private long notModifiedCount = 0;
+    private long putCount = 0;
+    private long evictionCount = 0;
+
+    /**
+     * 构造函数
+     *
+     * @param maxWeight 最大内存占用（估算字节数）
+     */
+    public JsonResponseCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * 获取默认实例，覆盖{@link JsonHttpRequest#getMemoryCache()}返回该实例的请求共享
+     *
+     * @return 默认实例
+     */
+    public static JsonResponseCache getDefault() {
+        if (defaultCache == null) {
+            synchronized (JsonResponseCache.class) {
+                if (defaultCache == null) {
+                    defaultCache = new JsonResponseCache(DEFAULT_MAX_WEIGHT);
+                }
+            }
+        }
+        return defaultCache;
+    }
+
+    /**
+     * 查询缓存，统计命中及未命中次数
+     *
+     * @param key 请求key
+     * @param now 当前时间
+     * @return 缓存项，不存在时为null
+     */
+    public synchronized Entry get(String key, long now) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            missCount++;
+        } else if (entry.isFresh(now)) {
+            hitCount++;
+        } else if (entry.isStaleUsable(now)) {
+            staleHitCount++;
+        } else {
+            missCount++;
+        }
+        return entry;
+    }
+
+    /**
+     * 根据响应头缓存解析结果，响应不允许缓存或没有有效期时移除已有的缓存项
+     *
+     * @param key      请求key
+     * @param response 响应
+     * @param result   解析结果，缓存其只读副本，调用方持有的对象不变
+     * @return 缓存项，不缓存时为null
+     */
+    public Entry put(String key, Response response, JsonHashMapUtils result) {
+        CacheControl cacheControl = response.cacheControl();
+        String etag = response.header("ETag");
+        String lastModified = response.header("Last-Modified");
+        long now = System.currentTimeMillis();
+        long freshMillis = getFreshMillis(response, cacheControl);
+        if (cacheControl.noStore() || freshMillis <= 0) {
+            remove(key);
+            return null;
+        }
+        JsonHashMapUtils cached = result.isReadOnly() ? result : ((JsonHashMapUtils) copyOf(result)).setReadOnly();
+        Entry entry = new Entry(key, cached, etag, lastModified, estimateWeight(cached) + key.length() * 2);
+        entry.update(now, freshMillis, getStaleWhileRevalidateMillis(response));
+        if (entry.weight > maxWeight) {
+            remove(key);
+            return null;
+        }
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                weight -= previous.weight;
+            }
+            weight += entry.weight;
+            putCount++;
+            trimToSize();
+        }
+        return entry;
+    }
+
+    /**
+     * 条件请求返回304时按新的响应头更新有效期
+     *
+     * @param entry    缓存项
+     * @param response 304响应
+     */
+    public void refresh(Entry entry, Response response) {
+        entry.update(System.currentTimeMillis(), getFreshMillis(response, response.cacheControl()), getStaleWhileRevalidateMillis(response));
+        synchronized (this) {
+            notModifiedCount++;
+        }
+    }
+
+    /**
+     * 移除缓存项
+     *
+     * @param key 请求key
+     */
+    public synchronized void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            weight -= entry.weight;
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void evictAll() {
+        entries.clear();
+        weight = 0;
+    }
+
+    // 淘汰最久未使用的缓存项直到不超过最大内存占用
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (weight > maxWeight && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            iterator.remove();
+            weight -= entry.weight;
+            evictionCount++;
+        }
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getStaleHitCount() {
+        return staleHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getNotModifiedCount() {
+        return notModifiedCount;
+    }
+
+    public synchronized long getPutCount() {
+        return putCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long accesses = hitCount + staleHitCount + missCount;
+        return String.format(Locale.US, "JsonResponseCache[size=%d,weight=%d/%d,hits=%d,staleHits=%d,misses=%d,notModified=%d,evictions=%d,hitRate=%d%%]",
+                entries.size(), weight, maxWeight, hitCount, staleHitCount, missCount, notModifiedCount, evictionCount,
+                accesses == 0 ? 0 : (hitCount + staleHitCount) * 100 / accesses);
+    }
+
+    // 有效期：max-age减去Age，no-cache时为0
+    private static long getFreshMillis(Response response, CacheControl cacheControl) {
+        if (cacheControl.noCache() || cacheControl.maxAgeSeconds() <= 0) {
+            return 0;
+        }
+        long age = 0;
+        String ageHeader = response.header("Age");
+        if (ageHeader != null) {
+            try {
+                age = Long.parseLong(ageHeader.trim());
+            } catch (NumberFormatException ignored) {
+                // 忽略无效的Age
+            }
+        }
+        return Math.max(0, cacheControl.maxAgeSeconds() - age) * 1000L;
+    }
+
+    // 解析Cache-Control中的stale-while-revalidate，OkHttp的CacheControl不支持该指令
+    private static long getStaleWhileRevalidateMillis(Response response) {
+        String header = response.header("Cache-Control");
+        if (header == null) {
+            return 0;
+        }
+        String lower = header.toLowerCase(Locale.US);
+        int index = lower.indexOf("stale-while-revalidate=");
+        if (index < 0) {
+            return 0;
+        }
+        int start = index + "stale-while-revalidate=".length();
+        int end = start;
+        while (end < lower.length() && Character.isDigit(lower.charAt(end))) {
+            end++;
+        }
+        try {
+            return Long.parseLong(lower.substring(start, end)) * 1000L;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // 深拷贝解析结果中的对象及数组
+    private static Object copyOf(Object value) {
+        if (value instanceof JsonHashMapUtils) {
+            JsonHashMapUtils source = (JsonHashMapUtils) value;
+            JsonHashMapUtils copy = new JsonHashMapUtils();
+            for (Map.Entry<String, Object> entry : source.entrySet()) {
+                copy.put(entry.getKey(), copyOf(entry.getValue()));
+            }
+            return copy;
+        } else if (value instanceof List) {
+            List<?> source = (List<?>) value;
+            List<Object> copy = new ArrayList<>(source.size());
+            for (Object element : source) {
+                copy.add(copyOf(element));
+            }
+            return copy;
+        }
+        return value;
+    }
+
+    /**
+     * 估算解析结果的内存占用
+     *
+     * @param value 解析结果
+     * @return 估算字节数
+     */
+    static long estimateWeight(Object value) {
+        if (value == null) {
+            return 4;
+        } else if (value instanceof String) {
+            return 40 + ((String) value).length() * 2L;
+        } else if (value instanceof Map) {
+            long sum = 64;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                sum += 32 + estimateWeight(entry.getKey()) + estimateWeight(entry.getValue());
+            }
+            return sum;
+        } else if (value instanceof Iterable) {
+            long sum = 40;
+            for (Object element : (Iterable<?>) value) {
+                sum += 4 + estimateWeight(element);
+            }
+            return sum;
+        }
+        return 16;
+    }
+
+    /**
+     * 缓存项
+     */
+    public static class Entry {
+        private final String key;
+        private final JsonHashMapUtils result;
+        private final String etag;
+        private final String lastModified;
+        private final long weight;
+        private volatile long expiresAt;
+        private volatile long staleUntil;
+        private volatile boolean revalidating = false;
+
+        Entry(String key, JsonHashMapUtils result, String etag, String lastModified, long weight) {
+            this.key = key;
+            this.result = result;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.weight = weight;
+        }
+
+        void update(long now, long freshMillis, long staleMillis) {
+            expiresAt = now + freshMillis;
+            staleUntil = expiresAt + staleMillis;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public JsonHashMapUtils getResult() {
+            return result;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * 是否在有效期内
+         *
+         * @param now 当前时间
+         * @return 是否有效
+         */
+        public boolean isFresh(long now) {
+            return now < expiresAt;
+        }
+
+        /**
+         * 是否已过期但在stale-while-revalidate窗口内
+         *
+         * @param now 当前时间
+         * @return 是否可先使用
+         */
+        public boolean isStaleUsable(long now) {
+            return now >= expiresAt && now < staleUntil;
+        }
+
+        /**
+         * 是否可发起条件请求
+         *
+         * @return 是否有ETag或Last-Modified
+         */
+        public boolean isConditional() {
+            return etag != null || lastModified != null;
+        }
+
+        /**
+         * 标记开始后台重新验证，同一时间只允许一个
+         *
+         * @return 是否标记成功
+         */
+        synchronized boolean beginRevalidate() {
+            if (revalidating) {
+                return false;
+            }
+            revalidating = true;
+            return true;
+        }
+
+        void endRevalidate() {
+            revalidating = false;
+        }
+    }
+}
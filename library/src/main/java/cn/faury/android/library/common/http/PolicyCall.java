@@ -0,0 +1,322 @@
+package cn.faury.android.library.common.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cn.faury.android.library.common.core.FCommonGlobalConfigure;
+import cn.faury.android.library.common.helper.Logger;
+import cn.faury.android.library.common.http.metrics.HttpMetrics;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 按{@link RequestPolicy}执行的请求，负责整体超时、重试及对冲请求，最终只回调一次
+ */
+
+final class PolicyCall {
+
+    /**
+     * 日志tag
+     */
+    private static final String TAG = FCommonGlobalConfigure.TAG + " - PolicyCall";
+
+    /**
+     * 计算对冲延迟所需的最少样本数
+     */
+    private static final int MIN_HEDGE_SAMPLES = 20;
+
+    /**
+     * 延迟调度线程，用于重试等待、对冲及整体超时
+     */
+    private static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "http-policy-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * 各主机最近的请求耗时
+     */
+    private static final ConcurrentHashMap<String, LatencyWindow> LATENCIES = new ConcurrentHashMap<>();
+
+    private final OkHttpClient client;
+    private final Request request;
+    private final RequestPolicy policy;
+    private final Callback callback;
+    private final String host;
+    private final boolean idempotent;
+
+    /**
+     * 进行中的请求
+     */
+    private final List<Call> active = new CopyOnWriteArrayList<>();
+
+    private boolean done = false;
+    private int retries = 0;
+    private long deadline = 0;
+    private Call lastCall;
+    private ScheduledFuture<?> timeoutFuture;
+
+    PolicyCall(OkHttpClient client, Request request, RequestPolicy policy, Callback callback) {
+        this.client = client;
+        this.request = request;
+        this.policy = policy;
+        this.callback = callback;
+        this.host = request.url().host();
+        this.idempotent = RequestPolicy.isIdempotent(request.method());
+    }
+
+    /**
+     * 开始请求
+     */
+    void start() {
+        if (policy.getCallTimeoutMillis() > 0) {
+            deadline = System.currentTimeMillis() + policy.getCallTimeoutMillis();
+            timeoutFuture = SCHEDULER.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    onTimeout();
+                }
+            }, policy.getCallTimeoutMillis(), TimeUnit.MILLISECONDS);
+        }
+        enqueue(false);
+        scheduleHedge();
+    }
+
+    // 发起一次请求
+    private void enqueue(boolean hedge) {
+        Call call = client.newCall(request);
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            active.add(call);
+            lastCall = call;
+        }
+        if (hedge) {
+            Logger.v(TAG, "hedge request: %s", request.url());
+        }
+        call.enqueue(new AttemptCallback());
+    }
+
+    // 首个请求超过对冲延迟仍未返回时发起对冲请求
+    private void scheduleHedge() {
+        if (!policy.isHedging() || !"GET".equalsIgnoreCase(request.method())) {
+            return;
+        }
+        long delay = policy.getHedgeDelayMillis();
+        if (delay <= 0) {
+            LatencyWindow window = LATENCIES.get(host);
+            delay = window == null ? -1 : window.percentile(95, MIN_HEDGE_SAMPLES);
+        }
+        if (delay <= 0) {
+            return;
+        }
+        SCHEDULER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                boolean hedge;
+                synchronized (PolicyCall.this) {
+                    hedge = !done && active.size() == 1 && retries == 0;
+                }
+                if (hedge) {
+                    enqueue(true);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    // 整体超时，取消所有进行中的请求
+    private void onTimeout() {
+        Call call;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            done = true;
+            call = lastCall;
+        }
+        cancelActive();
+        callback.onFailure(call, new InterruptedIOException("call timeout after " + policy.getCallTimeoutMillis() + "ms"));
+    }
+
+    // 是否可以重试，调用方需持有锁
+    private boolean canRetry() {
+        if (!idempotent || retries >= policy.getMaxRetries()) {
+            return false;
+        }
+        return deadline == 0 || System.currentTimeMillis() < deadline;
+    }
+
+    // 等待退避时间后重试
+    private void scheduleRetry() {
+        long backoff = policy.getBackoffMillis(retries);
+        retries++;
+        Logger.v(TAG, "retry %d/%d after %dms: %s", retries, policy.getMaxRetries(), backoff, request.url());
+        SCHEDULER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                enqueue(false);
+            }
+        }, backoff, TimeUnit.MILLISECONDS);
+    }
+
+    // 结束请求，取消其他进行中的请求
+    private void finish() {
+        if (timeoutFuture != null) {
+            timeoutFuture.cancel(false);
+        }
+        cancelActive();
+    }
+
+    private void cancelActive() {
+        for (Call call : active) {
+            call.cancel();
+        }
+        active.clear();
+    }
+
+    // 是否可重试的响应码
+    private static boolean isRetryableCode(int code) {
+        return code == 408 || code == 429 || code == 500 || code == 502 || code == 503 || code == 504;
+    }
+
+    /**
+     * 单次请求回调
+     */
+    private class AttemptCallback implements Callback {
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            synchronized (PolicyCall.this) {
+                active.remove(call);
+                if (done || !active.isEmpty()) {
+                    // 已结束或对冲请求仍在进行
+                    return;
+                }
+                if (canRetry()) {
+                    scheduleRetry();
+                    return;
+                }
+                done = true;
+            }
+            finish();
+            callback.onFailure(call, e);
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) throws IOException {
+            synchronized (PolicyCall.this) {
+                active.remove(call);
+                if (done) {
+                    response.close();
+                    return;
+                }
+                if (isRetryableCode(response.code())) {
+                    if (!active.isEmpty()) {
+                        // 对冲请求仍在进行，等待其结果
+                        response.close();
+                        return;
+                    }
+                    if (canRetry()) {
+                        response.close();
+                        scheduleRetry();
+                        return;
+                    }
+                }
+                done = true;
+            }
+            finish();
+            callback.onResponse(call, response);
+        }
+    }
+
+    /**
+     * 记录请求耗时
+     *
+     * @param host   主机
+     * @param millis 耗时
+     */
+    static void record(String host, long millis) {
+        LatencyWindow window = LATENCIES.get(host);
+        if (window == null) {
+            LatencyWindow created = new LatencyWindow();
+            window = LATENCIES.putIfAbsent(host, created);
+            if (window == null) {
+                window = created;
+            }
+        }
+        window.add(millis);
+    }
+
+    /**
+     * 主机最近请求耗时，固定大小环形缓冲
+     */
+    private static class LatencyWindow {
+        private static final int SIZE = 128;
+        private final long[] samples = new long[SIZE];
+        private final AtomicInteger count = new AtomicInteger();
+
+        void add(long millis) {
+            samples[(count.getAndIncrement() & Integer.MAX_VALUE) % SIZE] = millis;
+        }
+
+        long percentile(int percent, int minSamples) {
+            int n = Math.min(count.get() & Integer.MAX_VALUE, SIZE);
+            if (n < minSamples) {
+                return -1;
+            }
+            long[] copy = Arrays.copyOf(samples, n);
+            Arrays.sort(copy);
+            return copy[Math.min(n - 1, n * percent / 100)];
+        }
+    }
+
+    /**
+     * 按请求tag中的{@link RequestPolicy}设置连接、读、写超时的拦截器，同时记录各主机的请求耗时及磁盘缓存命中
+     */
+    static class TimeoutInterceptor implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Object tag = chain.request().tag();
+            if (tag instanceof RequestPolicy) {
+                RequestPolicy policy = (RequestPolicy) tag;
+                if (policy.getConnectTimeoutMillis() > 0) {
+                    chain = chain.withConnectTimeout((int) policy.getConnectTimeoutMillis(), TimeUnit.MILLISECONDS);
+                }
+                if (policy.getReadTimeoutMillis() > 0) {
+                    chain = chain.withReadTimeout((int) policy.getReadTimeoutMillis(), TimeUnit.MILLISECONDS);
+                }
+                if (policy.getWriteTimeoutMillis() > 0) {
+                    chain = chain.withWriteTimeout((int) policy.getWriteTimeoutMillis(), TimeUnit.MILLISECONDS);
+                }
+            }
+            long start = System.currentTimeMillis();
+            long startNanos = System.nanoTime();
+            Response response = chain.proceed(chain.request());
+            if (response.networkResponse() != null) {
+                record(chain.request().url().host(), System.currentTimeMillis() - start);
+            } else if (response.cacheResponse() != null) {
+                // 由磁盘缓存直接返回
+                HttpMetrics.recordCacheHit(chain.request().url().host(), System.nanoTime() - startNanos);
+            }
+            return response;
+        }
+    }
+}
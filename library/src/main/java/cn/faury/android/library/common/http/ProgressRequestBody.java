@@ -0,0 +1,90 @@
+package cn.faury.android.library.common.http;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+/**
+ * 带上传进度的请求体，通过计数Sink统计已写出字节数，进度回调按时间节流
+ */
+
+public class ProgressRequestBody extends RequestBody {
+
+    /**
+     * 默认进度回调最小间隔（毫秒）
+     */
+    public static final long DEFAULT_PROGRESS_INTERVAL = 200;
+
+    private final RequestBody delegate;
+
+    private final HttpRequest.OnUploadListener listener;
+
+    private final long progressInterval;
+
+    /**
+     * 构造函数
+     *
+     * @param delegate         原请求体
+     * @param listener         上传监听器
+     * @param progressInterval 进度回调最小间隔（毫秒）
+     */
+    public ProgressRequestBody(RequestBody delegate, HttpRequest.OnUploadListener listener, long progressInterval) {
+        this.delegate = delegate;
+        this.listener = listener;
+        this.progressInterval = progressInterval;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return delegate.contentLength();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        CountingSink countingSink = new CountingSink(sink, contentLength());
+        BufferedSink bufferedSink = Okio.buffer(countingSink);
+        delegate.writeTo(bufferedSink);
+        bufferedSink.flush();
+        // 长度未知或最后一次回调被节流时补充完成进度
+        if (countingSink.notified != countingSink.written) {
+            listener.onUploading(countingSink.written, countingSink.total);
+        }
+    }
+
+    /**
+     * 计数Sink
+     */
+    private class CountingSink extends ForwardingSink {
+        private final long total;
+        private long written = 0;
+        private long notified = 0;
+        private long lastNotifyTime = 0;
+
+        CountingSink(BufferedSink delegate, long total) {
+            super(delegate);
+            this.total = total;
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            super.write(source, byteCount);
+            written += byteCount;
+            long now = System.currentTimeMillis();
+            if (now - lastNotifyTime >= progressInterval || written == total) {
+                lastNotifyTime = now;
+                notified = written;
+                listener.onUploading(written, total);
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package cn.faury.android.library.common.http;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * 查询参数拼接
+ * <p>
+ * 直接遍历参数Map，按UTF-8进行百分号编码（保留字母、数字及-._~），不经过中间对象；
+ * 拼接使用线程内复用的StringBuilder，最终只生成一个字符串。可按参数名排序，保证相同参数生成相同的字符串
+ */
+
+public final class QueryStringBuilder {
+
+    /**
+     * 线程内复用的缓冲最大容量，超过后丢弃，避免长期占用大块内存
+     */
+    private static final int MAX_BUFFER_CAPACITY = 8 * 1024;
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    private QueryStringBuilder() {
+    }
+
+    /**
+     * 生成查询字符串，key或value为null的参数忽略
+     *
+     * @param params 参数
+     * @param sorted 是否按参数名排序
+     * @return 查询字符串，没有参数时返回空字符串
+     */
+    public static String build(Map<String, String> params, boolean sorted) {
+        if (params == null || params.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = obtain();
+        append(sb, params, sorted, false);
+        return release(sb);
+    }
+
+    /**
+     * 在地址后追加查询参数
+     *
+     * @param url    地址
+     * @param params 参数
+     * @param sorted 是否按参数名排序
+     * @return 追加参数后的地址
+     */
+    public static String appendToUrl(String url, Map<String, String> params, boolean sorted) {
+        if (params == null || params.isEmpty()) {
+            return url;
+        }
+        StringBuilder sb = obtain();
+        sb.append(url);
+        int mark = sb.length();
+        sb.append(url.indexOf('?') >= 0 ? '&' : '?');
+        if (!append(sb, params, sorted, false)) {
+            // 没有有效参数，去掉分隔符
+            sb.setLength(mark);
+        }
+        return release(sb);
+    }
+
+    /**
+     * 向sb中追加编码后的参数
+     *
+     * @param sb     目标
+     * @param params 参数
+     * @param sorted 是否按参数名排序
+     * @param form   是否按表单格式编码（空格编码为+）
+     * @return 是否追加了参数
+     */
+    public static boolean append(StringBuilder sb, Map<String, String> params, boolean sorted, boolean form) {
+        if (params == null || params.isEmpty()) {
+            return false;
+        }
+        boolean first = true;
+        if (!sorted || params instanceof SortedMap) {
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                if (appendPair(sb, entry.getKey(), entry.getValue(), first, form)) {
+                    first = false;
+                }
+            }
+        } else {
+            String[] keys = params.keySet().toArray(new String[params.size()]);
+            int count = 0;
+            for (String key : keys) {
+                if (key != null) {
+                    keys[count++] = key;
+                }
+            }
+            Arrays.sort(keys, 0, count);
+            for (int i = 0; i < count; i++) {
+                if (appendPair(sb, keys[i], params.get(keys[i]), first, form)) {
+                    first = false;
+                }
+            }
+        }
+        return !first;
+    }
+
+    /**
+     * 按UTF-8百分号编码后追加
+     *
+     * @param sb    目标
+     * @param value 原始字符串
+     * @param form  是否按表单格式编码（空格编码为+）
+     */
+    public static void appendEncoded(StringBuilder sb, String value, boolean form) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '.' || c == '_' || c == '~') {
+                sb.append(c);
+            } else if (c == ' ' && form) {
+                sb.append('+');
+            } else if (c < 0x80) {
+                appendByte(sb, c);
+            } else if (c < 0x800) {
+                appendByte(sb, 0xC0 | (c >> 6));
+                appendByte(sb, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                appendByte(sb, 0xF0 | (codePoint >> 18));
+                appendByte(sb, 0x80 | ((codePoint >> 12) & 0x3F));
+                appendByte(sb, 0x80 | ((codePoint >> 6) & 0x3F));
+                appendByte(sb, 0x80 | (codePoint & 0x3F));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                // 不成对的代理字符，与String.getBytes一致替换为?
+                appendByte(sb, '?');
+            } else {
+                appendByte(sb, 0xE0 | (c >> 12));
+                appendByte(sb, 0x80 | ((c >> 6) & 0x3F));
+                appendByte(sb, 0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    // 追加一个参数，key或value为null时忽略
+    private static boolean appendPair(StringBuilder sb, String key, String value, boolean first, boolean form) {
+        if (key == null || value == null) {
+            return false;
+        }
+        if (!first) {
+            sb.append('&');
+        }
+        appendEncoded(sb, key, form);
+        sb.append('=');
+        appendEncoded(sb, value, form);
+        return true;
+    }
+
+    // 追加%XX
+    private static void appendByte(StringBuilder sb, int b) {
+        sb.append('%').append(HEX[(b >> 4) & 0x0F]).append(HEX[b & 0x0F]);
+    }
+
+    // 获取线程内缓冲
+    private static StringBuilder obtain() {
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        return sb;
+    }
+
+    // 生成字符串，缓冲过大时丢弃
+    private static String release(StringBuilder sb) {
+        String result = sb.toString();
+        if (sb.capacity() > MAX_BUFFER_CAPACITY) {
+            BUFFER.set(new StringBuilder(256));
+        }
+        return result;
+    }
+}
@@ -145,23 +145,22 @@ public class RequestParams implements Serializable {
     }
 
     /**
-     * 获取参数字符串形式
+     * 获取参数字符串形式，参数名及参数值按UTF-8进行百分号编码
      *
      * @return 参数字符串
      */
     public String getQueryString() {
-        StringBuffer query = new StringBuffer();
-        if (this.stringParams != null) {
-            Iterator<Map.Entry<String, String>> params = this.stringParams.entrySet().iterator();
-            while (params.hasNext()) {
-                Map.Entry<String, String> param = params.next();
-                query.append(String.format("%s=%s", param.getKey(), param.getValue()));
-                if (params.hasNext()) {
-                    query.append("&");
-                }
-            }
-        }
-        return query.toString();
+        return getQueryString(false);
+    }
+
+    /**
+     * 获取参数字符串形式，参数名及参数值按UTF-8进行百分号编码
+     *
+     * @param sorted 是否按参数名排序
+     * @return 参数字符串
+     */
+    public String getQueryString(boolean sorted) {
+        return QueryStringBuilder.build(this.stringParams, sorted);
     }
 
     public ConcurrentHashMap<String, String> getStringParams() {
@@ -0,0 +1,246 @@
+package cn.faury.android.library.common.http;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 请求策略：超时、重试及对冲请求
+ * <p>
+ * 连接、读、写超时为0时使用client的配置；整体超时覆盖所有重试及对冲请求，0表示不限制。
+ * 只有幂等请求（GET、HEAD、PUT、DELETE、OPTIONS）会重试，重试间隔按指数退避并加随机抖动；
+ * 对冲请求只用于GET：首个请求超过对冲延迟仍未返回时再发起一个相同请求，使用先返回的结果。
+ * 对冲延迟为0时使用该主机最近请求耗时的95分位值。
+ * 请求体压缩默认关闭，开启后不小于阈值（或长度未知）的请求体以gzip流式压缩发送，参考{@link GzipRequestInterceptor}
+ */
+
+public class RequestPolicy {
+
+    /**
+     * 默认重试退避基数（毫秒）
+     */
+    public static final long DEFAULT_BACKOFF_BASE = 200;
+
+    /**
+     * 默认重试退避上限（毫秒）
+     */
+    public static final long DEFAULT_BACKOFF_MAX = 5000;
+
+    /**
+     * 全局默认策略
+     */
+    private static volatile RequestPolicy defaultPolicy = new RequestPolicy();
+
+    private static final Random RANDOM = new Random();
+
+    private long connectTimeoutMillis = 0;
+    private long readTimeoutMillis = 0;
+    private long writeTimeoutMillis = 0;
+    private long callTimeoutMillis = 0;
+    private int maxRetries = 0;
+    private long backoffBaseMillis = DEFAULT_BACKOFF_BASE;
+    private long backoffMaxMillis = DEFAULT_BACKOFF_MAX;
+    private boolean hedging = false;
+    private long hedgeDelayMillis = 0;
+    private long compressThreshold = -1;
+
+    /**
+     * 获取全局默认策略
+     *
+     * @return 默认策略
+     */
+    public static RequestPolicy getDefault() {
+        return defaultPolicy;
+    }
+
+    /**
+     * 设置全局默认策略，对之后发起的请求生效
+     *
+     * @param policy 默认策略
+     */
+    public static void setDefault(RequestPolicy policy) {
+        defaultPolicy = policy == null ? new RequestPolicy() : policy;
+    }
+
+    /**
+     * 复制策略，用于在默认策略基础上修改单个请求的策略
+     *
+     * @return 新的策略对象
+     */
+    public RequestPolicy copy() {
+        return new RequestPolicy()
+                .setConnectTimeoutMillis(connectTimeoutMillis)
+                .setReadTimeoutMillis(readTimeoutMillis)
+                .setWriteTimeoutMillis(writeTimeoutMillis)
+                .setCallTimeoutMillis(callTimeoutMillis)
+                .setMaxRetries(maxRetries)
+                .setBackoff(backoffBaseMillis, backoffMaxMillis)
+                .setHedging(hedging, hedgeDelayMillis)
+                .setCompressThreshold(compressThreshold);
+    }
+
+    public long getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public RequestPolicy setConnectTimeoutMillis(long connectTimeoutMillis) {
+        this.connectTimeoutMillis = Math.max(0, connectTimeoutMillis);
+        return this;
+    }
+
+    public long getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    public RequestPolicy setReadTimeoutMillis(long readTimeoutMillis) {
+        this.readTimeoutMillis = Math.max(0, readTimeoutMillis);
+        return this;
+    }
+
+    public long getWriteTimeoutMillis() {
+        return writeTimeoutMillis;
+    }
+
+    public RequestPolicy setWriteTimeoutMillis(long writeTimeoutMillis) {
+        this.writeTimeoutMillis = Math.max(0, writeTimeoutMillis);
+        return this;
+    }
+
+    public long getCallTimeoutMillis() {
+        return callTimeoutMillis;
+    }
+
+    /**
+     * 设置整体超时，包含所有重试及对冲请求
+     *
+     * @param callTimeoutMillis 整体超时（毫秒），0表示不限制
+     * @return 当前策略
+     */
+    public RequestPolicy setCallTimeoutMillis(long callTimeoutMillis) {
+        this.callTimeoutMillis = Math.max(0, callTimeoutMillis);
+        return this;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * 设置最大重试次数，只对幂等请求生效
+     *
+     * @param maxRetries 最大重试次数
+     * @return 当前策略
+     */
+    public RequestPolicy setMaxRetries(int maxRetries) {
+        this.maxRetries = Math.max(0, maxRetries);
+        return this;
+    }
+
+    public long getBackoffBaseMillis() {
+        return backoffBaseMillis;
+    }
+
+    public long getBackoffMaxMillis() {
+        return backoffMaxMillis;
+    }
+
+    /**
+     * 设置重试退避，第n次重试等待[0, min(max, base * 2^n))之间的随机时间
+     *
+     * @param baseMillis 退避基数（毫秒）
+     * @param maxMillis  退避上限（毫秒）
+     * @return 当前策略
+     */
+    public RequestPolicy setBackoff(long baseMillis, long maxMillis) {
+        this.backoffBaseMillis = Math.max(1, baseMillis);
+        this.backoffMaxMillis = Math.max(this.backoffBaseMillis, maxMillis);
+        return this;
+    }
+
+    public boolean isHedging() {
+        return hedging;
+    }
+
+    public long getHedgeDelayMillis() {
+        return hedgeDelayMillis;
+    }
+
+    /**
+     * 设置对冲请求
+     *
+     * @param hedging          是否启用，只对GET请求生效
+     * @param hedgeDelayMillis 对冲延迟（毫秒），0表示使用该主机请求耗时的95分位值
+     * @return 当前策略
+     */
+    public RequestPolicy setHedging(boolean hedging, long hedgeDelayMillis) {
+        this.hedging = hedging;
+        this.hedgeDelayMillis = Math.max(0, hedgeDelayMillis);
+        return this;
+    }
+
+    public long getCompressThreshold() {
+        return compressThreshold;
+    }
+
+    /**
+     * 设置请求体gzip压缩阈值
+     *
+     * @param compressThreshold 不小于该字节数的请求体压缩后发送，长度未知的请求体总是压缩；小于0表示不压缩
+     * @return 当前策略
+     */
+    public RequestPolicy setCompressThreshold(long compressThreshold) {
+        this.compressThreshold = compressThreshold < 0 ? -1 : compressThreshold;
+        return this;
+    }
+
+    /**
+     * 是否压缩请求体
+     *
+     * @return 是否压缩
+     */
+    public boolean isCompressionEnabled() {
+        return compressThreshold >= 0;
+    }
+
+    /**
+     * 是否只需要设置超时，不需要重试、对冲及整体超时
+     *
+     * @return 是否简单策略
+     */
+    public boolean isSimple() {
+        return maxRetries == 0 && !hedging && callTimeoutMillis == 0;
+    }
+
+    /**
+     * 计算重试等待时间
+     *
+     * @param retry 第几次重试，从0开始
+     * @return 等待时间（毫秒）
+     */
+    public long getBackoffMillis(int retry) {
+        long ceiling = backoffMaxMillis;
+        if (retry < 30) {
+            ceiling = Math.min(backoffMaxMillis, backoffBaseMillis << retry);
+        }
+        synchronized (RANDOM) {
+            return (long) (RANDOM.nextDouble() * ceiling);
+        }
+    }
+
+    /**
+     * 请求方法是否幂等
+     *
+     * @param method 请求方法
+     * @return 是否幂等
+     */
+    public static boolean isIdempotent(String method) {
+        return "GET".equalsIgnoreCase(method) || "HEAD".equalsIgnoreCase(method) || "PUT".equalsIgnoreCase(method)
+                || "DELETE".equalsIgnoreCase(method) || "OPTIONS".equalsIgnoreCase(method);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "RequestPolicy[connect=%d,read=%d,write=%d,call=%d,retries=%d,backoff=%d-%d,hedging=%s,hedgeDelay=%d,compressThreshold=%d]",
+                connectTimeoutMillis, readTimeoutMillis, writeTimeoutMillis, callTimeoutMillis, maxRetries,
+                backoffBaseMillis, backoffMaxMillis, hedging, hedgeDelayMillis, compressThreshold);
+    }
+}
@@ -0,0 +1,76 @@
+package cn.faury.android.library.common.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 相同请求合并
+ * <p>
+ * 同一个key的请求进行中时，后续请求只登记等待者，不再发起新的请求；请求结束时取出所有等待者统一分发结果
+ */
+
+public class SingleFlight<T> {
+
+    /**
+     * 进行中的请求及其等待者
+     */
+    private final Map<String, List<T>> flights = new HashMap<>();
+
+    /**
+     * 被合并的请求数
+     */
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * 加入请求
+     *
+     * @param key    请求key
+     * @param waiter 等待者
+     * @return 是否为首个请求，true时调用方需发起请求并在结束时调用{@link #complete(String)}
+     */
+    public synchronized boolean join(String key, T waiter) {
+        List<T> waiters = flights.get(key);
+        if (waiters != null) {
+            waiters.add(waiter);
+            coalescedCount.incrementAndGet();
+            return false;
+        }
+        waiters = new ArrayList<>(2);
+        waiters.add(waiter);
+        flights.put(key, waiters);
+        return true;
+    }
+
+    /**
+     * 结束请求，之后相同key的请求将重新发起
+     *
+     * @param key 请求key
+     * @return 所有等待者，首个请求的等待者在最前
+     */
+    public synchronized List<T> complete(String key) {
+        List<T> waiters = flights.remove(key);
+        return waiters == null ? Collections.<T>emptyList() : waiters;
+    }
+
+    /**
+     * 获取进行中的请求数
+     *
+     * @return 请求数
+     */
+    public synchronized int getInFlightCount() {
+        return flights.size();
+    }
+
+    /**
+     * 获取被合并的请求数
+     *
+     * @return 请求数
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+}
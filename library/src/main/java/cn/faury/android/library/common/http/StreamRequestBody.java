@@ -0,0 +1,73 @@
+package cn.faury.android.library.common.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * 输入流请求体，写出时直接从输入流复制到网络，不在内存中缓存
+ * <p>
+ * 输入流只能读取一次，请求体不能被重复写出：OkHttp在连接失败重试、307/308重定向或401认证后会再次写出请求体，
+ * 此时抛出IOException使请求失败，而不是发送不完整的数据。因此含输入流的请求（包括multipart）不能被重试
+ */
+
+public class StreamRequestBody extends RequestBody {
+
+    private final MediaType contentType;
+
+    private final InputStream inputStream;
+
+    private final boolean autoClose;
+
+    private final AtomicBoolean written = new AtomicBoolean(false);
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * 构造函数
+     *
+     * @param contentType 内容类型
+     * @param inputStream 输入流
+     * @param autoClose   写出后是否关闭输入流
+     */
+    public StreamRequestBody(MediaType contentType, InputStream inputStream, boolean autoClose) {
+        this.contentType = contentType;
+        this.inputStream = inputStream;
+        this.autoClose = autoClose;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        if (!written.compareAndSet(false, true)) {
+            throw new IOException("stream request body cannot be written twice");
+        }
+        try {
+            sink.writeAll(Okio.source(inputStream));
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * 关闭输入流，autoClose为false时不处理；请求在写出前被取消或失败时由调用方调用，可重复调用
+     */
+    public void close() {
+        if (autoClose && closed.compareAndSet(false, true)) {
+            try {
+                inputStream.close();
+            } catch (IOException ignored) {
+
+            }
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package cn.faury.android.library.common.http.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cn.faury.android.library.common.core.FCommonGlobalConfigure;
+import cn.faury.android.library.common.helper.Logger;
+import okhttp3.Call;
+import okhttp3.EventListener;
+
+/**
+ * 网络请求指标
+ * <p>
+ * 通过OkHttp的{@link EventListener}按主机统计DNS、连接、TLS、首字节、响应体及总耗时直方图，
+ * 以及连接复用率、缓存命中率、收发字节数和请求体压缩率、压缩耗时。统计使用原子变量，不加锁；
+ * 关闭时{@link #FACTORY}直接返回{@link EventListener#NONE}，几乎没有开销
+ */
+
+public final class HttpMetrics {
+
+    /**
+     * 日志tag
+     */
+    private static final String TAG = FCommonGlobalConfigure.TAG + " - HttpMetrics";
+
+    /**
+     * 耗时阶段
+     */
+    public enum Phase {
+        DNS, CONNECT, TLS, TTFB, BODY, TOTAL
+    }
+
+    /**
+     * 指标导出器
+     */
+    public interface Exporter {
+        /**
+         * 导出指标快照
+         *
+         * @param snapshot 快照
+         */
+        void export(Snapshot snapshot);
+    }
+
+    /**
+     * 事件监听工厂，安装在共享的根client上
+     */
+    public static final EventListener.Factory FACTORY = new EventListener.Factory() {
+        @Override
+        public EventListener create(Call call) {
+            return enabled ? new MetricsEventListener() : EventListener.NONE;
+        }
+    };
+
+    private static volatile boolean enabled = false;
+
+    private static final ConcurrentHashMap<String, HostMetrics> HOSTS = new ConcurrentHashMap<>();
+
+    private static final List<Exporter> EXPORTERS = new CopyOnWriteArrayList<>();
+
+    private static ScheduledThreadPoolExecutor scheduler;
+
+    private static ScheduledFuture<?> exportFuture;
+
+    private HttpMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 开启或关闭统计，对之后发起的请求生效
+     *
+     * @param enabled 是否开启
+     */
+    public static void setEnabled(boolean enabled) {
+        HttpMetrics.enabled = enabled;
+    }
+
+    /**
+     * 添加导出器
+     *
+     * @param exporter 导出器
+     */
+    public static void addExporter(Exporter exporter) {
+        if (exporter != null) {
+            EXPORTERS.add(exporter);
+        }
+    }
+
+    /**
+     * 移除导出器
+     *
+     * @param exporter 导出器
+     */
+    public static void removeExporter(Exporter exporter) {
+        EXPORTERS.remove(exporter);
+    }
+
+    /**
+     * 立即将当前快照导出到所有导出器
+     */
+    public static void export() {
+        if (EXPORTERS.isEmpty()) {
+            return;
+        }
+        Snapshot snapshot = snapshot();
+        for (Exporter exporter : EXPORTERS) {
+            try {
+                exporter.export(snapshot);
+            } catch (Exception e) {
+                Logger.e(TAG, "export metrics exception:" + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 定期导出，periodMillis小于等于0时停止定期导出
+     *
+     * @param periodMillis 导出间隔（毫秒）
+     */
+    public static synchronized void scheduleExport(long periodMillis) {
+        if (exportFuture != null) {
+            exportFuture.cancel(false);
+            exportFuture = null;
+        }
+        if (periodMillis <= 0) {
+            return;
+        }
+        if (scheduler == null) {
+            scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "http-metrics-exporter");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        exportFuture = scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                export();
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 获取所有主机的指标快照
+     *
+     * @return 快照
+     */
+    public static Snapshot snapshot() {
+        Map<String, HostSnapshot> hosts = new HashMap<>();
+        for (Map.Entry<String, HostMetrics> entry : HOSTS.entrySet()) {
+            hosts.put(entry.getKey(), entry.getValue().snapshot(entry.getKey()));
+        }
+        return new Snapshot(System.currentTimeMillis(), hosts);
+    }
+
+    /**
+     * 清空统计数据
+     */
+    public static void reset() {
+        HOSTS.clear();
+    }
+
+    /**
+     * 记录一次请求体压缩，统计关闭时忽略
+     *
+     * @param host            主机
+     * @param rawBytes        压缩前字节数
+     * @param compressedBytes 压缩后字节数
+     * @param nanos           压缩耗时（纳秒）
+     */
+    public static void recordCompression(String host, long rawBytes, long compressedBytes, long nanos) {
+        if (!enabled) {
+            return;
+        }
+        HostMetrics metrics = host(host);
+        metrics.compressions.incrementAndGet();
+        metrics.compressRawBytes.addAndGet(rawBytes);
+        metrics.compressedBytes.addAndGet(compressedBytes);
+        metrics.compressNanos.addAndGet(nanos);
+    }
+
+    /**
+     * 记录一次由磁盘缓存直接返回的请求，统计关闭时忽略；此类请求不会触发{@link EventListener#callEnd(Call)}
+     *
+     * @param host  主机
+     * @param nanos 请求总耗时（纳秒）
+     */
+    public static void recordCacheHit(String host, long nanos) {
+        if (!enabled) {
+            return;
+        }
+        HostMetrics metrics = host(host);
+        metrics.cacheHits.incrementAndGet();
+        metrics.record(Phase.TOTAL, nanos);
+    }
+
+    // 获取主机指标，不存在时创建
+    static HostMetrics host(String host) {
+        HostMetrics metrics = HOSTS.get(host);
+        if (metrics == null) {
+            HostMetrics created = new HostMetrics();
+            metrics = HOSTS.putIfAbsent(host, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * 单个主机的指标
+     */
+    static class HostMetrics {
+        final LatencyHistogram[] histograms = new LatencyHistogram[Phase.values().length];
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong connections = new AtomicLong();
+        final AtomicLong reusedConnections = new AtomicLong();
+        final AtomicLong cacheHits = new AtomicLong();
+        final AtomicLong conditionalHits = new AtomicLong();
+        final AtomicLong bytesSent = new AtomicLong();
+        final AtomicLong bytesReceived = new AtomicLong();
+        final AtomicLong compressions = new AtomicLong();
+        final AtomicLong compressRawBytes = new AtomicLong();
+        final AtomicLong compressedBytes = new AtomicLong();
+        final AtomicLong compressNanos = new AtomicLong();
+
+        HostMetrics() {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new LatencyHistogram();
+            }
+        }
+
+        void record(Phase phase, long nanos) {
+            histograms[phase.ordinal()].record(nanos);
+        }
+
+        HostSnapshot snapshot(String host) {
+            LatencyHistogram.Snapshot[] snapshots = new LatencyHistogram.Snapshot[histograms.length];
+            for (int i = 0; i < histograms.length; i++) {
+                snapshots[i] = histograms[i].snapshot();
+            }
+            return new HostSnapshot(host, snapshots, calls.get(), failures.get(), connections.get(), reusedConnections.get(),
+                    cacheHits.get(), conditionalHits.get(), bytesSent.get(), bytesReceived.get(),
+                    compressions.get(), compressRawBytes.get(), compressedBytes.get(), compressNanos.get());
+        }
+    }
+
+    /**
+     * 指标快照
+     */
+    public static class Snapshot {
+        private final long timestamp;
+        private final Map<String, HostSnapshot> hosts;
+
+        Snapshot(long timestamp, Map<String, HostSnapshot> hosts) {
+            this.timestamp = timestamp;
+            this.hosts = Collections.unmodifiableMap(hosts);
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * 获取各主机的指标
+         *
+         * @return 主机及其指标
+         */
+        public Map<String, HostSnapshot> getHosts() {
+            return hosts;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("HttpMetrics{");
+            for (HostSnapshot host : hosts.values()) {
+                sb.append('\n').append(host);
+            }
+            return sb.append('}').toString();
+        }
+    }
+
+    /**
+     * 单个主机的指标快照
+     */
+    public static class HostSnapshot {
+        private final String host;
+        private final LatencyHistogram.Snapshot[] histograms;
+        private final long calls;
+        private final long failures;
+        private final long connections;
+        private final long reusedConnections;
+        private final long cacheHits;
+        private final long conditionalHits;
+        private final long bytesSent;
+        private final long bytesReceived;
+        private final long compressions;
+        private final long compressRawBytes;
+        private final long compressedBytes;
+        private final long compressNanos;
+
+        HostSnapshot(String host, LatencyHistogram.Snapshot[] histograms, long calls, long failures, long connections,
+                     long reusedConnections, long cacheHits, long conditionalHits, long bytesSent, long bytesReceived,
+                     long compressions, long compressRawBytes, long compressedBytes, long compressNanos) {
+            this.host = host;
+            this.histograms = histograms;
+            this.calls = calls;
+            this.failures = failures;
+            this.connections = connections;
+            this.reusedConnections = reusedConnections;
+            this.cacheHits = cacheHits;
+            this.conditionalHits = conditionalHits;
+            this.bytesSent = bytesSent;
+            this.bytesReceived = bytesReceived;
+            this.compressions = compressions;
+            this.compressRawBytes = compressRawBytes;
+            this.compressedBytes = compressedBytes;
+            this.compressNanos = compressNanos;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        /**
+         * 获取阶段耗时直方图
+         *
+         * @param phase 阶段
+         * @return 直方图快照
+         */
+        public LatencyHistogram.Snapshot getLatency(Phase phase) {
+            return histograms[phase.ordinal()];
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        public long getCacheHits() {
+            return cacheHits;
+        }
+
+        public long getConditionalHits() {
+            return conditionalHits;
+        }
+
+        /**
+         * 连接复用率
+         *
+         * @return 复用的连接数/获取连接总数
+         */
+        public double getConnectionReuseRatio() {
+            return connections == 0 ? 0 : (double) reusedConnections / connections;
+        }
+
+        /**
+         * 缓存命中率，包括条件请求返回304
+         *
+         * @return 命中数/请求数
+         */
+        public double getCacheHitRate() {
+            return calls == 0 ? 0 : (double) (cacheHits + conditionalHits) / calls;
+        }
+
+        public long getCompressions() {
+            return compressions;
+        }
+
+        /**
+         * 请求体压缩率
+         *
+         * @return 压缩后字节数/压缩前字节数，没有压缩时为1
+         */
+        public double getCompressionRatio() {
+            return compressRawBytes == 0 ? 1 : (double) compressedBytes / compressRawBytes;
+        }
+
+        /**
+         * 请求体压缩累计耗时
+         *
+         * @return 耗时（毫秒）
+         */
+        public double getCompressMillis() {
+            return compressNanos / 1000000.0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.US, "%s: calls=%d,failures=%d,reuse=%.2f,cacheHit=%.2f,sent=%d,received=%d",
+                    host, calls, failures, getConnectionReuseRatio(), getCacheHitRate(), bytesSent, bytesReceived));
+            for (Phase phase : Phase.values()) {
+                sb.append(',').append(phase).append('=').append(histograms[phase.ordinal()]);
+            }
+            if (compressions > 0) {
+                sb.append(String.format(Locale.US, ",compressions=%d,compressRatio=%.2f,compressTime=%.1fms",
+                        compressions, getCompressionRatio(), getCompressMillis()));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package cn.faury.android.library.common.http.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁耗时直方图，按固定毫秒区间计数
+ */
+
+public class LatencyHistogram {
+
+    /**
+     * 各区间上限（毫秒），最后一个区间无上限
+     */
+    static final long[] BOUNDS = new long[]{1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000};
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong sumNanos = new AtomicLong();
+
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时（纳秒），小于0时忽略
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        long millis = nanos / 1000000L;
+        int index = 0;
+        while (index < BOUNDS.length && millis >= BOUNDS[index]) {
+            index++;
+        }
+        buckets.incrementAndGet(index);
+        count.incrementAndGet();
+        sumNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // 重试直到更新成功或已有更大值
+        }
+    }
+
+    /**
+     * 获取当前数据快照
+     *
+     * @return 快照
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return new Snapshot(counts, count.get(), sumNanos.get(), maxNanos.get());
+    }
+
+    /**
+     * 直方图快照
+     */
+    public static class Snapshot {
+        private final long[] buckets;
+        private final long count;
+        private final long sumNanos;
+        private final long maxNanos;
+
+        Snapshot(long[] buckets, long count, long sumNanos, long maxNanos) {
+            this.buckets = buckets;
+            this.count = count;
+            this.sumNanos = sumNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        /**
+         * 获取各区间计数，区间上限参考{@link #getBucketBound(int)}
+         *
+         * @return 各区间计数
+         */
+        public long[] getBuckets() {
+            return buckets.clone();
+        }
+
+        /**
+         * 获取区间上限
+         *
+         * @param index 区间下标
+         * @return 上限（毫秒），最后一个区间为Long.MAX_VALUE
+         */
+        public static long getBucketBound(int index) {
+            return index < BOUNDS.length ? BOUNDS[index] : Long.MAX_VALUE;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getAverageMillis() {
+            return count == 0 ? 0 : sumNanos / 1000000.0 / count;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos / 1000000.0;
+        }
+
+        /**
+         * 估算百分位值，返回所在区间的上限，超出最大区间时返回最大值
+         *
+         * @param percent 百分位，如95
+         * @return 耗时（毫秒）
+         */
+        public double getPercentileMillis(double percent) {
+            if (count == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(count * percent / 100.0);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= target) {
+                    return i < BOUNDS.length ? Math.min(BOUNDS[i], getMaxMillis()) : getMaxMillis();
+                }
+            }
+            return getMaxMillis();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "{count=%d,avg=%.1fms,p50=%.0fms,p95=%.0fms,p99=%.0fms,max=%.1fms}",
+                    count, getAverageMillis(), getPercentileMillis(50), getPercentileMillis(95), getPercentileMillis(99), getMaxMillis());
+        }
+    }
+}
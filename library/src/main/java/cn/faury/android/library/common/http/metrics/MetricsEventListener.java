@@ -0,0 +1,133 @@
+package cn.faury.android.library.common.http.metrics;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 单个请求的事件监听，每个请求一个实例，只在请求结束时写入{@link HttpMetrics}
+ */
+
+class MetricsEventListener extends EventListener {
+
+    private HttpMetrics.HostMetrics metrics;
+    private long callStart;
+    private long dnsStart;
+    private long connectStart;
+    private long secureConnectStart;
+    private long requestSent;
+    private long responseBodyStart;
+    private boolean connected = false;
+    private boolean notModified = false;
+
+    // 当前主机指标
+    private HttpMetrics.HostMetrics metrics(Call call) {
+        if (metrics == null) {
+            metrics = HttpMetrics.host(call.request().url().host());
+        }
+        return metrics;
+    }
+
+    @Override
+    public void callStart(Call call) {
+        callStart = System.nanoTime();
+        metrics(call).calls.incrementAndGet();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        metrics(call).record(HttpMetrics.Phase.DNS, System.nanoTime() - dnsStart);
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStart = System.nanoTime();
+        connected = true;
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        secureConnectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        metrics(call).record(HttpMetrics.Phase.TLS, System.nanoTime() - secureConnectStart);
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        metrics(call).record(HttpMetrics.Phase.CONNECT, System.nanoTime() - connectStart);
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        HttpMetrics.HostMetrics hostMetrics = metrics(call);
+        hostMetrics.connections.incrementAndGet();
+        if (!connected) {
+            hostMetrics.reusedConnections.incrementAndGet();
+        }
+        connected = false;
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        requestSent = System.nanoTime();
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        requestSent = System.nanoTime();
+        metrics(call).bytesSent.addAndGet(byteCount);
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+        metrics(call).record(HttpMetrics.Phase.TTFB, System.nanoTime() - requestSent);
+        notModified = response.code() == 304;
+    }
+
+    @Override
+    public void responseBodyStart(Call call) {
+        responseBodyStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        HttpMetrics.HostMetrics hostMetrics = metrics(call);
+        hostMetrics.record(HttpMetrics.Phase.BODY, System.nanoTime() - responseBodyStart);
+        hostMetrics.bytesReceived.addAndGet(byteCount);
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        HttpMetrics.HostMetrics hostMetrics = metrics(call);
+        hostMetrics.record(HttpMetrics.Phase.TOTAL, System.nanoTime() - callStart);
+        // 磁盘缓存直接返回的请求不会触发callEnd，由拦截器通过HttpMetrics.recordCacheHit统计
+        if (notModified) {
+            hostMetrics.conditionalHits.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        HttpMetrics.HostMetrics hostMetrics = metrics(call);
+        hostMetrics.record(HttpMetrics.Phase.TOTAL, System.nanoTime() - callStart);
+        hostMetrics.failures.incrementAndGet();
+    }
+}
@@ -0,0 +1,480 @@
+package cn.faury.android.library.common.sqlite;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cn.faury.android.library.common.helper.Logger;
+import cn.faury.android.library.common.sqlite.dao.DaoCallback;
+
+/**
+ * 数据库异步执行器，每个数据库一个
+ * <p>
+ * 写操作由单个写线程顺序执行，在合并窗口内连续到达的写操作合并到一个事务中提交；
+ * 自行开启事务的写操作不参与合并，单独执行，避免其内部事务失败时整个合并事务被静默回滚。
+ * 读操作由读线程池并行执行
+ */
+
+public class DatabaseExecutor {
+    /**
+     * 日志标签
+     */
+    private static final String TAG = DatabaseExecutor.class.getName();
+
+    /**
+     * 默认写合并窗口（毫秒）
+     */
+    public static final long DEFAULT_COALESCE_WINDOW_MILLIS = 5;
+
+    /**
+     * 默认单个事务最多合并的写操作数
+     */
+    public static final int DEFAULT_MAX_COALESCE_SIZE = 100;
+
+    /**
+     * 默认读线程数
+     */
+    public static final int DEFAULT_READER_COUNT = 2;
+
+    private final DatabaseManager manager;
+
+    private final String dbName;
+
+    /**
+     * 写操作队列
+     */
+    private final LinkedBlockingQueue<DatabaseTask<?>> writeQueue = new LinkedBlockingQueue<>();
+
+    /**
+     * 读线程池
+     */
+    private final ThreadPoolExecutor readExecutor;
+
+    /**
+     * 写线程
+     */
+    private Thread writerThread;
+
+    private volatile boolean shutdown = false;
+
+    private volatile long coalesceWindowMillis = DEFAULT_COALESCE_WINDOW_MILLIS;
+
+    private volatile int maxCoalesceSize = DEFAULT_MAX_COALESCE_SIZE;
+
+    // 统计信息
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong writeLatencyNanos = new AtomicLong();
+    private final AtomicLong maxWriteLatencyNanos = new AtomicLong();
+    private final AtomicLong readCount = new AtomicLong();
+    private final AtomicLong readLatencyNanos = new AtomicLong();
+    private final AtomicLong maxReadLatencyNanos = new AtomicLong();
+    private final AtomicLong transactionCount = new AtomicLong();
+    private final AtomicLong coalescedWriteCount = new AtomicLong();
+
+    /**
+     * 构造函数
+     *
+     * @param manager     数据库管理器
+     * @param dbName      数据库名
+     * @param readerCount 读线程数
+     */
+    public DatabaseExecutor(DatabaseManager manager, final String dbName, int readerCount) {
+        this.manager = manager;
+        this.dbName = dbName;
+        final AtomicInteger index = new AtomicInteger();
+        int count = Math.max(1, readerCount);
+        this.readExecutor = new ThreadPoolExecutor(count, count, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "DatabaseExecutor-" + dbName + "-reader-" + index.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.readExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 设置写合并窗口
+     *
+     * @param coalesceWindowMillis 合并窗口（毫秒），0表示只合并已在队列中的写操作
+     * @param maxCoalesceSize      单个事务最多合并的写操作数
+     */
+    public void setCoalesce(long coalesceWindowMillis, int maxCoalesceSize) {
+        this.coalesceWindowMillis = Math.max(0, coalesceWindowMillis);
+        this.maxCoalesceSize = Math.max(1, maxCoalesceSize);
+    }
+
+    /**
+     * 提交写操作
+     *
+     * @param callable 写操作
+     * @param callback 回调，可以为null
+     * @return 操作结果
+     */
+    public <T> Future<T> submitWrite(Callable<T> callable, DaoCallback<T> callback) {
+        return submitWrite(callable, callback, true);
+    }
+
+    /**
+     * 提交写操作
+     *
+     * @param callable 写操作
+     * @param callback 回调，可以为null
+     * @param coalesce 是否可以合并到其他写操作的事务中，写操作自行开启事务时传false
+     * @return 操作结果
+     */
+    public <T> Future<T> submitWrite(Callable<T> callable, DaoCallback<T> callback, boolean coalesce) {
+        DatabaseTask<T> task = new DatabaseTask<>(callable, callback, true);
+        task.coalesce = coalesce;
+        if (shutdown) {
+            task.fail(new IllegalStateException("executor " + dbName + " is shutdown"));
+            return task;
+        }
+        ensureWriterThread();
+        writeQueue.offer(task);
+        return task;
+    }
+
+    /**
+     * 提交读操作
+     *
+     * @param callable 读操作
+     * @param callback 回调，可以为null
+     * @return 操作结果
+     */
+    public <T> Future<T> submitRead(Callable<T> callable, DaoCallback<T> callback) {
+        DatabaseTask<T> task = new DatabaseTask<>(callable, callback, false);
+        if (shutdown) {
+            task.fail(new IllegalStateException("executor " + dbName + " is shutdown"));
+            return task;
+        }
+        readExecutor.execute(task);
+        return task;
+    }
+
+    /**
+     * 停止接收新操作，已提交的操作执行完成后线程退出
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        readExecutor.shutdown();
+        if (writerThread != null) {
+            writerThread.interrupt();
+        }
+    }
+
+    public String getDbName() {
+        return dbName;
+    }
+
+    /**
+     * 获取等待执行的写操作数
+     *
+     * @return 写队列深度
+     */
+    public int getWriteQueueDepth() {
+        return writeQueue.size();
+    }
+
+    /**
+     * 获取等待执行的读操作数
+     *
+     * @return 读队列深度
+     */
+    public int getReadQueueDepth() {
+        return readExecutor.getQueue().size();
+    }
+
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+
+    public long getReadCount() {
+        return readCount.get();
+    }
+
+    /**
+     * 获取写事务数，合并的写操作共用一个事务
+     *
+     * @return 写事务数
+     */
+    public long getTransactionCount() {
+        return transactionCount.get();
+    }
+
+    /**
+     * 获取被合并到其他写操作事务中的写操作数
+     *
+     * @return 合并的写操作数
+     */
+    public long getCoalescedWriteCount() {
+        return coalescedWriteCount.get();
+    }
+
+    /**
+     * 获取写操作平均延迟（提交到完成）
+     *
+     * @return 平均延迟（毫秒）
+     */
+    public double getAverageWriteLatencyMillis() {
+        long count = writeCount.get();
+        return count == 0 ? 0 : writeLatencyNanos.get() / 1e6 / count;
+    }
+
+    public double getMaxWriteLatencyMillis() {
+        return maxWriteLatencyNanos.get() / 1e6;
+    }
+
+    /**
+     * 获取读操作平均延迟（提交到完成）
+     *
+     * @return 平均延迟（毫秒）
+     */
+    public double getAverageReadLatencyMillis() {
+        long count = readCount.get();
+        return count == 0 ? 0 : readLatencyNanos.get() / 1e6 / count;
+    }
+
+    public double getMaxReadLatencyMillis() {
+        return maxReadLatencyNanos.get() / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return "DatabaseExecutor[db=" + dbName +
+                ",writeQueue=" + getWriteQueueDepth() +
+                ",readQueue=" + getReadQueueDepth() +
+                ",writes=" + getWriteCount() +
+                ",transactions=" + getTransactionCount() +
+                ",coalesced=" + getCoalescedWriteCount() +
+                ",avgWrite=" + getAverageWriteLatencyMillis() + "ms" +
+                ",reads=" + getReadCount() +
+                ",avgRead=" + getAverageReadLatencyMillis() + "ms]";
+    }
+
+    // 懒加载写线程
+    private synchronized void ensureWriterThread() {
+        if (writerThread == null) {
+            writerThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    writeLoop();
+                }
+            }, "DatabaseExecutor-" + dbName + "-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+    }
+
+    // 写线程主循环
+    private void writeLoop() {
+        List<DatabaseTask<?>> batch = new ArrayList<>();
+        while (true) {
+            try {
+                DatabaseTask<?> first = shutdown ? writeQueue.poll() : writeQueue.take();
+                if (first == null) {
+                    break;
+                }
+                batch.add(first);
+                collectCoalesced(batch);
+            } catch (InterruptedException e) {
+                if (!shutdown) {
+                    continue;
+                }
+                writeQueue.drainTo(batch, maxCoalesceSize);
+                if (batch.isEmpty()) {
+                    break;
+                }
+            }
+            runWrites(batch);
+            batch.clear();
+        }
+        Logger.v(TAG, "writer of " + dbName + " stopped");
+    }
+
+    // 收集合并窗口内的写操作
+    private void collectCoalesced(List<DatabaseTask<?>> batch) throws InterruptedException {
+        long window = coalesceWindowMillis;
+        int max = maxCoalesceSize;
+        if (window <= 0 || shutdown) {
+            writeQueue.drainTo(batch, max - batch.size());
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(window);
+        while (batch.size() < max) {
+            long remaining = deadline - System.nanoTime();
+            DatabaseTask<?> task = remaining > 0 ? writeQueue.poll(remaining, TimeUnit.NANOSECONDS) : writeQueue.poll();
+            if (task == null) {
+                break;
+            }
+            batch.add(task);
+        }
+    }
+
+    // 按提交顺序执行写操作，连续的可合并写操作共用一个事务，其他写操作单独执行
+    private void runWrites(List<DatabaseTask<?>> batch) {
+        List<DatabaseTask<?>> group = new ArrayList<>();
+        for (DatabaseTask<?> task : batch) {
+            if (task.coalesce) {
+                group.add(task);
+                continue;
+            }
+            runCoalesced(group);
+            group.clear();
+            transactionCount.incrementAndGet();
+            task.run();
+        }
+        runCoalesced(group);
+    }
+
+    // 在一个事务中执行写操作，事务提交后再通知结果
+    private void runCoalesced(List<DatabaseTask<?>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (batch.size() == 1) {
+            transactionCount.incrementAndGet();
+            batch.get(0).run();
+            return;
+        }
+        SQLiteDatabase db;
+        try {
+            db = manager.openOrCreateDatabase(dbName);
+        } catch (Exception e) {
+            for (DatabaseTask<?> task : batch) {
+                task.fail(e);
+            }
+            return;
+        }
+        transactionCount.incrementAndGet();
+        coalescedWriteCount.addAndGet(batch.size() - 1);
+        boolean committed = false;
+        db.beginTransactionNonExclusive();
+        try {
+            for (DatabaseTask<?> task : batch) {
+                task.execute();
+            }
+            db.setTransactionSuccessful();
+            committed = true;
+        } catch (Exception e) {
+            Logger.e(TAG, "coalesced write exception:" + e.getMessage(), e);
+            for (DatabaseTask<?> task : batch) {
+                task.fail(e);
+            }
+        } finally {
+            try {
+                db.endTransaction();
+            } catch (Exception e) {
+                Logger.e(TAG, "coalesced write commit exception:" + e.getMessage(), e);
+                committed = false;
+                for (DatabaseTask<?> task : batch) {
+                    task.fail(e);
+                }
+            }
+        }
+        if (committed) {
+            for (DatabaseTask<?> task : batch) {
+                task.complete();
+            }
+        }
+    }
+
+    // 记录最大值
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while ((current = max.get()) < value) {
+            if (max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 数据库操作任务
+     */
+    private class DatabaseTask<T> extends FutureTask<T> {
+        private final Callable<T> callable;
+        private final DaoCallback<T> callback;
+        private final boolean write;
+        private final long submitNanos = System.nanoTime();
+        private boolean coalesce = true;
+
+        // 合并执行时暂存的结果，事务提交后再设置
+        private T result;
+        private Exception exception;
+
+        DatabaseTask(Callable<T> callable, DaoCallback<T> callback, boolean write) {
+            super(callable);
+            this.callable = callable;
+            this.callback = callback;
+            this.write = write;
+        }
+
+        // 执行但不设置结果
+        void execute() {
+            if (isCancelled()) {
+                return;
+            }
+            try {
+                result = callable.call();
+            } catch (Exception e) {
+                exception = e;
+            }
+        }
+
+        // 设置暂存的结果
+        void complete() {
+            if (exception != null) {
+                setException(exception);
+            } else {
+                set(result);
+            }
+        }
+
+        void fail(Throwable e) {
+            setException(e);
+        }
+
+        @Override
+        protected void done() {
+            long latency = System.nanoTime() - submitNanos;
+            if (write) {
+                writeCount.incrementAndGet();
+                writeLatencyNanos.addAndGet(latency);
+                updateMax(maxWriteLatencyNanos, latency);
+            } else {
+                readCount.incrementAndGet();
+                readLatencyNanos.addAndGet(latency);
+                updateMax(maxReadLatencyNanos, latency);
+            }
+            if (callback == null || isCancelled()) {
+                return;
+            }
+            T value;
+            try {
+                value = get();
+            } catch (ExecutionException e) {
+                callback.onFailure(e.getCause());
+                return;
+            } catch (InterruptedException | CancellationException e) {
+                callback.onFailure(e);
+                return;
+            }
+            callback.onSuccess(value);
+        }
+    }
+}
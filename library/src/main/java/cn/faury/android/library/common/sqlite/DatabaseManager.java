@@ -9,15 +9,22 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import cn.faury.android.library.common.core.PermissionException;
 import cn.faury.android.library.common.helper.Logger;
 import cn.faury.android.library.common.sqlite.dao.BaseDatabaseDao;
 import cn.faury.android.library.common.sqlite.dao.BaseTableDao;
+import cn.faury.android.library.common.sqlite.dao.RowMapper;
 import cn.faury.android.library.common.util.CollectionsUtils;
 import cn.faury.android.library.common.util.FileUtils;
 import cn.faury.android.library.common.util.PackageManagerUtil;
@@ -37,7 +44,37 @@ public class DatabaseManager {
     /**
      * 数据库对象缓存
      */
-    private final Map<String, SQLiteDatabase> databases = new LinkedHashMap<>();
+    private final ConcurrentHashMap<String, SQLiteDatabase> databases = new ConcurrentHashMap<>();
+
+    /**
+     * 数据库打开锁，每个数据库一个
+     */
+    private final ConcurrentHashMap<String, Object> openLocks = new ConcurrentHashMap<>();
+
+    /**
+     * 数据库异步执行器，每个数据库一个
+     */
+    private final ConcurrentHashMap<String, DatabaseExecutor> executors = new ConcurrentHashMap<>();
+
+    /**
+     * 等待创建或升级的数据库
+     */
+    private final Set<String> pendingBootstrap = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * 正在创建或升级的数据库，用于避免升级过程中打开自身时重入
+     */
+    private final Set<String> bootstrapping = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * 管理表记录缓存，启动时一次性读取
+     */
+    private final ConcurrentHashMap<String, InnerManagerTableRecordBean> managerRecords = new ConcurrentHashMap<>();
+
+    /**
+     * 每个数据库的创建或升级耗时（毫秒）
+     */
+    private final ConcurrentHashMap<String, Long> bootstrapTimes = new ConcurrentHashMap<>();
 
     /**
      * 管理数据库表
@@ -56,38 +93,143 @@ public class DatabaseManager {
         this.dbDao = new InnerDatabaseManagerDao(dir);
         this.dbDao.bindManager(this);
 
-        this.databaseDaoMap = new HashMap<>();
+        this.databaseDaoMap = new ConcurrentHashMap<>();
         this.databaseDaoMap.put(this.dbDao.getDbName(), this.dbDao);
     }
 
     /**
-     * 打开数据库
+     * 打开数据库，线程安全，同一数据库只会打开一个连接
      *
      * @param dbName 数据库名
      * @return 数据库对象
      */
     public SQLiteDatabase openOrCreateDatabase(String dbName) {
         SQLiteDatabase db = databases.get(dbName);
-        if (db == null || !db.isOpen()) {// 数据库对象不存在或者未打开
+        if (db != null && db.isOpen() && !pendingBootstrap.contains(dbName)) {
+            return db;
+        }
+        synchronized (getOpenLock(dbName)) {
+            db = databases.get(dbName);
+            if (db == null || !db.isOpen()) {// 数据库对象不存在或者未打开
+                BaseDatabaseDao dbDao = getDatabaseDao(dbName);
+                if (dbDao == null) {
+                    throw new IllegalArgumentException("database " + dbName + " do not exist");
+                }
+                if (!FileUtils.isFileExist(dbDao.getDir() + File.separator + dbDao.getDbName())) {
+                    try {
+                        FileUtils.createFile(dbDao.getDir() + File.separator + dbDao.getDbName(), FileUtils.Mode.ABSOLUTE_PATH_AND_NOTHING);
+                    } catch (IOException e) {
+                        Logger.w(TAG, "file create exception", e);
+                        e.printStackTrace();
+                    }
+                }
+                if (!FileUtils.isFileExist(dbDao.getDir() + File.separator + dbDao.getDbName())) {
+                    throw new PermissionException(PackageManagerUtil.PERMISSION_WRITE_EXTERNAL_STORAGE);
+                }
+                db = SQLiteDatabase.openOrCreateDatabase(new File(dbDao.getDir(), dbDao.getDbName()), null);
+                configDatabase(db, dbDao);
+                databases.put(dbName, db);
+            }
+            bootstrap(dbName);
+        }
+        return db;
+    }
+
+    /**
+     * 获取每个数据库的创建或升级耗时
+     *
+     * @return 数据库名-耗时（毫秒）
+     */
+    public Map<String, Long> getBootstrapTimes() {
+        return Collections.unmodifiableMap(new HashMap<>(bootstrapTimes));
+    }
+
+    // 按管理表记录创建或升级数据库，每个数据库只执行一次
+    private void bootstrap(String dbName) {
+        if (!pendingBootstrap.contains(dbName)) {
+            return;
+        }
+        synchronized (getOpenLock(dbName)) {
+            if (!pendingBootstrap.contains(dbName) || !bootstrapping.add(dbName)) {
+                return;
+            }
+            try {
+                long start = System.currentTimeMillis();
+                BaseDatabaseDao dbInfo = getDatabaseDao(dbName);
+                InnerManagerTableDao tbDao = dbDao.getTableDao(InnerManagerTableDao.TABLE_NAME);
+                InnerManagerTableRecordBean recordBean = managerRecords.get(dbName);
+                if (recordBean == null) {// 数据库不存在
+                    tbDao.insert(dbInfo);
+                    managerRecords.put(dbName, new InnerManagerTableRecordBean(dbName, dbInfo.getDbVersion(), dbInfo.getDir()));
+                    dbInfo.onCreate(openOrCreateDatabase(dbName));
+                } else if (recordBean.getDbVersion() < dbInfo.getDbVersion()) {// 更新版本
+                    // 升级失败时不记录新版本，下次打开时重新升级
+                    dbInfo.onUpgrade(openOrCreateDatabase(dbName), recordBean.getDbVersion(), dbInfo.getDbVersion());
+                    tbDao.updateDbVersionByName(dbName, dbInfo.getDbVersion());
+                    managerRecords.put(dbName, new InnerManagerTableRecordBean(dbName, dbInfo.getDbVersion(), recordBean.getDir()));
+                }
+                pendingBootstrap.remove(dbName);
+                long cost = System.currentTimeMillis() - start;
+                bootstrapTimes.put(dbName, cost);
+                Logger.v(TAG, "[database=" + dbName + "] bootstrap cost " + cost + "ms");
+            } finally {
+                bootstrapping.remove(dbName);
+            }
+        }
+    }
+
+    // 获取数据库打开锁
+    private Object getOpenLock(String dbName) {
+        Object lock = openLocks.get(dbName);
+        if (lock == null) {
+            Object newLock = new Object();
+            lock = openLocks.putIfAbsent(dbName, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
+    // 按数据库配置设置连接
+    private void configDatabase(SQLiteDatabase db, BaseDatabaseDao dbDao) {
+        if (dbDao.getMaxSqlCacheSize() > 0) {
+            try {
+                db.setMaxSqlCacheSize(Math.min(dbDao.getMaxSqlCacheSize(), SQLiteDatabase.MAX_SQL_CACHE_SIZE));
+            } catch (IllegalStateException e) {
+                Logger.w(TAG, "set max sql cache size exception", e);
+            }
+        }
+        if (dbDao.isWriteAheadLogging()) {
+            if (db.enableWriteAheadLogging()) {
+                Logger.v(TAG, "[database=" + dbDao.getDbName() + "] write-ahead logging enabled");
+            } else {
+                Logger.w(TAG, "[database=" + dbDao.getDbName() + "] write-ahead logging not supported");
+            }
+        }
+    }
+
+    /**
+     * 获取数据库异步执行器，未启用WAL的数据库只使用一个读线程
+     *
+     * @param dbName 数据库名
+     * @return 异步执行器
+     */
+    public DatabaseExecutor getExecutor(String dbName) {
+        DatabaseExecutor executor = executors.get(dbName);
+        if (executor == null) {
             BaseDatabaseDao dbDao = getDatabaseDao(dbName);
             if (dbDao == null) {
                 throw new IllegalArgumentException("database " + dbName + " do not exist");
             }
-            if (!FileUtils.isFileExist(dbDao.getDir() + File.separator + dbDao.getDbName())) {
-                try {
-                    FileUtils.createFile(dbDao.getDir() + File.separator + dbDao.getDbName(), FileUtils.Mode.ABSOLUTE_PATH_AND_NOTHING);
-                } catch (IOException e) {
-                    Logger.w(TAG, "file create exception", e);
-                    e.printStackTrace();
-                }
-            }
-            if (!FileUtils.isFileExist(dbDao.getDir() + File.separator + dbDao.getDbName())) {
-                throw new PermissionException(PackageManagerUtil.PERMISSION_WRITE_EXTERNAL_STORAGE);
+            DatabaseExecutor newExecutor = new DatabaseExecutor(this, dbName,
+                    dbDao.isWriteAheadLogging() ? DatabaseExecutor.DEFAULT_READER_COUNT : 1);
+            executor = executors.putIfAbsent(dbName, newExecutor);
+            if (executor == null) {
+                executor = newExecutor;
             }
-            db = SQLiteDatabase.openOrCreateDatabase(new File(dbDao.getDir(), dbDao.getDbName()), null);
-            databases.put(dbName, db);
         }
-        return db;
+        return executor;
     }
 
     /**
@@ -112,6 +254,16 @@ public class DatabaseManager {
 
         private List<BaseDatabaseDao> dbList = new ArrayList<>();
 
+        /**
+         * 数据库创建或升级方式
+         */
+        private BootstrapMode bootstrapMode = BootstrapMode.EAGER;
+
+        /**
+         * 并行创建或升级的线程数
+         */
+        private int parallelism = 4;
+
         /**
          * 构造函数
          *
@@ -168,7 +320,12 @@ public class DatabaseManager {
             SQLiteDatabase db = instance.openOrCreateDatabase(dbDao.getDbName());
             // 判断数据库信息表是否存在
             Cursor cursor = db.rawQuery("SELECT COUNT(*) as count FROM sqlite_master where type='table' and name='" + InnerManagerTableDao.TABLE_NAME + "'", null);
-            if (cursor != null && cursor.moveToFirst() && cursor.getInt(0) > 0) {// 表存在
+            boolean tableExists = false;
+            if (cursor != null) {
+                tableExists = cursor.moveToFirst() && cursor.getInt(0) > 0;
+                cursor.close();
+            }
+            if (tableExists) {// 表存在
                 InnerManagerTableRecordBean recordBean = tbDao.queryByName(dbDao.getDbName());
                 if (recordBean == null) {
                     dbDao.onCreate(db);
@@ -183,12 +340,38 @@ public class DatabaseManager {
             }
         }
 
+        /**
+         * 配置数据库创建或升级方式，默认{@link BootstrapMode#EAGER}
+         *
+         * @param mode 启动方式
+         * @return 当前对象
+         */
+        public Builder configBootstrapMode(BootstrapMode mode) {
+            if (mode != null) {
+                this.bootstrapMode = mode;
+            }
+            return this;
+        }
+
+        /**
+         * 配置并行创建或升级数据库的线程数，{@link BootstrapMode#PARALLEL}时有效
+         *
+         * @param parallelism 线程数
+         * @return 当前对象
+         */
+        public Builder configParallelism(int parallelism) {
+            if (parallelism > 0) {
+                this.parallelism = parallelism;
+            }
+            return this;
+        }
+
         /**
          * 构建对象
          */
         public DatabaseManager build() {
             // 初始化实例对象
-            DatabaseManager instance = new DatabaseManager(this.managerDir);
+            final DatabaseManager instance = new DatabaseManager(this.managerDir);
 
             // 注册管理数据库及表
             InnerManagerTableDao tbDao = instance.dbDao.getTableDao(InnerManagerTableDao.TABLE_NAME);
@@ -197,30 +380,84 @@ public class DatabaseManager {
             }
             createOrUpgradeManagerDatabaseFile(instance);
 
-            if (dbList.size() > 0) {
-                for (BaseDatabaseDao dbInfo : dbList) {
-                    if (dbInfo == null) {
-                        continue;
-                    }
-                    if (InnerDatabaseManagerDao.DB_NAME.equals(dbInfo.getDbName())) {
-                        throw new IllegalArgumentException("illegal argument db name(" + InnerDatabaseManagerDao.DB_NAME + ")");
-                    }
-                    dbInfo.bindManager(instance);
-
-                    instance.databaseDaoMap.put(dbInfo.getDbName(), dbInfo);
-                    // 查询服务器中数据库是否注册
-                    InnerManagerTableRecordBean recordBean = tbDao.queryByName(dbInfo.getDbName());
-                    if (recordBean == null) {// 数据库不存在
-                        tbDao.insert(dbInfo);
-                        dbInfo.onCreate(instance.openOrCreateDatabase(dbInfo.getDbName()));
-                    } else if (recordBean.getDbVersion() < dbInfo.getDbVersion()) {// 更新版本
-                        tbDao.updateDbVersionByName(dbInfo.getDbName(), dbInfo.getDbVersion());
-                        dbInfo.onUpgrade(instance.openOrCreateDatabase(dbInfo.getDbName()), recordBean.getDbVersion(), dbInfo.getDbVersion());
-                    }
+            // 一次性读取管理表记录
+            for (InnerManagerTableRecordBean recordBean : tbDao.queryAll()) {
+                instance.managerRecords.put(recordBean.getDbName(), recordBean);
+            }
+
+            List<String> dbNames = new ArrayList<>();
+            for (BaseDatabaseDao dbInfo : dbList) {
+                if (dbInfo == null) {
+                    continue;
                 }
+                if (InnerDatabaseManagerDao.DB_NAME.equals(dbInfo.getDbName())) {
+                    throw new IllegalArgumentException("illegal argument db name(" + InnerDatabaseManagerDao.DB_NAME + ")");
+                }
+                dbInfo.bindManager(instance);
+
+                instance.databaseDaoMap.put(dbInfo.getDbName(), dbInfo);
+                instance.pendingBootstrap.add(dbInfo.getDbName());
+                dbNames.add(dbInfo.getDbName());
+            }
+
+            if (bootstrapMode == BootstrapMode.EAGER) {
+                for (String dbName : dbNames) {
+                    instance.bootstrap(dbName);
+                }
+            } else if (bootstrapMode == BootstrapMode.PARALLEL && dbNames.size() > 0) {
+                bootstrapParallel(instance, dbNames);
             }
             return instance;
         }
+
+        // 在有界线程池中并行创建或升级数据库，等待全部完成
+        private void bootstrapParallel(final DatabaseManager instance, List<String> dbNames) {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, dbNames.size()));
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (final String dbName : dbNames) {
+                    futures.add(executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            instance.bootstrap(dbName);
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof RuntimeException) {
+                            throw (RuntimeException) e.getCause();
+                        }
+                        throw new IllegalStateException("database bootstrap exception", e.getCause());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("database bootstrap interrupted", e);
+                    }
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * 数据库创建或升级方式
+     */
+    public enum BootstrapMode {
+        /**
+         * 构建时在当前线程依次创建或升级
+         */
+        EAGER,
+        /**
+         * 首次打开数据库时创建或升级
+         */
+        LAZY,
+        /**
+         * 构建时在线程池中并行创建或升级
+         */
+        PARALLEL
     }
 
     /**
@@ -313,11 +550,16 @@ public class DatabaseManager {
          * @return 数据库记录
          */
         public InnerManagerTableRecordBean queryByName(String dbName) {
-            Cursor cursor = this.query(null, TB_COL_NAME + "=?", new String[]{dbName}, null);
-            if (cursor != null && cursor.moveToFirst()) {
-                return new InnerManagerTableRecordBean(cursor);
-            }
-            return null;
+            return this.queryFirst(null, TB_COL_NAME + "=?", new String[]{dbName}, null, InnerManagerTableRecordBean.MAPPER);
+        }
+
+        /**
+         * 查询所有数据库记录
+         *
+         * @return 数据库记录
+         */
+        public List<InnerManagerTableRecordBean> queryAll() {
+            return this.queryList(null, null, null, null, InnerManagerTableRecordBean.MAPPER);
         }
 
         /**
@@ -416,29 +658,40 @@ public class DatabaseManager {
          */
         private String dir;
 
-        public InnerManagerTableRecordBean(Cursor cursor) {
-            if (cursor != null && !cursor.isClosed()) {
-                // dbName
-                int columnIndex = cursor.getColumnIndex(InnerManagerTableDao.TB_COL_NAME);
-                if (columnIndex != -1) {
-                    dbName = cursor.getString(columnIndex);
-                } else {
+        private InnerManagerTableRecordBean() {
+        }
+
+        private InnerManagerTableRecordBean(String dbName, int dbVersion, String dir) {
+            this.dbName = dbName;
+            this.dbVersion = dbVersion;
+            this.dir = dir;
+        }
+
+        /**
+         * 行映射器
+         */
+        private static final RowMapper<InnerManagerTableRecordBean> MAPPER = new RowMapper<InnerManagerTableRecordBean>() {
+            @Override
+            public String[] getColumnNames() {
+                return new String[]{InnerManagerTableDao.TB_COL_NAME, InnerManagerTableDao.TB_COL_VERSION, InnerManagerTableDao.TB_COL_DIR};
+            }
+
+            @Override
+            public InnerManagerTableRecordBean mapRow(Cursor cursor, int[] columnIndexes) {
+                if (columnIndexes[0] == -1) {
                     throw new NullPointerException("cursor illegal!");
                 }
-                // dbVersion
-                columnIndex = cursor.getColumnIndex(InnerManagerTableDao.TB_COL_VERSION);
-                if (columnIndex != -1) {
-                    dbVersion = cursor.getInt(columnIndex);
+                InnerManagerTableRecordBean bean = new InnerManagerTableRecordBean();
+                bean.dbName = cursor.getString(columnIndexes[0]);
+                if (columnIndexes[1] != -1) {
+                    bean.dbVersion = cursor.getInt(columnIndexes[1]);
                 }
-                // dir
-                columnIndex = cursor.getColumnIndex(InnerManagerTableDao.TB_COL_DIR);
-                if (columnIndex != -1) {
-                    dir = cursor.getString(columnIndex);
+                if (columnIndexes[2] != -1) {
+                    bean.dir = cursor.getString(columnIndexes[2]);
                 }
-            } else {
-                throw new NullPointerException("cursor illegal!");
+                return bean;
             }
-        }
+        };
 
         public String getDbName() {
             return dbName;
@@ -0,0 +1,73 @@
+package cn.faury.android.library.common.sqlite.bean;
+
+/**
+ * 批量操作中一个批次的执行结果
+ */
+
+public class BatchResult {
+
+    /**
+     * 批次序号，从0开始
+     */
+    private int batchIndex;
+
+    /**
+     * 每行执行结果：插入时为行id，删除时为影响行数，-1表示失败
+     */
+    private long[] results;
+
+    /**
+     * 成功行数
+     */
+    private int successCount;
+
+    /**
+     * 执行耗时（毫秒）
+     */
+    private long costMillis;
+
+    /**
+     * 构造函数
+     *
+     * @param batchIndex   批次序号
+     * @param results      每行执行结果
+     * @param successCount 成功行数
+     * @param costMillis   执行耗时
+     */
+    public BatchResult(int batchIndex, long[] results, int successCount, long costMillis) {
+        this.batchIndex = batchIndex;
+        this.results = results;
+        this.successCount = successCount;
+        this.costMillis = costMillis;
+    }
+
+    public int getBatchIndex() {
+        return batchIndex;
+    }
+
+    public long[] getResults() {
+        return results;
+    }
+
+    public int getSize() {
+        return results.length;
+    }
+
+    public int getSuccessCount() {
+        return successCount;
+    }
+
+    public int getFailureCount() {
+        return results.length - successCount;
+    }
+
+    public long getCostMillis() {
+        return costMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult[index=" + batchIndex + ",size=" + results.length +
+                ",success=" + successCount + ",cost=" + costMillis + "ms]";
+    }
+}
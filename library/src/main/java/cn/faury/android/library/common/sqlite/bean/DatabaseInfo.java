@@ -21,6 +21,16 @@ public class DatabaseInfo {
      */
     private String dir;
 
+    /**
+     * 是否启用WAL（write-ahead logging）模式，启用后读操作可以与写操作并行
+     */
+    private boolean writeAheadLogging = false;
+
+    /**
+     * 预编译SQL缓存大小，0表示使用系统默认值，最大100
+     */
+    private int maxSqlCacheSize = 0;
+
     /**
      * 构造函数
      *
@@ -45,4 +55,34 @@ public class DatabaseInfo {
     public String getDir() {
         return dir;
     }
+
+    public boolean isWriteAheadLogging() {
+        return writeAheadLogging;
+    }
+
+    /**
+     * 设置是否启用WAL模式，需在数据库打开前设置
+     *
+     * @param writeAheadLogging 是否启用
+     * @return 当前对象
+     */
+    public DatabaseInfo setWriteAheadLogging(boolean writeAheadLogging) {
+        this.writeAheadLogging = writeAheadLogging;
+        return this;
+    }
+
+    public int getMaxSqlCacheSize() {
+        return maxSqlCacheSize;
+    }
+
+    /**
+     * 设置预编译SQL缓存大小，需在数据库打开前设置
+     *
+     * @param maxSqlCacheSize 缓存大小，0表示使用系统默认值，最大100
+     * @return 当前对象
+     */
+    public DatabaseInfo setMaxSqlCacheSize(int maxSqlCacheSize) {
+        this.maxSqlCacheSize = maxSqlCacheSize;
+        return this;
+    }
 }
@@ -0,0 +1,272 @@
+package cn.faury.android.library.common.sqlite.dao;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import cn.faury.android.library.common.sqlite.DatabaseExecutor;
+import cn.faury.android.library.common.sqlite.bean.BatchResult;
+
+/**
+ * 表操作异步门面
+ * <p>
+ * 写操作提交到数据库的写线程，短时间内连续的写操作合并为一个事务，批量操作分批自行开启事务，不参与合并；读操作提交到读线程池。
+ * 回调在数据库工作线程中执行
+ */
+
+public class AsyncTableDao {
+
+    /**
+     * 表操作对象
+     */
+    private final ITableContentDao dao;
+
+    /**
+     * 数据库异步执行器
+     */
+    private final DatabaseExecutor executor;
+
+    /**
+     * 构造函数
+     *
+     * @param dao      表操作对象
+     * @param executor 数据库异步执行器
+     */
+    public AsyncTableDao(ITableContentDao dao, DatabaseExecutor executor) {
+        this.dao = dao;
+        this.executor = executor;
+    }
+
+    /**
+     * 构造函数，使用表所在数据库的执行器
+     *
+     * @param dao 表操作对象，需已绑定数据库及管理器
+     */
+    public AsyncTableDao(BaseTableDao dao) {
+        this(dao, dao.getDatabaseDao().getManager().getExecutor(dao.getDatabaseDao().getDbName()));
+    }
+
+    /**
+     * 获取同步表操作对象
+     *
+     * @return 表操作对象
+     */
+    public ITableContentDao getDao() {
+        return dao;
+    }
+
+    /**
+     * 获取数据库异步执行器，可用于查看队列深度及延迟
+     *
+     * @return 数据库异步执行器
+     */
+    public DatabaseExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * 插入数据
+     *
+     * @param values   数据
+     * @param callback 回调，结果-1表示失败，其他表示返回的id
+     * @return 操作结果
+     */
+    public Future<Long> insert(final ContentValues values, DaoCallback<Long> callback) {
+        return executor.submitWrite(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return dao.insert(values);
+            }
+        }, callback);
+    }
+
+    /**
+     * 插入数据，冲突时处理方案
+     *
+     * @param values            数据
+     * @param conflictAlgorithm 冲突处理
+     * @param callback          回调，结果-1表示失败，其他表示返回的id
+     * @return 操作结果
+     */
+    public Future<Long> insertWithOnConflict(final ContentValues values, final int conflictAlgorithm, DaoCallback<Long> callback) {
+        return executor.submitWrite(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return dao.insertWithOnConflict(values, conflictAlgorithm);
+            }
+        }, callback);
+    }
+
+    /**
+     * 批量插入数据
+     *
+     * @param valuesList 数据集合
+     * @param callback   回调，结果为每批次的执行结果
+     * @return 操作结果
+     */
+    public Future<List<BatchResult>> insertAll(final Collection<ContentValues> valuesList, DaoCallback<List<BatchResult>> callback) {
+        return executor.submitWrite(new Callable<List<BatchResult>>() {
+            @Override
+            public List<BatchResult> call() {
+                return dao.insertAll(valuesList);
+            }
+        }, callback, false);
+    }
+
+    /**
+     * 批量插入数据，冲突时替换原有记录
+     *
+     * @param valuesList 数据集合
+     * @param callback   回调，结果为每批次的执行结果
+     * @return 操作结果
+     */
+    public Future<List<BatchResult>> upsertAll(final Collection<ContentValues> valuesList, DaoCallback<List<BatchResult>> callback) {
+        return executor.submitWrite(new Callable<List<BatchResult>>() {
+            @Override
+            public List<BatchResult> call() {
+                return dao.upsertAll(valuesList);
+            }
+        }, callback, false);
+    }
+
+    /**
+     * 删除数据
+     *
+     * @param selection     条件表达式
+     * @param selectionArgs 条件表达式参数值
+     * @param callback      回调，结果-1表示失败，其他表示影响行数
+     * @return 操作结果
+     */
+    public Future<Integer> delete(final String selection, final String[] selectionArgs, DaoCallback<Integer> callback) {
+        return executor.submitWrite(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return dao.delete(selection, selectionArgs);
+            }
+        }, callback);
+    }
+
+    /**
+     * 批量删除数据
+     *
+     * @param selection         条件表达式
+     * @param selectionArgsList 条件表达式参数值集合
+     * @param callback          回调，结果为每批次的执行结果
+     * @return 操作结果
+     */
+    public Future<List<BatchResult>> deleteAll(final String selection, final Collection<String[]> selectionArgsList, DaoCallback<List<BatchResult>> callback) {
+        return executor.submitWrite(new Callable<List<BatchResult>>() {
+            @Override
+            public List<BatchResult> call() {
+                return dao.deleteAll(selection, selectionArgsList);
+            }
+        }, callback, false);
+    }
+
+    /**
+     * 更新数据
+     *
+     * @param values        数据
+     * @param selection     条件表达式
+     * @param selectionArgs 条件表达式参数值
+     * @param callback      回调，结果-1表示失败，其他表示影响行数
+     * @return 操作结果
+     */
+    public Future<Integer> update(final ContentValues values, final String selection, final String[] selectionArgs, DaoCallback<Integer> callback) {
+        return executor.submitWrite(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return dao.update(values, selection, selectionArgs);
+            }
+        }, callback);
+    }
+
+    /**
+     * 查询并映射为对象列表，不去重，游标在读线程中关闭
+     *
+     * @param projection    要查询的列，null表示所有
+     * @param selection     条件表达式
+     * @param selectionArgs 条件表达式参数值
+     * @param sortOrder     排序字段（ORDER BY clause）
+     * @param mapper        行映射器
+     * @param callback      回调，结果为对象列表
+     * @return 操作结果
+     */
+    public <T> Future<List<T>> queryList(final String[] projection, final String selection, final String[] selectionArgs,
+                                         final String sortOrder, final RowMapper<T> mapper, DaoCallback<List<T>> callback) {
+        return queryList(false, projection, selection, selectionArgs, sortOrder, mapper, callback);
+    }
+
+    /**
+     * 查询并映射为对象列表，游标在读线程中关闭
+     *
+     * @param distinct      是否去重
+     * @param projection    要查询的列，null表示所有
+     * @param selection     条件表达式
+     * @param selectionArgs 条件表达式参数值
+     * @param sortOrder     排序字段（ORDER BY clause）
+     * @param mapper        行映射器
+     * @param callback      回调，结果为对象列表
+     * @return 操作结果
+     */
+    public <T> Future<List<T>> queryList(final boolean distinct, final String[] projection, final String selection, final String[] selectionArgs,
+                                         final String sortOrder, final RowMapper<T> mapper, DaoCallback<List<T>> callback) {
+        return executor.submitRead(new Callable<List<T>>() {
+            @Override
+            public List<T> call() {
+                List<T> list = new ArrayList<>();
+                Cursor cursor = dao.query(distinct, projection, selection, selectionArgs, sortOrder, null);
+                if (cursor != null) {
+                    try {
+                        int[] columnIndexes = BaseTableDao.resolveColumnIndexes(cursor, mapper);
+                        while (cursor.moveToNext()) {
+                            list.add(mapper.mapRow(cursor, columnIndexes));
+                        }
+                    } finally {
+                        cursor.close();
+                    }
+                }
+                return list;
+            }
+        }, callback);
+    }
+
+    /**
+     * 提交自定义写操作，与其他写操作一样可能被合并到同一事务
+     *
+     * @param callable 写操作
+     * @param callback 回调
+     * @return 操作结果
+     */
+    public <T> Future<T> submitWrite(Callable<T> callable, DaoCallback<T> callback) {
+        return executor.submitWrite(callable, callback);
+    }
+
+    /**
+     * 提交自定义写操作
+     *
+     * @param callable 写操作
+     * @param callback 回调
+     * @param coalesce 是否可以合并到其他写操作的事务中，写操作自行开启事务时传false
+     * @return 操作结果
+     */
+    public <T> Future<T> submitWrite(Callable<T> callable, DaoCallback<T> callback, boolean coalesce) {
+        return executor.submitWrite(callable, callback, coalesce);
+    }
+
+    /**
+     * 提交自定义读操作
+     *
+     * @param callable 读操作
+     * @param callback 回调
+     * @return 操作结果
+     */
+    public <T> Future<T> submitRead(Callable<T> callable, DaoCallback<T> callback) {
+        return executor.submitRead(callable, callback);
+    }
+}
@@ -132,6 +132,14 @@ public abstract class BaseDatabaseDao implements IDatabaseCallback {
         return databaseInfo.getDir();
     }
 
+    public boolean isWriteAheadLogging() {
+        return databaseInfo.isWriteAheadLogging();
+    }
+
+    public int getMaxSqlCacheSize() {
+        return databaseInfo.getMaxSqlCacheSize();
+    }
+
     /**
      * 创建数据库时执行
      *
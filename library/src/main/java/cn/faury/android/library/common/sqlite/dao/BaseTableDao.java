@@ -3,17 +3,30 @@ package cn.faury.android.library.common.sqlite.dao;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteProgram;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 
 import cn.faury.android.library.common.helper.Logger;
+import cn.faury.android.library.common.sqlite.bean.BatchResult;
+import cn.faury.android.library.common.sqlite.script.MigrationPlan;
+import cn.faury.android.library.common.sqlite.script.MigrationPlanner;
+import cn.faury.android.library.common.sqlite.script.SqlScriptException;
+import cn.faury.android.library.common.sqlite.script.SqlScriptRunner;
+import cn.faury.android.library.common.util.CollectionsUtils;
 
 /**
  * 数据库表信息
@@ -32,6 +45,26 @@ public abstract class BaseTableDao implements ITableContentDao, IDatabaseCallbac
     public static final String FILE_NAME_CREATE = "create.sql";
     public static final String FILE_NAME_UPDATE_PATTEN = "update.%d.%d.sql";
 
+    /**
+     * 默认批量操作每批次行数
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * 默认预编译语句缓存大小
+     */
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 16;
+
+    /**
+     * 默认重建表的代价，-1表示不重建，总是按升级脚本升级
+     */
+    public static final long DEFAULT_REBUILD_MIGRATION_COST = -1;
+
+    /**
+     * 冲突处理语句，下标与SQLiteDatabase.CONFLICT_*对应
+     */
+    private static final String[] CONFLICT_VALUES = new String[]{"", " OR ROLLBACK", " OR ABORT", " OR FAIL", " OR IGNORE", " OR REPLACE"};
+
     /**
      * 数据库信息
      */
@@ -42,6 +75,26 @@ public abstract class BaseTableDao implements ITableContentDao, IDatabaseCallbac
      */
     private Context context;
 
+    /**
+     * 批量操作每批次行数
+     */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * 预编译语句缓存
+     */
+    private StatementCache statementCache;
+
+    /**
+     * 升级计划生成器
+     */
+    private MigrationPlanner migrationPlanner;
+
+    /**
+     * 最近一次执行的升级计划
+     */
+    private volatile MigrationPlan lastMigrationPlan;
+
     /**
      * 构造函数
      */
@@ -71,6 +124,45 @@ public abstract class BaseTableDao implements ITableContentDao, IDatabaseCallbac
         return this.dbDao;
     }
 
+    /**
+     * 获取批量操作每批次行数
+     *
+     * @return 每批次行数
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 设置批量操作每批次行数
+     *
+     * @param batchSize 每批次行数，小于1时按1处理
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * 获取预编译语句缓存大小，子类可覆盖
+     *
+     * @return 缓存大小
+     */
+    public int getStatementCacheSize() {
+        return DEFAULT_STATEMENT_CACHE_SIZE;
+    }
+
+    /**
+     * 获取本表的预编译语句缓存，可用于查看命中率
+     *
+     * @return 预编译语句缓存
+     */
+    public synchronized StatementCache getStatementCache() {
+        if (statementCache == null) {
+            statementCache = new StatementCache(getStatementCacheSize());
+        }
+        return statementCache;
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
         this.tryCreateFromFile(db);
@@ -89,34 +181,95 @@ public abstract class BaseTableDao implements ITableContentDao, IDatabaseCallbac
      */
     @Override
     public long insert(ContentValues values) {
+        return insertWithOnConflict(values, SQLiteDatabase.CONFLICT_NONE);
+    }
+
+
+    /**
+     * 插入数据，冲突时处理方案
+     *
+     * @param values            数据
+     * @param conflictAlgorithm 冲突处理
+     * @return -1表示失败，其他表示返回的id
+     */
+    @Override
+    public long insertWithOnConflict(ContentValues values,int conflictAlgorithm) {
         long id = -1;
         try {
-            id = getDatabase().insert(getTableName(), null, values);
+            id = insertValues(getDatabase(), values, conflictAlgorithm);
         } catch (Exception e) {
             Logger.e(TAG, "insert exception:" + e.getMessage(), e);
         }
         return id;
     }
 
+    /**
+     * 插入数据，直接绑定参数，不经过ContentValues
+     *
+     * @param columns 插入的列
+     * @param binder  参数绑定器，按columns顺序绑定
+     * @return -1表示失败，其他表示返回的id
+     */
+    public long insertWithBinder(String[] columns, StatementBinder binder) {
+        return insertWithBinder(columns, SQLiteDatabase.CONFLICT_NONE, binder);
+    }
 
     /**
-     * 插入数据，冲突时处理方案
+     * 插入数据，冲突时处理方案，直接绑定参数，不经过ContentValues
      *
-     * @param values            数据
+     * @param columns           插入的列
      * @param conflictAlgorithm 冲突处理
+     * @param binder            参数绑定器，按columns顺序绑定
      * @return -1表示失败，其他表示返回的id
      */
-    @Override
-    public long insertWithOnConflict(ContentValues values,int conflictAlgorithm) {
+    public long insertWithBinder(String[] columns, int conflictAlgorithm, StatementBinder binder) {
         long id = -1;
         try {
-            id = getDatabase().insertWithOnConflict(getTableName(), null, values,conflictAlgorithm);
+            id = executeStatement(getDatabase(), buildInsertSql(columns, conflictAlgorithm), true, binder);
         } catch (Exception e) {
             Logger.e(TAG, "insert exception:" + e.getMessage(), e);
         }
         return id;
     }
 
+    /**
+     * 批量插入数据，每批次在一个事务中执行
+     *
+     * @param valuesList 数据集合
+     * @return 每批次的执行结果，行结果为返回的id，-1表示失败
+     */
+    @Override
+    public List<BatchResult> insertAll(Collection<ContentValues> valuesList) {
+        return insertAll(valuesList, SQLiteDatabase.CONFLICT_NONE);
+    }
+
+    /**
+     * 批量插入数据，冲突时替换原有记录，每批次在一个事务中执行
+     *
+     * @param valuesList 数据集合
+     * @return 每批次的执行结果，行结果为返回的id，-1表示失败
+     */
+    @Override
+    public List<BatchResult> upsertAll(Collection<ContentValues> valuesList) {
+        return insertAll(valuesList, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * 批量插入数据，冲突时处理方案，每批次在一个事务中执行；相同列集合的数据复用同一个预编译语句
+     *
+     * @param valuesList        数据集合
+     * @param conflictAlgorithm 冲突处理
+     * @return 每批次的执行结果，行结果为返回的id，-1表示失败
+     */
+    public List<BatchResult> insertAll(Collection<ContentValues> valuesList, final int conflictAlgorithm) {
+        return executeBatch("insertAll", valuesList, new BatchRowExecutor<ContentValues>() {
+            @Override
+            public long execute(SQLiteDatabase db, ContentValues values) {
+                return insertValues(db, values, conflictAlgorithm);
+            }
+        });
+    }
+
     /**
      * 删除数据
      *
@@ -125,16 +278,55 @@ public abstract class BaseTableDao implements ITableContentDao, IDatabaseCallbac
      * @return -1表示失败，其他表示影响行数
      */
     @Override
-    public int delete(String selection, String[] selectionArgs) {
+    public int delete(String selection, final String[] selectionArgs) {
+        return deleteWithBinder(selection, new StatementBinder() {
+            @Override
+            public void bind(SQLiteStatement statement) {
+                bindArgs(statement, 1, selectionArgs);
+            }
+        });
+    }
+
+    /**
+     * 删除数据，直接绑定参数
+     *
+     * @param selection 条件表达式
+     * @param binder    条件表达式参数绑定器
+     * @return -1表示失败，其他表示影响行数
+     */
+    public int deleteWithBinder(String selection, StatementBinder binder) {
         int count = -1;
         try {
-            count = getDatabase().delete(getTableName(), selection, selectionArgs);
+            count = (int) executeStatement(getDatabase(), buildDeleteSql(selection), false, binder);
         } catch (Exception e) {
             Logger.e(TAG, "delete exception:" + e.getMessage(), e);
         }
         return count;
     }
 
+    /**
+     * 批量删除数据，每组参数执行一次删除，每批次在一个事务中执行
+     *
+     * @param selection         条件表达式
+     * @param selectionArgsList 条件表达式参数值集合
+     * @return 每批次的执行结果，行结果为影响行数，-1表示失败
+     */
+    @Override
+    public List<BatchResult> deleteAll(String selection, Collection<String[]> selectionArgsList) {
+        final String sql = buildDeleteSql(selection);
+        return executeBatch("deleteAll", selectionArgsList, new BatchRowExecutor<String[]>() {
+            @Override
+            public long execute(SQLiteDatabase db, final String[] selectionArgs) {
+                return executeStatement(db, sql, false, new StatementBinder() {
+                    @Override
+                    public void bind(SQLiteStatement statement) {
+                        bindArgs(statement, 1, selectionArgs);
+                    }
+                });
+            }
+        });
+    }
+
     /**
      * 更新数据
      *
@@ -144,10 +336,35 @@ public abstract class BaseTableDao implements ITableContentDao, IDatabaseCallbac
      * @return -1表示失败，其他表示影响行数
      */
     @Override
-    public int update(ContentValues values, String selection, String[] selectionArgs) {
+    public int update(final ContentValues values, String selection, final String[] selectionArgs) {
+        if (CollectionsUtils.isEmpty(values)) {
+            Logger.e(TAG, "update exception: empty values");
+            return -1;
+        }
+        final String[] columns = getSortedColumns(values);
+        return updateWithBinder(columns, selection, new StatementBinder() {
+            @Override
+            public void bind(SQLiteStatement statement) {
+                for (int i = 0; i < columns.length; i++) {
+                    bindValue(statement, i + 1, values.get(columns[i]));
+                }
+                bindArgs(statement, columns.length + 1, selectionArgs);
+            }
+        });
+    }
+
+    /**
+     * 更新数据，直接绑定参数，不经过ContentValues
+     *
+     * @param columns   更新的列
+     * @param selection 条件表达式
+     * @param binder    参数绑定器，先按columns顺序绑定更新值，再绑定条件表达式参数
+     * @return -1表示失败，其他表示影响行数
+     */
+    public int updateWithBinder(String[] columns, String selection, StatementBinder binder) {
         int count = -1;
         try {
-            count = getDatabase().update(getTableName(), values, selection, selectionArgs);
+            count = (int) executeStatement(getDatabase(), buildUpdateSql(columns, selection), false, binder);
         } catch (Exception e) {
             Logger.e(TAG, "update exception:" + e.getMessage(), e);
         }
@@ -165,15 +382,217 @@ public abstract class BaseTableDao implements ITableContentDao, IDatabaseCallbac
      */
     @Override
     public Cursor query(String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        return query(true, projection, selection, selectionArgs, sortOrder, null);
+    }
+
+    /**
+     * 查询
+     *
+     * @param distinct      是否去重
+     * @param projection    要查询的列，null表示所有
+     * @param selection     条件表达式
+     * @param selectionArgs 条件表达式参数值
+     * @param sortOrder     排序字段（ORDER BY clause）
+     * @param limit         返回行数限制（LIMIT clause），null表示不限制
+     * @return Cursor或者null.
+     */
+    @Override
+    public Cursor query(boolean distinct, String[] projection, String selection, String[] selectionArgs, String sortOrder, String limit) {
         Cursor cursor = null;
         try {
-            cursor = getDatabase().query(true, getTableName(), projection, selection, selectionArgs, null, null, sortOrder, null);
+            cursor = getDatabase().query(distinct, getTableName(), projection, selection, selectionArgs, null, null, sortOrder, limit);
         } catch (Exception e) {
             Logger.e(TAG, "query exception:" + e.getMessage(), e);
         }
         return cursor;
     }
 
+    /**
+     * 按键分页查询（keyset pagination），只返回键值在afterKey之后的一页数据，
+     * 查询代价与页码无关；键列的值必须唯一
+     *
+     * @param projection    要查询的列，null表示所有，不包含键列时自动添加
+     * @param selection     条件表达式
+     * @param selectionArgs 条件表达式参数值
+     * @param keyColumn     键列，同时作为排序字段
+     * @param descending    是否按键降序
+     * @param pageSize      每页行数
+     * @param afterKey      上一页最后一行的键值，null表示第一页
+     * @return Cursor或者null.
+     */
+    @Override
+    public Cursor queryPage(String[] projection, String selection, String[] selectionArgs, String keyColumn, boolean descending, int pageSize, String afterKey) {
+        if (projection != null && !Arrays.asList(projection).contains(keyColumn)) {
+            projection = Arrays.copyOf(projection, projection.length + 1);
+            projection[projection.length - 1] = keyColumn;
+        }
+        if (afterKey != null) {
+            String keySelection = keyColumn + (descending ? "<?" : ">?");
+            selection = TextUtils.isEmpty(selection) ? keySelection : "(" + selection + ") AND " + keySelection;
+            if (selectionArgs == null) {
+                selectionArgs = new String[]{afterKey};
+            } else {
+                selectionArgs = Arrays.copyOf(selectionArgs, selectionArgs.length + 1);
+                selectionArgs[selectionArgs.length - 1] = afterKey;
+            }
+        }
+        return query(false, projection, selection, selectionArgs, keyColumn + (descending ? " DESC" : " ASC"), String.valueOf(Math.max(1, pageSize)));
+    }
+
+    /**
+     * 按键分页遍历查询结果，每页查询完成后即关闭游标，内存占用与表大小无关
+     *
+     * @param projection    要查询的列，null表示所有，不包含键列时自动添加
+     * @param selection     条件表达式
+     * @param selectionArgs 条件表达式参数值
+     * @param keyColumn     键列，同时作为排序字段，值必须唯一
+     * @param descending    是否按键降序
+     * @param pageSize      每页行数
+     * @param mapper        行映射器
+     * @param prefetch      是否在后台预取下一页
+     * @return 分页迭代器
+     */
+    public <T> PageIterator<T> queryPages(String[] projection, String selection, String[] selectionArgs, String keyColumn,
+                                          boolean descending, int pageSize, RowMapper<T> mapper, boolean prefetch) {
+        return new PageIterator<>(this, projection, selection, selectionArgs, keyColumn, descending, pageSize, mapper, prefetch);
+    }
+
+    /**
+     * 查询并映射为对象列表，不去重，游标在方法返回前关闭
+     *
+     * @param projection    要查询的列，null表示所有
+     * @param selection     条件表达式
+     * @param selectionArgs 条件表达式参数值
+     * @param sortOrder     排序字段（ORDER BY clause）
+     * @param mapper        行映射器
+     * @return 对象列表，查询失败时为空列表
+     */
+    public <T> List<T> queryList(String[] projection, String selection, String[] selectionArgs, String sortOrder, RowMapper<T> mapper) {
+        return queryList(false, projection, selection, selectionArgs, sortOrder, mapper);
+    }
+
+    /**
+     * 查询并映射为对象列表，游标在方法返回前关闭
+     *
+     * @param distinct      是否去重
+     * @param projection    要查询的列，null表示所有
+     * @param selection     条件表达式
+     * @param selectionArgs 条件表达式参数值
+     * @param sortOrder     排序字段（ORDER BY clause）
+     * @param mapper        行映射器
+     * @return 对象列表，查询失败时为空列表
+     */
+    public <T> List<T> queryList(boolean distinct, String[] projection, String selection, String[] selectionArgs, String sortOrder, RowMapper<T> mapper) {
+        final List<T> list = new ArrayList<>();
+        queryStream(distinct, projection, selection, selectionArgs, sortOrder, null, mapper, new RowHandler<T>() {
+            @Override
+            public boolean onRow(T row, int rowNum) {
+                list.add(row);
+                return true;
+            }
+        });
+        return list;
+    }
+
+    /**
+     * 查询第一行并映射为对象，游标在方法返回前关闭
+     *
+     * @param projection    要查询的列，null表示所有
+     * @param selection     条件表达式
+     * @param selectionArgs 条件表达式参数值
+     * @param sortOrder     排序字段（ORDER BY clause）
+     * @param mapper        行映射器
+     * @return 第一行对象，没有记录或查询失败时为null
+     */
+    public <T> T queryFirst(String[] projection, String selection, String[] selectionArgs, String sortOrder, RowMapper<T> mapper) {
+        final List<T> list = new ArrayList<>(1);
+        queryStream(false, projection, selection, selectionArgs, sortOrder, "1", mapper, new RowHandler<T>() {
+            @Override
+            public boolean onRow(T row, int rowNum) {
+                list.add(row);
+                return false;
+            }
+        });
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    /**
+     * 查询并逐行映射处理，不去重，不保存全部结果，游标在方法返回前关闭
+     *
+     * @param projection    要查询的列，null表示所有
+     * @param selection     条件表达式
+     * @param selectionArgs 条件表达式参数值
+     * @param sortOrder     排序字段（ORDER BY clause）
+     * @param mapper        行映射器
+     * @param handler       行处理器
+     * @return 处理的行数，-1表示查询失败
+     */
+    public <T> int queryStream(String[] projection, String selection, String[] selectionArgs, String sortOrder, RowMapper<T> mapper, RowHandler<T> handler) {
+        return queryStream(false, projection, selection, selectionArgs, sortOrder, null, mapper, handler);
+    }
+
+    /**
+     * 查询并逐行映射处理，不保存全部结果，游标在方法返回前关闭
+     *
+     * @param distinct      是否去重
+     * @param projection    要查询的列，null表示所有
+     * @param selection     条件表达式
+     * @param selectionArgs 条件表达式参数值
+     * @param sortOrder     排序字段（ORDER BY clause）
+     * @param mapper        行映射器
+     * @param handler       行处理器
+     * @return 处理的行数，-1表示查询失败
+     */
+    public <T> int queryStream(boolean distinct, String[] projection, String selection, String[] selectionArgs, String sortOrder, RowMapper<T> mapper, RowHandler<T> handler) {
+        return queryStream(distinct, projection, selection, selectionArgs, sortOrder, null, mapper, handler);
+    }
+
+    // 查询并逐行映射处理
+    private <T> int queryStream(boolean distinct, String[] projection, String selection, String[] selectionArgs, String sortOrder, String limit, RowMapper<T> mapper, RowHandler<T> handler) {
+        Cursor cursor = null;
+        int count = 0;
+        try {
+            cursor = getDatabase().query(distinct, getTableName(), projection, selection, selectionArgs, null, null, sortOrder, limit);
+            if (cursor != null) {
+                int[] columnIndexes = resolveColumnIndexes(cursor, mapper);
+                while (cursor.moveToNext()) {
+                    boolean next = handler.onRow(mapper.mapRow(cursor, columnIndexes), count);
+                    count++;
+                    if (!next) {
+                        break;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Logger.e(TAG, "query exception:" + e.getMessage(), e);
+            count = -1;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 解析映射器用到的列下标
+     *
+     * @param cursor 游标
+     * @param mapper 行映射器
+     * @return 列下标，-1表示游标中不存在该列
+     */
+    public static int[] resolveColumnIndexes(Cursor cursor, RowMapper<?> mapper) {
+        String[] columnNames = mapper.getColumnNames();
+        if (columnNames == null) {
+            return new int[0];
+        }
+        int[] columnIndexes = new int[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            columnIndexes[i] = cursor.getColumnIndex(columnNames[i]);
+        }
+        return columnIndexes;
+    }
+
     /**
      * 获取数据库操作对象
      *
@@ -187,78 +606,347 @@ public abstract class BaseTableDao implements ITableContentDao, IDatabaseCallbac
         return null;
     }
 
-    // 从asset构建新建脚本，格式【database/表名/create.sql】
-    private void tryCreateFromFile(SQLiteDatabase db) {
-        if (this.context != null) {
+    // 分批次执行，每批次一个事务，批次内单行约束冲突只标记该行失败
+    private <T> List<BatchResult> executeBatch(String operation, Collection<T> rows, BatchRowExecutor<T> executor) {
+        List<BatchResult> batchResults = new ArrayList<>();
+        if (CollectionsUtils.isEmpty(rows)) {
+            return batchResults;
+        }
+        SQLiteDatabase db = getDatabase();
+        if (db == null) {
+            Logger.e(TAG, operation + " exception: database not bound");
+            return batchResults;
+        }
+        Iterator<T> iterator = rows.iterator();
+        int total = rows.size();
+        int processed = 0;
+        while (processed < total && iterator.hasNext()) {
+            long start = System.currentTimeMillis();
+            long[] results = new long[Math.min(batchSize, total - processed)];
+            int successCount = 0;
+            db.beginTransactionNonExclusive();
             try {
-                String[] files = this.context.getAssets().list(DB_FILE_DIR_NAME + File.separator + this.getTableName());
-                if (files != null && files.length > 0) {
-                    for (String file : files) {
-                        if (FILE_NAME_CREATE.equalsIgnoreCase(file)) {
-                            this.execAssetSqlFile(db, DB_FILE_DIR_NAME + File.separator + this.getTableName() + File.separator + FILE_NAME_CREATE);
-                            break;
-                        }
+                for (int i = 0; i < results.length; i++) {
+                    try {
+                        results[i] = executor.execute(db, iterator.next());
+                    } catch (SQLiteConstraintException e) {
+                        Logger.w(TAG, operation + " constraint exception:" + e.getMessage());
+                        results[i] = -1;
+                    }
+                    if (results[i] >= 0) {
+                        successCount++;
                     }
                 }
+                db.setTransactionSuccessful();
             } catch (Exception e) {
-                Logger.d(TAG, "tryCreateFromFile exception", e);
+                Logger.e(TAG, operation + " exception:" + e.getMessage(), e);
+                Arrays.fill(results, -1);
+                successCount = 0;
+            } finally {
+                db.endTransaction();
             }
+            batchResults.add(new BatchResult(batchResults.size(), results, successCount, System.currentTimeMillis() - start));
+            processed += results.length;
         }
+        return batchResults;
     }
 
-    // 从asset构建更新脚本，格式【database/表名/update.旧版本.新版本.sql】
+    // 插入ContentValues，列按名称排序以复用同一语句
+    private long insertValues(SQLiteDatabase db, final ContentValues values, int conflictAlgorithm) {
+        final String[] columns = getSortedColumns(values);
+        return executeStatement(db, buildInsertSql(columns, conflictAlgorithm), true, new StatementBinder() {
+            @Override
+            public void bind(SQLiteStatement statement) {
+                for (int i = 0; i < columns.length; i++) {
+                    bindValue(statement, i + 1, values.get(columns[i]));
+                }
+            }
+        });
+    }
+
+    // 通过缓存的预编译语句执行
+    private long executeStatement(SQLiteDatabase db, String sql, boolean insert, StatementBinder binder) {
+        StatementCache cache = getStatementCache();
+        SQLiteStatement statement = cache.acquire(db, sql);
+        try {
+            if (binder != null) {
+                binder.bind(statement);
+            }
+            return insert ? statement.executeInsert() : statement.executeUpdateDelete();
+        } finally {
+            cache.release(db, sql, statement);
+        }
+    }
+
+    // 获取排序后的列名
+    private static String[] getSortedColumns(ContentValues values) {
+        if (values == null) {
+            return new String[0];
+        }
+        String[] columns = values.keySet().toArray(new String[values.size()]);
+        Arrays.sort(columns);
+        return columns;
+    }
+
+    // 构建插入语句
+    private String buildInsertSql(String[] columns, int conflictAlgorithm) {
+        if (columns == null) {
+            columns = new String[0];
+        }
+        StringBuilder sql = new StringBuilder("INSERT").append(CONFLICT_VALUES[conflictAlgorithm])
+                .append(" INTO ").append(getTableName());
+        if (columns.length == 0) {
+            return sql.append(" DEFAULT VALUES").toString();
+        }
+        sql.append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? "," : "").append(columns[i]);
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? ",?" : "?");
+        }
+        return sql.append(')').toString();
+    }
+
+    // 构建更新语句
+    private String buildUpdateSql(String[] columns, String selection) {
+        if (columns == null || columns.length == 0) {
+            throw new IllegalArgumentException("Empty values");
+        }
+        StringBuilder sql = new StringBuilder("UPDATE ").append(getTableName()).append(" SET ");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? "," : "").append(columns[i]).append("=?");
+        }
+        if (!TextUtils.isEmpty(selection)) {
+            sql.append(" WHERE ").append(selection);
+        }
+        return sql.toString();
+    }
+
+    // 构建删除语句
+    private String buildDeleteSql(String selection) {
+        return "DELETE FROM " + getTableName() + (TextUtils.isEmpty(selection) ? "" : " WHERE " + selection);
+    }
+
+    // 从指定下标开始绑定字符串参数
+    private static void bindArgs(SQLiteProgram program, int start, String[] args) {
+        if (args != null) {
+            for (int i = 0; i < args.length; i++) {
+                bindValue(program, start + i, args[i]);
+            }
+        }
+    }
+
+    // 按值类型绑定参数
+    private static void bindValue(SQLiteProgram program, int index, Object value) {
+        if (value == null) {
+            program.bindNull(index);
+        } else if (value instanceof Double || value instanceof Float) {
+            program.bindDouble(index, ((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            program.bindLong(index, ((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            program.bindLong(index, (Boolean) value ? 1 : 0);
+        } else if (value instanceof byte[]) {
+            program.bindBlob(index, (byte[]) value);
+        } else {
+            program.bindString(index, value.toString());
+        }
+    }
+
+    /**
+     * 批量操作单行执行器
+     */
+    private interface BatchRowExecutor<T> {
+        /**
+         * 执行一行
+         *
+         * @param db  数据库
+         * @param row 行数据
+         * @return 执行结果，-1表示失败
+         */
+        long execute(SQLiteDatabase db, T row);
+    }
+
+    /**
+     * 获取重建表的代价，相当于执行的升级脚本数量，子类可覆盖
+     * <p>
+     * 升级路径上的脚本数超过该值且存在create.sql时，按create.sql重建表并复制原有数据；返回负数表示不允许重建。
+     * 重建时跳过的升级脚本中的数据转换不会执行，create.sql中插入的初始数据与原有数据主键冲突时重建失败，
+     * 只有升级脚本仅修改表结构时才适合开启
+     *
+     * @return 重建代价
+     */
+    public long getRebuildMigrationCost() {
+        return DEFAULT_REBUILD_MIGRATION_COST;
+    }
+
+    /**
+     * 获取本表的升级计划生成器，asset目录只读取一次
+     *
+     * @return 升级计划生成器
+     */
+    public synchronized MigrationPlanner getMigrationPlanner() {
+        if (migrationPlanner == null) {
+            String[] files = null;
+            if (this.context != null) {
+                try {
+                    files = this.context.getAssets().list(getAssetDir());
+                } catch (IOException e) {
+                    Logger.d(TAG, "list asset sql files exception", e);
+                }
+            }
+            migrationPlanner = new MigrationPlanner(getTableName(), files);
+        }
+        return migrationPlanner;
+    }
+
+    /**
+     * 获取最近一次执行的升级计划，包含各步骤耗时
+     *
+     * @return 升级计划，未升级时为null
+     */
+    public MigrationPlan getLastMigrationPlan() {
+        return lastMigrationPlan;
+    }
+
+    // 表的asset目录
+    private String getAssetDir() {
+        return DB_FILE_DIR_NAME + File.separator + this.getTableName();
+    }
+
+    // 从asset构建新建脚本，格式【database/表名/create.sql】
+    private void tryCreateFromFile(SQLiteDatabase db) {
+        if (this.context != null) {
+            MigrationPlanner planner = getMigrationPlanner();
+            if (planner.hasCreateScript()) {
+                this.execAssetSqlFile(db, getAssetDir() + File.separator + planner.getCreateFileName());
+            }
+        }
+    }
+
+    // 按升级计划执行asset下的更新脚本，格式【database/表名/update.旧版本.新版本.sql】，重建表失败时抛出异常，已重建的表回滚
     private void tryUpdateFromFile(SQLiteDatabase db, int oldVersion, int newVersion) {
         if (this.context != null && newVersion > oldVersion) {
-            try {
-                String[] files = this.context.getAssets().list(DB_FILE_DIR_NAME + File.separator + this.getTableName());
-                if (files != null && files.length > 0) {
-                    Arrays.sort(files);
-                    for (int idx = oldVersion; idx < newVersion; idx++) {
-                        for (String file : files) {
-                            String update = String.format(Locale.getDefault(),FILE_NAME_UPDATE_PATTEN, idx, idx + 1);
-                            if (update.equalsIgnoreCase(file)) {
-                                this.execAssetSqlFile(db, DB_FILE_DIR_NAME + File.separator + this.getTableName() + File.separator + update);
-                                break;
-                            }
+            MigrationPlan plan = getMigrationPlanner().plan(oldVersion, newVersion, getRebuildMigrationCost());
+            if (plan.isEmpty()) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            for (MigrationPlan.Step step : plan.getSteps()) {
+                long stepStart = System.currentTimeMillis();
+                switch (step.getType()) {
+                    case SCRIPT:
+                        this.execAssetSqlFile(db, getAssetDir() + File.separator + step.getFileName());
+                        break;
+                    case REBUILD:
+                        String filepath = getAssetDir() + File.separator + step.getFileName();
+                        try {
+                            this.rebuildFromCreateFile(db, filepath);
+                        } catch (IOException e) {
+                            throw new SqlScriptException(filepath, 0, null, "rebuild table " + getTableName() + " exception:" + e.getMessage(), e);
                         }
-                    }
-
+                        break;
+                    default:
+                        Logger.w(TAG, "no update script for table " + getTableName() + " from " + step.getFromVersion() + " to " + step.getToVersion());
+                        break;
                 }
-            } catch (Exception e) {
-                Logger.d(TAG, "tryUpdateFromFile exception", e);
+                step.setCostMillis(System.currentTimeMillis() - stepStart);
             }
+            plan.setExecuteMillis(System.currentTimeMillis() - start);
+            this.lastMigrationPlan = plan;
+            Logger.v(TAG, "execute " + plan);
         }
     }
 
-    // 执行asset下sql文件
-    private void execAssetSqlFile(SQLiteDatabase db, String filepath) {
-        BufferedReader br = null;
+    // 按create.sql重建表，复制新旧表共有列的数据，整个过程在一个事务中
+    private void rebuildFromCreateFile(SQLiteDatabase db, String filepath) throws IOException {
+        String table = getTableName();
+        String backup = table + "__rebuild";
+        db.beginTransaction();
         try {
-            db.beginTransaction();
-            InputStream is = this.context.getAssets().open(filepath);
-            br = new BufferedReader(new InputStreamReader(is));
-            String line;
-            StringBuilder sql = new StringBuilder();
-
-            while ((line = br.readLine()) != null) {
-                sql.append(line+"\r\n");
-                if (line.trim().endsWith(";")) {//遇到分号先执行
-                    db.execSQL(sql.toString());
-                    sql.setLength(0);
+            List<String> oldColumns = getColumnNames(db, table);
+            if (!oldColumns.isEmpty()) {
+                db.execSQL("DROP TABLE IF EXISTS " + quote(backup));
+                db.execSQL("ALTER TABLE " + quote(table) + " RENAME TO " + quote(backup));
+                // 改名后原有索引及触发器仍保留原名，需删除以免与create.sql冲突
+                List<String[]> dependents = new ArrayList<>();
+                Cursor cursor = db.rawQuery("SELECT type, name FROM sqlite_master WHERE tbl_name = ? AND type IN ('index', 'trigger') AND sql IS NOT NULL", new String[]{backup});
+                try {
+                    while (cursor.moveToNext()) {
+                        dependents.add(new String[]{cursor.getString(0), cursor.getString(1)});
+                    }
+                } finally {
+                    cursor.close();
+                }
+                for (String[] dependent : dependents) {
+                    db.execSQL("DROP " + dependent[0].toUpperCase(Locale.US) + " IF EXISTS " + quote(dependent[1]));
                 }
             }
-            if (sql.length() > 0) {
-                db.execSQL(sql.toString());
+            this.runAssetSqlFile(db, filepath);
+            if (!oldColumns.isEmpty()) {
+                StringBuilder columns = new StringBuilder();
+                for (String column : getColumnNames(db, table)) {
+                    for (String oldColumn : oldColumns) {
+                        if (oldColumn.equalsIgnoreCase(column)) {
+                            columns.append(columns.length() > 0 ? ", " : "").append(quote(column));
+                            break;
+                        }
+                    }
+                }
+                if (columns.length() > 0) {
+                    db.execSQL("INSERT INTO " + quote(table) + " (" + columns + ") SELECT " + columns + " FROM " + quote(backup));
+                }
+                db.execSQL("DROP TABLE " + quote(backup));
             }
             db.setTransactionSuccessful();
-            is.close();
-        } catch (Exception e) {
-            Logger.d(TAG, "execute asset sql file exception", e);
         } finally {
             db.endTransaction();
-            if (br != null) {
+        }
+    }
+
+    // 获取表的列名，表不存在时返回空列表
+    private static List<String> getColumnNames(SQLiteDatabase db, String table) {
+        List<String> columns = new ArrayList<>();
+        Cursor cursor = db.rawQuery("PRAGMA table_info(" + quote(table) + ")", null);
+        try {
+            int nameIndex = cursor.getColumnIndex("name");
+            while (cursor.moveToNext()) {
+                columns.add(cursor.getString(nameIndex));
+            }
+        } finally {
+            cursor.close();
+        }
+        return columns;
+    }
+
+    // 标识符加引号
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    // 执行asset下sql文件，失败时整个文件回滚
+    private void execAssetSqlFile(SQLiteDatabase db, String filepath) {
+        try {
+            this.runAssetSqlFile(db, filepath);
+        } catch (Exception e) {
+            Logger.e(TAG, "execute asset sql file exception:" + e.getMessage(), e);
+        }
+    }
+
+    // 执行asset下sql文件，异常抛出给调用方
+    private void runAssetSqlFile(SQLiteDatabase db, String filepath) throws IOException {
+        Reader reader = null;
+        try {
+            long start = System.currentTimeMillis();
+            reader = new InputStreamReader(this.context.getAssets().open(filepath), "UTF-8");
+            int count = new SqlScriptRunner(db).run(reader, filepath);
+            Logger.v(TAG, "execute asset sql file " + filepath + ": " + count + " statements in " + (System.currentTimeMillis() - start) + "ms");
+        } finally {
+            if (reader != null) {
                 try {
-                    br.close();
+                    reader.close();
                 } catch (IOException ignored) {
 
                 }
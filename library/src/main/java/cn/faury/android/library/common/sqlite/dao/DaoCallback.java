@@ -0,0 +1,22 @@
+package cn.faury.android.library.common.sqlite.dao;
+
+/**
+ * 异步数据库操作回调，在数据库工作线程中执行
+ */
+
+public interface DaoCallback<T> {
+
+    /**
+     * 操作成功
+     *
+     * @param result 操作结果
+     */
+    void onSuccess(T result);
+
+    /**
+     * 操作失败
+     *
+     * @param e 异常
+     */
+    void onFailure(Throwable e);
+}
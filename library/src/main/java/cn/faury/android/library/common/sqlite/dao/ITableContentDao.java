@@ -4,6 +4,11 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 
+import java.util.Collection;
+import java.util.List;
+
+import cn.faury.android.library.common.sqlite.bean.BatchResult;
+
 /**
  * 表操作DAO
  */
@@ -27,6 +32,22 @@ public interface ITableContentDao {
      */
     long insertWithOnConflict(ContentValues values, int conflictAlgorithm);
 
+    /**
+     * 批量插入数据，每批次在一个事务中执行
+     *
+     * @param valuesList 数据集合
+     * @return 每批次的执行结果，行结果为返回的id，-1表示失败
+     */
+    List<BatchResult> insertAll(Collection<ContentValues> valuesList);
+
+    /**
+     * 批量插入数据，冲突时替换原有记录，每批次在一个事务中执行
+     *
+     * @param valuesList 数据集合
+     * @return 每批次的执行结果，行结果为返回的id，-1表示失败
+     */
+    List<BatchResult> upsertAll(Collection<ContentValues> valuesList);
+
     /**
      * 删除数据
      *
@@ -36,6 +57,15 @@ public interface ITableContentDao {
      */
     int delete(String selection, String[] selectionArgs);
 
+    /**
+     * 批量删除数据，每组参数执行一次删除，每批次在一个事务中执行
+     *
+     * @param selection         条件表达式
+     * @param selectionArgsList 条件表达式参数值集合
+     * @return 每批次的执行结果，行结果为影响行数，-1表示失败
+     */
+    List<BatchResult> deleteAll(String selection, Collection<String[]> selectionArgsList);
+
     /**
      * 更新数据
      *
@@ -57,6 +87,34 @@ public interface ITableContentDao {
      */
     Cursor query(String[] projection, String selection, String[] selectionArgs, String sortOrder);
 
+    /**
+     * 查询
+     *
+     * @param distinct      是否去重
+     * @param projection    要查询的列，null表示所有
+     * @param selection     条件表达式
+     * @param selectionArgs 条件表达式参数值
+     * @param sortOrder     排序字段（ORDER BY clause）
+     * @param limit         返回行数限制（LIMIT clause），null表示不限制
+     * @return Cursor或者null.
+     */
+    Cursor query(boolean distinct, String[] projection, String selection, String[] selectionArgs, String sortOrder, String limit);
+
+    /**
+     * 按键分页查询（keyset pagination），只返回键值在afterKey之后的一页数据，
+     * 查询代价与页码无关；键列的值必须唯一
+     *
+     * @param projection    要查询的列，null表示所有，不包含键列时自动添加
+     * @param selection     条件表达式
+     * @param selectionArgs 条件表达式参数值
+     * @param keyColumn     键列，同时作为排序字段
+     * @param descending    是否按键降序
+     * @param pageSize      每页行数
+     * @param afterKey      上一页最后一行的键值，null表示第一页
+     * @return Cursor或者null.
+     */
+    Cursor queryPage(String[] projection, String selection, String[] selectionArgs, String keyColumn, boolean descending, int pageSize, String afterKey);
+
     /**
      * 获取数据库操作对象
      *
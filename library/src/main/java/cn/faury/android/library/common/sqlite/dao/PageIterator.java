@@ -0,0 +1,211 @@
+package cn.faury.android.library.common.sqlite.dao;
+
+import android.database.Cursor;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import cn.faury.android.library.common.helper.Logger;
+
+/**
+ * 按键分页迭代器，每次返回一页映射后的对象
+ * <p>
+ * 每页查询完成后即关闭游标；开启预取时，返回当前页的同时在后台查询下一页
+ */
+
+public class PageIterator<T> implements Iterator<List<T>>, Closeable {
+
+    /**
+     * 日志标签
+     */
+    private static final String TAG = PageIterator.class.getName();
+
+    /**
+     * 预取线程池，空闲时不保留线程
+     */
+    private static final ExecutorService PREFETCH_EXECUTOR = new ThreadPoolExecutor(0, 2, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "PageIterator-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final ITableContentDao dao;
+    private final String[] projection;
+    private final String selection;
+    private final String[] selectionArgs;
+    private final String keyColumn;
+    private final boolean descending;
+    private final int pageSize;
+    private final RowMapper<T> mapper;
+    private final boolean prefetch;
+
+    /**
+     * 已加载的下一页
+     */
+    private Page<T> nextPage;
+
+    /**
+     * 预取中的下一页
+     */
+    private Future<Page<T>> pendingPage;
+
+    /**
+     * 待加载页的起始键
+     */
+    private String afterKey = null;
+
+    /**
+     * 是否已无更多数据
+     */
+    private boolean finished = false;
+
+    /**
+     * 构造函数
+     *
+     * @param dao           表操作对象
+     * @param projection    要查询的列，null表示所有
+     * @param selection     条件表达式
+     * @param selectionArgs 条件表达式参数值
+     * @param keyColumn     键列，值必须唯一
+     * @param descending    是否按键降序
+     * @param pageSize      每页行数
+     * @param mapper        行映射器
+     * @param prefetch      是否在后台预取下一页
+     */
+    public PageIterator(ITableContentDao dao, String[] projection, String selection, String[] selectionArgs, String keyColumn,
+                        boolean descending, int pageSize, RowMapper<T> mapper, boolean prefetch) {
+        this.dao = dao;
+        this.projection = projection;
+        this.selection = selection;
+        this.selectionArgs = selectionArgs;
+        this.keyColumn = keyColumn;
+        this.descending = descending;
+        this.pageSize = Math.max(1, pageSize);
+        this.mapper = mapper;
+        this.prefetch = prefetch;
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        ensureNextPage();
+        return nextPage != null && !nextPage.rows.isEmpty();
+    }
+
+    @Override
+    public synchronized List<T> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Page<T> page = nextPage;
+        nextPage = null;
+        if (page.rows.size() < pageSize || page.lastKey == null) {
+            finished = true;
+        } else {
+            afterKey = page.lastKey;
+            if (prefetch) {
+                final String key = afterKey;
+                pendingPage = PREFETCH_EXECUTOR.submit(new Callable<Page<T>>() {
+                    @Override
+                    public Page<T> call() {
+                        return loadPage(key);
+                    }
+                });
+            }
+        }
+        return page.rows;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * 停止迭代，取消预取
+     */
+    @Override
+    public synchronized void close() {
+        finished = true;
+        nextPage = null;
+        if (pendingPage != null) {
+            pendingPage.cancel(false);
+            pendingPage = null;
+        }
+    }
+
+    // 确保下一页已加载
+    private void ensureNextPage() {
+        if (nextPage != null) {
+            return;
+        }
+        if (pendingPage != null) {
+            try {
+                nextPage = pendingPage.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                nextPage = null;
+            } catch (ExecutionException e) {
+                Logger.e(TAG, "prefetch page exception:" + e.getMessage(), e);
+                nextPage = null;
+            } finally {
+                pendingPage = null;
+            }
+            return;
+        }
+        if (!finished) {
+            nextPage = loadPage(afterKey);
+        }
+    }
+
+    // 查询一页并关闭游标
+    private Page<T> loadPage(String afterKey) {
+        List<T> rows = new ArrayList<>(pageSize);
+        String lastKey = null;
+        Cursor cursor = dao.queryPage(projection, selection, selectionArgs, keyColumn, descending, pageSize, afterKey);
+        if (cursor == null) {
+            return new Page<>(Collections.<T>emptyList(), null);
+        }
+        try {
+            int[] columnIndexes = BaseTableDao.resolveColumnIndexes(cursor, mapper);
+            int keyIndex = cursor.getColumnIndex(keyColumn);
+            while (cursor.moveToNext()) {
+                rows.add(mapper.mapRow(cursor, columnIndexes));
+                if (keyIndex != -1) {
+                    lastKey = cursor.getString(keyIndex);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return new Page<>(rows, lastKey);
+    }
+
+    /**
+     * 一页数据
+     */
+    private static class Page<T> {
+        private final List<T> rows;
+        private final String lastKey;
+
+        Page(List<T> rows, String lastKey) {
+            this.rows = rows;
+            this.lastKey = lastKey;
+        }
+    }
+}
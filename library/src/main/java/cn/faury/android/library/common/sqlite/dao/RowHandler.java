@@ -0,0 +1,17 @@
+package cn.faury.android.library.common.sqlite.dao;
+
+/**
+ * 逐行处理查询结果
+ */
+
+public interface RowHandler<T> {
+
+    /**
+     * 处理一行
+     *
+     * @param row    行对象
+     * @param rowNum 行号，从0开始
+     * @return true继续处理下一行，false停止
+     */
+    boolean onRow(T row, int rowNum);
+}
@@ -0,0 +1,28 @@
+package cn.faury.android.library.common.sqlite.dao;
+
+import android.database.Cursor;
+
+/**
+ * 游标行映射器
+ * <p>
+ * 列下标在每个游标上只解析一次，映射每一行时直接按下标取值
+ */
+
+public interface RowMapper<T> {
+
+    /**
+     * 映射用到的列名，按此顺序解析列下标
+     *
+     * @return 列名
+     */
+    String[] getColumnNames();
+
+    /**
+     * 映射一行
+     *
+     * @param cursor        游标，已移动到当前行
+     * @param columnIndexes 列下标，与{@link #getColumnNames()}顺序一致，-1表示游标中不存在该列
+     * @return 行对象
+     */
+    T mapRow(Cursor cursor, int[] columnIndexes);
+}
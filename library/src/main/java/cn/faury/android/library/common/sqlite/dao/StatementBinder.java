@@ -0,0 +1,17 @@
+package cn.faury.android.library.common.sqlite.dao;
+
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * 预编译语句参数绑定器，直接使用bindLong/bindString等方法绑定参数，不经过ContentValues
+ */
+
+public interface StatementBinder {
+
+    /**
+     * 绑定参数，下标从1开始
+     *
+     * @param statement 预编译语句
+     */
+    void bind(SQLiteStatement statement);
+}
@@ -0,0 +1,156 @@
+package cn.faury.android.library.common.sqlite.dao;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 预编译语句LRU缓存
+ * <p>
+ * 语句使用时从缓存中取出，使用完成后放回，执行期间不持有锁；
+ * 同一语句被并发使用时，后到的线程会重新编译一个，放回时多余的语句直接关闭
+ */
+
+public class StatementCache {
+
+    /**
+     * 最大缓存数
+     */
+    private final int maxSize;
+
+    /**
+     * 语句所属的数据库对象，数据库重新打开后缓存失效
+     */
+    private SQLiteDatabase database;
+
+    /**
+     * 空闲语句，按访问顺序排列
+     */
+    private final LinkedHashMap<String, SQLiteStatement> statements;
+
+    /**
+     * 命中次数
+     */
+    private long hitCount = 0;
+
+    /**
+     * 未命中次数
+     */
+    private long missCount = 0;
+
+    /**
+     * 淘汰次数
+     */
+    private long evictionCount = 0;
+
+    /**
+     * 构造函数
+     *
+     * @param maxSize 最大缓存数
+     */
+    public StatementCache(int maxSize) {
+        this.maxSize = Math.max(1, maxSize);
+        this.statements = new LinkedHashMap<String, SQLiteStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> eldest) {
+                if (size() > StatementCache.this.maxSize) {
+                    eldest.getValue().close();
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 取出语句，缓存中不存在时编译
+     *
+     * @param db  数据库
+     * @param sql 语句，同时作为缓存键
+     * @return 预编译语句，使用完成后需调用{@link #release(SQLiteDatabase, String, SQLiteStatement)}
+     */
+    public SQLiteStatement acquire(SQLiteDatabase db, String sql) {
+        synchronized (this) {
+            if (db != database) {
+                clear();
+                database = db;
+            }
+            SQLiteStatement statement = statements.remove(sql);
+            if (statement != null) {
+                hitCount++;
+                return statement;
+            }
+            missCount++;
+        }
+        return db.compileStatement(sql);
+    }
+
+    /**
+     * 放回语句
+     *
+     * @param db        数据库
+     * @param sql       语句
+     * @param statement 预编译语句
+     */
+    public void release(SQLiteDatabase db, String sql, SQLiteStatement statement) {
+        statement.clearBindings();
+        synchronized (this) {
+            if (db == database && !statements.containsKey(sql)) {
+                statements.put(sql, statement);
+                return;
+            }
+        }
+        statement.close();
+    }
+
+    /**
+     * 关闭并清空所有缓存语句
+     */
+    public synchronized void clear() {
+        Iterator<SQLiteStatement> iterator = statements.values().iterator();
+        while (iterator.hasNext()) {
+            iterator.next().close();
+            iterator.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * 获取命中率
+     *
+     * @return 命中率，0~1
+     */
+    public synchronized float getHitRate() {
+        long total = hitCount + missCount;
+        return total == 0 ? 0 : (float) hitCount / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "StatementCache[size=" + statements.size() + ",maxSize=" + maxSize +
+                ",hit=" + hitCount + ",miss=" + missCount + ",eviction=" + evictionCount + "]";
+    }
+}
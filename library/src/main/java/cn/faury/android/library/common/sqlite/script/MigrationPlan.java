@@ -0,0 +1,183 @@
+package cn.faury.android.library.common.sqlite.script;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 表升级计划，由{@link MigrationPlanner}生成，执行后记录各步骤耗时
+ */
+
+public class MigrationPlan {
+
+    /**
+     * 步骤类型
+     */
+    public enum StepType {
+        /**
+         * 执行升级脚本update.旧版本.新版本.sql
+         */
+        SCRIPT,
+        /**
+         * 按create.sql重建表并复制原有数据
+         */
+        REBUILD,
+        /**
+         * 版本区间已被其他脚本覆盖但没有可衔接的脚本，跳过
+         */
+        GAP
+    }
+
+    private final String tableName;
+    private final int fromVersion;
+    private final int toVersion;
+    private final List<Step> steps;
+    private final long cost;
+    private final long planNanos;
+    private long executeMillis = -1;
+
+    MigrationPlan(String tableName, int fromVersion, int toVersion, List<Step> steps, long cost, long planNanos) {
+        this.tableName = tableName;
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+        this.cost = cost;
+        this.planNanos = planNanos;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public int getFromVersion() {
+        return fromVersion;
+    }
+
+    public int getToVersion() {
+        return toVersion;
+    }
+
+    /**
+     * 获取执行步骤，按执行顺序排列
+     *
+     * @return 步骤列表
+     */
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * 获取计划代价
+     *
+     * @return 代价
+     */
+    public long getCost() {
+        return cost;
+    }
+
+    /**
+     * 获取生成计划耗时
+     *
+     * @return 纳秒
+     */
+    public long getPlanNanos() {
+        return planNanos;
+    }
+
+    /**
+     * 获取执行总耗时
+     *
+     * @return 毫秒，未执行时为-1
+     */
+    public long getExecuteMillis() {
+        return executeMillis;
+    }
+
+    public void setExecuteMillis(long executeMillis) {
+        this.executeMillis = executeMillis;
+    }
+
+    /**
+     * 计划是否为空（版本区间内没有需要执行的脚本）
+     *
+     * @return 是否为空
+     */
+    public boolean isEmpty() {
+        for (Step step : steps) {
+            if (step.type != StepType.GAP) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("MigrationPlan{table=").append(tableName)
+                .append(", ").append(fromVersion).append("->").append(toVersion)
+                .append(", cost=").append(cost)
+                .append(", plan=").append(planNanos / 1000).append("us")
+                .append(", execute=").append(executeMillis).append("ms")
+                .append(", steps=").append(steps)
+                .append('}');
+        return sb.toString();
+    }
+
+    /**
+     * 计划中的一个步骤
+     */
+    public static class Step {
+        private final StepType type;
+        private final int fromVersion;
+        private final int toVersion;
+        private final String fileName;
+        private long costMillis = -1;
+
+        Step(StepType type, int fromVersion, int toVersion, String fileName) {
+            this.type = type;
+            this.fromVersion = fromVersion;
+            this.toVersion = toVersion;
+            this.fileName = fileName;
+        }
+
+        public StepType getType() {
+            return type;
+        }
+
+        public int getFromVersion() {
+            return fromVersion;
+        }
+
+        public int getToVersion() {
+            return toVersion;
+        }
+
+        /**
+         * 获取脚本文件名
+         *
+         * @return 文件名，GAP步骤为null
+         */
+        public String getFileName() {
+            return fileName;
+        }
+
+        /**
+         * 获取步骤执行耗时
+         *
+         * @return 毫秒，未执行时为-1
+         */
+        public long getCostMillis() {
+            return costMillis;
+        }
+
+        public void setCostMillis(long costMillis) {
+            this.costMillis = costMillis;
+        }
+
+        @Override
+        public String toString() {
+            return type + "(" + fromVersion + "->" + toVersion + (fileName == null ? "" : " " + fileName)
+                    + (costMillis < 0 ? "" : " " + costMillis + "ms") + ")";
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package cn.faury.android.library.common.sqlite.script;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 表升级计划生成器
+ * <p>
+ * 对表的asset目录文件列表建立一次索引，在可用的升级脚本中选择代价最小的执行路径。
+ * 每个升级脚本代价为1，支持update.3.40.sql这类跨版本的合并脚本；存在create.sql时，
+ * 若重建表并复制数据的代价更小则选择重建。
+ * <p>
+ * 某个版本区间没有任何脚本涉及时视为本表未变化，直接跳过（包含其他脚本的合并脚本不计入）；区间被其他脚本覆盖却没有可衔接的脚本时记为GAP步骤，
+ * 代价极高，仅在别无选择时使用
+ */
+
+public class MigrationPlanner {
+
+    /**
+     * 新建脚本文件名
+     */
+    public static final String FILE_NAME_CREATE = "create.sql";
+
+    /**
+     * 跳过被覆盖版本区间的代价
+     */
+    static final long GAP_COST = 1000000L;
+
+    /**
+     * 升级脚本文件名格式：update.旧版本.新版本.sql
+     */
+    private static final Pattern UPDATE_PATTERN = Pattern.compile("update\\.(\\d+)\\.(\\d+)\\.sql", Pattern.CASE_INSENSITIVE);
+
+    private final String tableName;
+
+    /**
+     * 升级脚本，按起始版本排序
+     */
+    private final List<Script> scripts = new ArrayList<>();
+
+    /**
+     * 新建脚本实际文件名，不存在时为null
+     */
+    private String createFileName;
+
+    /**
+     * 构造函数
+     *
+     * @param tableName 表名
+     * @param files     表asset目录下的文件名列表
+     */
+    public MigrationPlanner(String tableName, String[] files) {
+        this.tableName = tableName;
+        if (files != null) {
+            for (String file : files) {
+                if (file == null) {
+                    continue;
+                }
+                if (FILE_NAME_CREATE.equalsIgnoreCase(file)) {
+                    createFileName = file;
+                    continue;
+                }
+                Matcher matcher = UPDATE_PATTERN.matcher(file);
+                if (matcher.matches()) {
+                    try {
+                        int from = Integer.parseInt(matcher.group(1));
+                        int to = Integer.parseInt(matcher.group(2));
+                        if (from < to) {
+                            scripts.add(new Script(from, to, file));
+                        }
+                    } catch (NumberFormatException ignored) {
+                        // 版本号超出范围，忽略
+                    }
+                }
+            }
+        }
+        Collections.sort(scripts);
+        for (Script script : scripts) {
+            for (Script other : scripts) {
+                if (other.from >= script.from && other.to <= script.to && (other.from > script.from || other.to < script.to)) {
+                    script.minimal = false;
+                    break;
+                }
+            }
+        }
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * 是否存在新建脚本
+     *
+     * @return 是否存在create.sql
+     */
+    public boolean hasCreateScript() {
+        return createFileName != null;
+    }
+
+    /**
+     * 获取新建脚本文件名
+     *
+     * @return 文件名，不存在时为null
+     */
+    public String getCreateFileName() {
+        return createFileName;
+    }
+
+    /**
+     * 获取升级脚本数量
+     *
+     * @return 脚本数量
+     */
+    public int getScriptCount() {
+        return scripts.size();
+    }
+
+    /**
+     * 生成升级计划
+     *
+     * @param oldVersion  旧版本
+     * @param newVersion  新版本
+     * @param rebuildCost 重建表的代价，相当于执行的升级脚本数量，小于0表示不允许重建
+     * @return 升级计划
+     */
+    public MigrationPlan plan(int oldVersion, int newVersion, long rebuildCost) {
+        long start = System.nanoTime();
+        List<MigrationPlan.Step> steps = new ArrayList<>();
+        if (newVersion <= oldVersion) {
+            return new MigrationPlan(tableName, oldVersion, newVersion, steps, 0, System.nanoTime() - start);
+        }
+
+        // 以区间内所有脚本端点为节点，相邻节点之间的区间要么整体被某个脚本覆盖，要么不被任何脚本覆盖
+        TreeSet<Integer> points = new TreeSet<>();
+        points.add(oldVersion);
+        points.add(newVersion);
+        for (Script script : scripts) {
+            if (script.to > oldVersion && script.from < newVersion) {
+                points.add(Math.max(script.from, oldVersion));
+                points.add(Math.min(script.to, newVersion));
+            }
+        }
+        int[] nodes = new int[points.size()];
+        int n = 0;
+        for (Integer point : points) {
+            nodes[n++] = point;
+        }
+
+        // 版本只增不减，按节点顺序动态规划即可得到最短路径
+        long[] dist = new long[n];
+        Arrays.fill(dist, Long.MAX_VALUE);
+        int[] prevNode = new int[n];
+        Script[] prevScript = new Script[n];
+        dist[0] = 0;
+        for (int i = 0; i < n - 1; i++) {
+            if (dist[i] == Long.MAX_VALUE) {
+                continue;
+            }
+            long free = isCovered(nodes[i], nodes[i + 1]) ? GAP_COST : 0;
+            relax(dist, prevNode, prevScript, i, i + 1, null, dist[i] + free);
+            for (Script script : scripts) {
+                if (script.from == nodes[i] && script.to <= newVersion) {
+                    relax(dist, prevNode, prevScript, i, Arrays.binarySearch(nodes, script.to), script, dist[i] + 1);
+                }
+            }
+        }
+
+        long cost = dist[n - 1];
+        if (createFileName != null && rebuildCost >= 0 && rebuildCost < cost) {
+            steps.add(new MigrationPlan.Step(MigrationPlan.StepType.REBUILD, oldVersion, newVersion, createFileName));
+            return new MigrationPlan(tableName, oldVersion, newVersion, steps, rebuildCost, System.nanoTime() - start);
+        }
+        for (int i = n - 1; i > 0; ) {
+            int p = prevNode[i];
+            Script script = prevScript[i];
+            if (script != null) {
+                steps.add(new MigrationPlan.Step(MigrationPlan.StepType.SCRIPT, script.from, script.to, script.fileName));
+            } else if (isCovered(nodes[p], nodes[i])) {
+                steps.add(new MigrationPlan.Step(MigrationPlan.StepType.GAP, nodes[p], nodes[i], null));
+            }
+            i = p;
+        }
+        Collections.reverse(steps);
+        return new MigrationPlan(tableName, oldVersion, newVersion, steps, cost, System.nanoTime() - start);
+    }
+
+    // 区间[from, to)是否被升级脚本覆盖；包含其他脚本的合并脚本只是捷径，不参与判断
+    private boolean isCovered(int from, int to) {
+        for (Script script : scripts) {
+            if (script.minimal && script.from <= from && script.to >= to) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 更新到达节点的最小代价
+    private static void relax(long[] dist, int[] prevNode, Script[] prevScript, int from, int to, Script script, long cost) {
+        if (to >= 0 && cost < dist[to]) {
+            dist[to] = cost;
+            prevNode[to] = from;
+            prevScript[to] = script;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "MigrationPlanner{table=%s, scripts=%s, create=%s}", tableName, scripts, createFileName != null);
+    }
+
+    /**
+     * 升级脚本
+     */
+    private static class Script implements Comparable<Script> {
+        private final int from;
+        private final int to;
+        private final String fileName;
+        private boolean minimal = true;
+
+        Script(int from, int to, String fileName) {
+            this.from = from;
+            this.to = to;
+            this.fileName = fileName;
+        }
+
+        @Override
+        public int compareTo(Script o) {
+            return from != o.from ? (from < o.from ? -1 : 1) : (to < o.to ? -1 : (to == o.to ? 0 : 1));
+        }
+
+        @Override
+        public String toString() {
+            return from + "->" + to;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package cn.faury.android.library.common.sqlite.script;
+
+import android.database.SQLException;
+
+/**
+ * SQL脚本执行异常，包含出错语句所在行号
+ */
+
+public class SqlScriptException extends SQLException {
+
+    /**
+     * 脚本名
+     */
+    private final String scriptName;
+
+    /**
+     * 出错语句起始行号，从1开始
+     */
+    private final int line;
+
+    /**
+     * 出错语句
+     */
+    private final String sql;
+
+    /**
+     * 构造函数
+     *
+     * @param scriptName 脚本名
+     * @param line       出错语句起始行号
+     * @param sql        出错语句
+     * @param message    错误信息
+     * @param cause      原始异常
+     */
+    public SqlScriptException(String scriptName, int line, String sql, String message, Throwable cause) {
+        // SQLException(String, Throwable)在API 16才加入
+        super(scriptName + ":" + line + ": " + message);
+        if (cause != null) {
+            initCause(cause);
+        }
+        this.scriptName = scriptName;
+        this.line = line;
+        this.sql = sql;
+    }
+
+    public String getScriptName() {
+        return scriptName;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+}
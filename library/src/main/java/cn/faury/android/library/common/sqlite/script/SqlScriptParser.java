@@ -0,0 +1,274 @@
+package cn.faury.android.library.common.sqlite.script;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Locale;
+
+/**
+ * 流式SQL脚本解析器，逐条返回语句
+ * <p>
+ * 支持单行注释（--）、多行注释（/* *&#47;）、引号内的分号和换行，
+ * 以及CREATE TRIGGER中BEGIN...END、CASE...END块内的分号
+ */
+
+public class SqlScriptParser {
+
+    /**
+     * 读取缓冲大小
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+
+    private final String scriptName;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    private int position = 0;
+
+    private int limit = 0;
+
+    /**
+     * 当前行号
+     */
+    private int line = 1;
+
+    /**
+     * 构造函数
+     *
+     * @param reader     脚本输入流
+     * @param scriptName 脚本名，用于错误信息
+     */
+    public SqlScriptParser(Reader reader, String scriptName) {
+        this.reader = reader;
+        this.scriptName = scriptName;
+    }
+
+    /**
+     * 读取下一条语句，语句中的注释已去除，不包含结尾分号
+     *
+     * @return 语句，没有更多语句时返回null
+     * @throws IOException 读取异常
+     */
+    public Statement next() throws IOException {
+        StringBuilder sql = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        StatementState state = new StatementState();
+        int startLine = -1;
+        while (true) {
+            int c = read();
+            if (c != -1 && isWordChar((char) c)) {
+                if (startLine < 0) {
+                    startLine = line;
+                }
+                word.append((char) c);
+                sql.append((char) c);
+                continue;
+            }
+            if (word.length() > 0) {
+                state.onWord(word.toString());
+                word.setLength(0);
+            }
+            if (c == -1) {
+                return startLine < 0 ? null : new Statement(sql.toString().trim(), startLine, state.keyword);
+            }
+            switch (c) {
+                case '\n':
+                    line++;
+                    sql.append('\n');
+                    break;
+                case '-':
+                    if (peek() == '-') {
+                        skipLineComment();
+                        sql.append('\n');
+                    } else {
+                        startLine = startLine < 0 ? line : startLine;
+                        sql.append('-');
+                    }
+                    break;
+                case '/':
+                    if (peek() == '*') {
+                        skipBlockComment();
+                        sql.append(' ');
+                    } else {
+                        startLine = startLine < 0 ? line : startLine;
+                        sql.append('/');
+                    }
+                    break;
+                case '\'':
+                case '"':
+                case '`':
+                    startLine = startLine < 0 ? line : startLine;
+                    copyQuoted(sql, (char) c, (char) c, startLine);
+                    break;
+                case '[':
+                    startLine = startLine < 0 ? line : startLine;
+                    copyQuoted(sql, '[', ']', startLine);
+                    break;
+                case ';':
+                    if (state.blockDepth > 0) {
+                        sql.append(';');
+                    } else if (startLine >= 0) {
+                        return new Statement(sql.toString().trim(), startLine, state.keyword);
+                    }
+                    break;
+                default:
+                    if (!Character.isWhitespace(c)) {
+                        startLine = startLine < 0 ? line : startLine;
+                    }
+                    sql.append((char) c);
+                    break;
+            }
+        }
+    }
+
+    // 是否标识符字符
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c > 127;
+    }
+
+    // 跳过单行注释，保留换行
+    private void skipLineComment() throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '\n') {
+                line++;
+                return;
+            }
+        }
+    }
+
+    // 跳过多行注释
+    private void skipBlockComment() throws IOException {
+        int commentLine = line;
+        read();// '*'
+        int previous = 0;
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '\n') {
+                line++;
+            } else if (c == '/' && previous == '*') {
+                return;
+            }
+            previous = c;
+        }
+        throw new SqlScriptException(scriptName, commentLine, null, "unterminated comment", null);
+    }
+
+    // 复制引号内容，两个连续结束引号表示转义
+    private void copyQuoted(StringBuilder sql, char open, char close, int startLine) throws IOException {
+        int quoteLine = line;
+        sql.append(open);
+        int c;
+        while ((c = read()) != -1) {
+            sql.append((char) c);
+            if (c == '\n') {
+                line++;
+            } else if (c == close) {
+                if (open == close && peek() == close) {
+                    sql.append((char) read());
+                } else {
+                    return;
+                }
+            }
+        }
+        throw new SqlScriptException(scriptName, quoteLine, null, "unterminated quote " + open + " in statement starting at line " + startLine, null);
+    }
+
+    private int read() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int count = reader.read(buffer, 0, buffer.length);
+        if (count <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = count;
+        return true;
+    }
+
+    /**
+     * 语句状态，识别触发器中的BEGIN...END块
+     */
+    private static class StatementState {
+        private int wordIndex = 0;
+        private String keyword = null;
+        private boolean temporary = false;
+        private boolean trigger = false;
+        private int blockDepth = 0;
+
+        void onWord(String word) {
+            String upper = word.toUpperCase(Locale.US);
+            if (wordIndex == 0) {
+                keyword = upper;
+            } else if ("CREATE".equals(keyword) && !trigger && (wordIndex == 1 || (wordIndex == 2 && temporary))) {
+                if ("TEMP".equals(upper) || "TEMPORARY".equals(upper)) {
+                    temporary = true;
+                } else if ("TRIGGER".equals(upper)) {
+                    trigger = true;
+                }
+            } else if (trigger) {
+                if ("BEGIN".equals(upper) || "CASE".equals(upper)) {
+                    blockDepth++;
+                } else if ("END".equals(upper) && blockDepth > 0) {
+                    blockDepth--;
+                }
+            }
+            wordIndex++;
+        }
+    }
+
+    /**
+     * 脚本中的一条语句
+     */
+    public static class Statement {
+        private final String sql;
+        private final int line;
+        private final String keyword;
+
+        Statement(String sql, int line, String keyword) {
+            this.sql = sql;
+            this.line = line;
+            this.keyword = keyword;
+        }
+
+        /**
+         * 语句内容
+         *
+         * @return 语句
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * 语句起始行号，从1开始
+         *
+         * @return 行号
+         */
+        public int getLine() {
+            return line;
+        }
+
+        /**
+         * 语句首个关键字，大写
+         *
+         * @return 关键字，语句不以关键字开头时为null
+         */
+        public String getKeyword() {
+            return keyword;
+        }
+    }
+}
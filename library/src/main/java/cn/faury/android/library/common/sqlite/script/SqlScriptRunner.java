@@ -0,0 +1,244 @@
+package cn.faury.android.library.common.sqlite.script;
+
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import cn.faury.android.library.common.helper.Logger;
+import cn.faury.android.library.common.sqlite.dao.StatementCache;
+
+/**
+ * SQL脚本执行器
+ * <p>
+ * 流式读取脚本并在一个事务中逐条执行；单行INSERT/REPLACE语句中的字面量转为绑定参数，
+ * 相同结构的插入语句只编译一次，多行VALUES或参数过多的语句直接执行。任一语句失败时整个脚本回滚并抛出带行号的{@link SqlScriptException}
+ */
+
+public class SqlScriptRunner {
+    /**
+     * 日志标签
+     */
+    private static final String TAG = SqlScriptRunner.class.getName();
+
+    /**
+     * 插入语句缓存大小
+     */
+    private static final int STATEMENT_CACHE_SIZE = 16;
+
+    /**
+     * 单条语句最多绑定的参数数，不超过SQLite默认的SQLITE_MAX_VARIABLE_NUMBER（999）
+     */
+    private static final int MAX_BIND_ARGS = 999;
+
+    private final SQLiteDatabase db;
+
+    /**
+     * 构造函数
+     *
+     * @param db 数据库
+     */
+    public SqlScriptRunner(SQLiteDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * 执行脚本
+     *
+     * @param reader     脚本输入流，由调用方关闭
+     * @param scriptName 脚本名，用于错误信息
+     * @return 执行的语句数
+     * @throws IOException        读取异常
+     * @throws SqlScriptException 解析或执行异常
+     */
+    public int run(Reader reader, String scriptName) throws IOException {
+        SqlScriptParser parser = new SqlScriptParser(reader, scriptName);
+        StatementCache cache = new StatementCache(STATEMENT_CACHE_SIZE);
+        List<Object> args = new ArrayList<>();
+        int count = 0;
+        db.beginTransaction();
+        try {
+            SqlScriptParser.Statement statement;
+            while ((statement = parser.next()) != null) {
+                String keyword = statement.getKeyword();
+                if ("BEGIN".equals(keyword) || "COMMIT".equals(keyword) || "END".equals(keyword)) {
+                    Logger.v(TAG, scriptName + ":" + statement.getLine() + ": skip transaction statement, script runs in its own transaction");
+                    continue;
+                }
+                try {
+                    if ("INSERT".equals(keyword) || "REPLACE".equals(keyword)) {
+                        args.clear();
+                        String template = parameterize(statement.getSql(), args);
+                        if (template == null || args.isEmpty()) {
+                            db.execSQL(statement.getSql());
+                        } else {
+                            executeInsert(cache, template, args);
+                        }
+                    } else {
+                        db.execSQL(statement.getSql());
+                    }
+                } catch (SQLException e) {
+                    throw new SqlScriptException(scriptName, statement.getLine(), statement.getSql(), e.getMessage(), e);
+                }
+                count++;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            cache.clear();
+        }
+        return count;
+    }
+
+    // 通过缓存的预编译语句执行插入
+    private void executeInsert(StatementCache cache, String template, List<Object> args) {
+        SQLiteStatement statement = cache.acquire(db, template);
+        try {
+            for (int i = 0; i < args.size(); i++) {
+                Object arg = args.get(i);
+                if (arg instanceof Long) {
+                    statement.bindLong(i + 1, (Long) arg);
+                } else if (arg instanceof Double) {
+                    statement.bindDouble(i + 1, (Double) arg);
+                } else {
+                    statement.bindString(i + 1, (String) arg);
+                }
+            }
+            statement.executeInsert();
+        } finally {
+            cache.release(db, template, statement);
+        }
+    }
+
+    /**
+     * 将VALUES之后的字符串和数字字面量替换为?，值依次放入args
+     * <p>
+     * 多行VALUES的语句结构各不相同，编译后的模板无法复用，且参数数可能超过SQLite上限，不做参数化
+     *
+     * @param sql  插入语句
+     * @param args 参数值
+     * @return 参数化的语句，多行VALUES或参数超过{@link #MAX_BIND_ARGS}时返回null
+     */
+    static String parameterize(String sql, List<Object> args) {
+        StringBuilder template = new StringBuilder(sql.length());
+        boolean values = false;
+        int depth = 0;
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`' || c == '[') {
+                char close = c == '[' ? ']' : c;
+                StringBuilder literal = new StringBuilder();
+                int j = i + 1;
+                while (j < length) {
+                    char q = sql.charAt(j);
+                    if (q == close) {
+                        if (close != ']' && j + 1 < length && sql.charAt(j + 1) == close) {
+                            literal.append(q);
+                            j += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    literal.append(q);
+                    j++;
+                }
+                boolean blob = i > 0 && (sql.charAt(i - 1) == 'x' || sql.charAt(i - 1) == 'X')
+                        && (i == 1 || !isWordChar(sql.charAt(i - 2)));
+                if (values && c == '\'' && !blob) {
+                    template.append('?');
+                    args.add(literal.toString());
+                } else {
+                    template.append(sql, i, Math.min(j + 1, length));
+                }
+                i = j + 1;
+            } else if (isWordChar(c) && !Character.isDigit(c)) {
+                int j = i;
+                while (j < length && isWordChar(sql.charAt(j))) {
+                    j++;
+                }
+                String word = sql.substring(i, j);
+                if ("VALUES".equals(word.toUpperCase(Locale.US))) {
+                    values = true;
+                }
+                template.append(word);
+                i = j;
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < length && Character.isDigit(sql.charAt(i + 1)))) {
+                int j = scanNumber(sql, i);
+                Object number = values && (j >= length || !isWordChar(sql.charAt(j))) ? parseNumber(sql.substring(i, j)) : null;
+                if (number != null) {
+                    template.append('?');
+                    args.add(number);
+                } else {
+                    while (j < length && isWordChar(sql.charAt(j))) {
+                        j++;
+                    }
+                    template.append(sql, i, j);
+                }
+                i = j;
+            } else {
+                if (values) {
+                    if (c == '(') {
+                        depth++;
+                    } else if (c == ')') {
+                        depth--;
+                    } else if (c == ',' && depth == 0) {
+                        // VALUES之后括号外的逗号：多行插入
+                        return null;
+                    }
+                }
+                template.append(c);
+                i++;
+            }
+            if (args.size() > MAX_BIND_ARGS) {
+                return null;
+            }
+        }
+        return template.toString();
+    }
+
+    // 扫描数字字面量结束位置
+    private static int scanNumber(String sql, int start) {
+        int length = sql.length();
+        int j = start;
+        while (j < length && (Character.isDigit(sql.charAt(j)) || sql.charAt(j) == '.')) {
+            j++;
+        }
+        if (j < length && (sql.charAt(j) == 'e' || sql.charAt(j) == 'E')) {
+            int k = j + 1;
+            if (k < length && (sql.charAt(k) == '+' || sql.charAt(k) == '-')) {
+                k++;
+            }
+            if (k < length && Character.isDigit(sql.charAt(k))) {
+                j = k;
+                while (j < length && Character.isDigit(sql.charAt(j))) {
+                    j++;
+                }
+            }
+        }
+        return j;
+    }
+
+    // 解析数字，无法无损表示时返回null保留原文
+    private static Object parseNumber(String number) {
+        try {
+            if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+                return Long.parseLong(number);
+            }
+            return Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // 是否标识符字符
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c > 127;
+    }
+}
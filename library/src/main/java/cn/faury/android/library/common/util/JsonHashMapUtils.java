@@ -1,6 +1,23 @@
 package cn.faury.android.library.common.util;
 
+import android.annotation.TargetApi;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 /**
  * 数据格式转化类
@@ -22,27 +39,419 @@ public class JsonHashMapUtils extends HashMap<String, Object> {
 
     private float DEFAULT_FLOAT_VALUE = 0.0f;
 
+    /**
+     * 是否只读，多个使用方共享同一个解析结果时设置
+     */
+    private transient boolean readOnly = false;
+
+    /**
+     * 设置为只读，嵌套的JsonHashMapUtils同时设置为只读，嵌套的数组替换为只读的ArrayList；
+     * 之后通过任何方式修改（包括keySet、values、entrySet视图及其迭代器）都将抛出UnsupportedOperationException
+     *
+     * @return 当前对象
+     */
+    public JsonHashMapUtils setReadOnly() {
+        if (!readOnly) {
+            for (Map.Entry<String, Object> entry : super.entrySet()) {
+                Object value = entry.getValue();
+                Object frozen = freeze(value);
+                if (frozen != value) {
+                    entry.setValue(frozen);
+                }
+            }
+            readOnly = true;
+        }
+        return this;
+    }
 
-    public int getInt(Object key) {
+    // 递归设置嵌套对象只读，返回只读的对象
+    private static Object freeze(Object value) {
+        if (value instanceof JsonHashMapUtils) {
+            return ((JsonHashMapUtils) value).setReadOnly();
+        } else if (value instanceof ReadOnlyList) {
+            return value;
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            List<Object> elements = new ArrayList<>(list.size());
+            for (Object element : list) {
+                elements.add(freeze(element));
+            }
+            return new ReadOnlyList(elements);
+        } else if (value instanceof Iterable) {
+            for (Object element : (Iterable<?>) value) {
+                freeze(element);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 是否只读
+     *
+     * @return 是否只读
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        checkWritable();
+        return super.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> m) {
+        checkWritable();
+        super.putAll(m);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        checkWritable();
+        return super.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        checkWritable();
+        super.clear();
+    }
+
+    // 以下为API 24起Map新增的修改方法，低版本系统不存在这些方法，也就无需拦截
+
+    @TargetApi(24)
+    @Override
+    public Object putIfAbsent(String key, Object value) {
+        checkWritable();
+        return super.putIfAbsent(key, value);
+    }
+
+    @TargetApi(24)
+    @Override
+    public boolean remove(Object key, Object value) {
+        checkWritable();
+        return super.remove(key, value);
+    }
+
+    @TargetApi(24)
+    @Override
+    public boolean replace(String key, Object oldValue, Object newValue) {
+        checkWritable();
+        return super.replace(key, oldValue, newValue);
+    }
+
+    @TargetApi(24)
+    @Override
+    public Object replace(String key, Object value) {
+        checkWritable();
+        return super.replace(key, value);
+    }
+
+    @TargetApi(24)
+    @Override
+    public void replaceAll(BiFunction<? super String, ? super Object, ?> function) {
+        checkWritable();
+        super.replaceAll(function);
+    }
+
+    @TargetApi(24)
+    @Override
+    public Object computeIfAbsent(String key, Function<? super String, ?> mappingFunction) {
+        checkWritable();
+        return super.computeIfAbsent(key, mappingFunction);
+    }
+
+    @TargetApi(24)
+    @Override
+    public Object computeIfPresent(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+        checkWritable();
+        return super.computeIfPresent(key, remappingFunction);
+    }
+
+    @TargetApi(24)
+    @Override
+    public Object compute(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+        checkWritable();
+        return super.compute(key, remappingFunction);
+    }
+
+    @TargetApi(24)
+    @Override
+    public Object merge(String key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        checkWritable();
+        return super.merge(key, value, remappingFunction);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return readOnly ? Collections.unmodifiableSet(super.keySet()) : super.keySet();
+    }
+
+    @Override
+    public Collection<Object> values() {
+        return readOnly ? Collections.unmodifiableCollection(super.values()) : super.values();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return readOnly ? new ReadOnlyEntrySet(super.entrySet()) : super.entrySet();
+    }
+
+    // 只读时禁止修改
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("JsonHashMapUtils is read-only");
+        }
+    }
+
+    /**
+     * 只读的键值对集合，元素不支持setValue
+     */
+    private static class ReadOnlyEntrySet extends AbstractSet<Map.Entry<String, Object>> {
+        private final Set<Map.Entry<String, Object>> delegate;
+
+        ReadOnlyEntrySet(Set<Map.Entry<String, Object>> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            final Iterator<Map.Entry<String, Object>> iterator = delegate.iterator();
+            return new Iterator<Map.Entry<String, Object>>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Map.Entry<String, Object> next() {
+                    return new AbstractMap.SimpleImmutableEntry<>(iterator.next());
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("JsonHashMapUtils is read-only");
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return delegate.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return delegate.contains(o);
+        }
+    }
+
+    /**
+     * 只读数组，仍为ArrayList以兼容按ArrayList判断类型的代码，所有修改操作抛出UnsupportedOperationException
+     */
+    private static class ReadOnlyList extends ArrayList<Object> {
+
+        private static final long serialVersionUID = 1L;
+
+        ReadOnlyList(Collection<?> elements) {
+            super(elements);
+        }
+
+        @Override
+        public boolean add(Object o) {
+            throw readOnlyException();
+        }
+
+        @Override
+        public void add(int index, Object element) {
+            throw readOnlyException();
+        }
+
+        @Override
+        public boolean addAll(Collection<?> c) {
+            throw readOnlyException();
+        }
+
+        @Override
+        public boolean addAll(int index, Collection<?> c) {
+            throw readOnlyException();
+        }
+
+        @Override
+        public Object set(int index, Object element) {
+            throw readOnlyException();
+        }
+
+        @Override
+        public Object remove(int index) {
+            throw readOnlyException();
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            throw readOnlyException();
+        }
 
+        @Override
+        public boolean removeAll(Collection<?> c) {
+            throw readOnlyException();
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> c) {
+            throw readOnlyException();
+        }
+
+        @Override
+        public void clear() {
+            throw readOnlyException();
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            throw readOnlyException();
+        }
+
+        // API 24起新增的修改方法
+
+        @TargetApi(24)
+        @Override
+        public boolean removeIf(Predicate<? super Object> filter) {
+            throw readOnlyException();
+        }
+
+        @TargetApi(24)
+        @Override
+        public void replaceAll(UnaryOperator<Object> operator) {
+            throw readOnlyException();
+        }
+
+        @TargetApi(24)
+        @Override
+        public void sort(Comparator<? super Object> c) {
+            throw readOnlyException();
+        }
+
+        // 迭代器及子列表不经过上面的方法修改数据，统一通过只读视图访问
+        @Override
+        public Iterator<Object> iterator() {
+            return listIterator(0);
+        }
+
+        @Override
+        public ListIterator<Object> listIterator() {
+            return listIterator(0);
+        }
+
+        @Override
+        public ListIterator<Object> listIterator(int index) {
+            final ListIterator<Object> iterator = super.listIterator(index);
+            return new ListIterator<Object>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Object next() {
+                    return iterator.next();
+                }
+
+                @Override
+                public boolean hasPrevious() {
+                    return iterator.hasPrevious();
+                }
+
+                @Override
+                public Object previous() {
+                    return iterator.previous();
+                }
+
+                @Override
+                public int nextIndex() {
+                    return iterator.nextIndex();
+                }
+
+                @Override
+                public int previousIndex() {
+                    return iterator.previousIndex();
+                }
+
+                @Override
+                public void remove() {
+                    throw readOnlyException();
+                }
+
+                @Override
+                public void set(Object o) {
+                    throw readOnlyException();
+                }
+
+                @Override
+                public void add(Object o) {
+                    throw readOnlyException();
+                }
+            };
+        }
+
+        @Override
+        public List<Object> subList(int fromIndex, int toIndex) {
+            return Collections.unmodifiableList(super.subList(fromIndex, toIndex));
+        }
+
+        private static UnsupportedOperationException readOnlyException() {
+            return new UnsupportedOperationException("JsonHashMapUtils is read-only");
+        }
+    }
+
+
+    /**
+     * 获取整数值，数值类型直接转换，字符串按十进制解析
+     *
+     * @param key 键
+     * @return 值，不存在、无法转换、有小数部分或超出范围时返回0
+     */
+    public int getInt(Object key) {
         return getInt(key, DEFAULTINTVALUE);
     }
 
     public int getInt(Object key, int defaultValue) {
-
-        int value = 0;
-        if (super.containsKey(key)) {
-            try {
-                value = Integer.parseInt(super.get(key).toString().trim());
-            } catch (Exception e) {
-                e.printStackTrace();
-                value = defaultValue;
-            }
-        } else {
-            value = defaultValue;
+        Object value = super.get(key);
+        if (value instanceof Integer) {
+            return (Integer) value;
+        }
+        if (value instanceof Number) {
+            return (int) toLong((Number) value, Integer.MIN_VALUE, Integer.MAX_VALUE, defaultValue);
         }
+        if (value instanceof String) {
+            return (int) parseLong((String) value, Integer.MIN_VALUE, Integer.MAX_VALUE, defaultValue);
+        }
+        return defaultValue;
+    }
 
-        return value;
+    /**
+     * 获取长整数值，数值类型直接转换，字符串按十进制解析
+     *
+     * @param key 键
+     * @return 值，不存在、无法转换、有小数部分或超出范围时返回0
+     */
+    public long getLong(Object key) {
+        return getLong(key, DEFAULTINTVALUE);
+    }
+
+    public long getLong(Object key, long defaultValue) {
+        Object value = super.get(key);
+        if (value instanceof Long || value instanceof Integer) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Number) {
+            return toLong((Number) value, Long.MIN_VALUE, Long.MAX_VALUE, defaultValue);
+        }
+        if (value instanceof String) {
+            return parseLong((String) value, Long.MIN_VALUE, Long.MAX_VALUE, defaultValue);
+        }
+        return defaultValue;
     }
 
     public String getString(Object key) {
@@ -51,74 +460,187 @@ public class JsonHashMapUtils extends HashMap<String, Object> {
     }
 
     public String getString(Object key, String defaultValue) {
-
-        String value = "";
-        if (super.containsKey(key)) {
-            try {
-                value = super.get(key).toString();
-            } catch (Exception e) {
-                e.printStackTrace();
-                value = defaultValue;
-            }
-            if (NULL.equals(value) || ERROR_STRING.equals(value) || "".equals(value)) {
-                value = defaultValue;
-            }
-        } else {
-            value = defaultValue;
+        Object value = super.get(key);
+        if (value == null) {
+            return defaultValue;
         }
-        return value;
+        String text = value.toString();
+        if (NULL.equals(text) || ERROR_STRING.equals(text) || "".equals(text)) {
+            return defaultValue;
+        }
+        return text;
     }
 
+    /**
+     * 获取布尔值，字符串忽略大小写及首尾空白与"true"比较
+     *
+     * @param key 键
+     * @return 值，不存在时返回false
+     */
     public boolean getBoolean(Object key) {
-
         return getBoolean(key, DEFAULTBOOLEANVALUE);
     }
 
     public boolean getBoolean(Object key, boolean defaultValue) {
-
-        boolean value = false;
-        if (super.containsKey(key)) {
-            try {
-                value = Boolean.parseBoolean(super.get(key).toString().trim());
-            } catch (Exception e) {
-                e.printStackTrace();
-                value = defaultValue;
-            }
-
-        } else {
-            value = defaultValue;
+        Object value = super.get(key);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
         }
-        return value;
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof String) {
+            String text = (String) value;
+            int start = trimStart(text);
+            int end = trimEnd(text, start);
+            return end - start == 4 && text.regionMatches(true, start, "true", 0, 4);
+        }
+        return false;
     }
 
     public float getFloat(Object key) {
-
         return getFloat(key, DEFAULT_FLOAT_VALUE);
     }
 
     public float getFloat(Object key, float defaultValue) {
+        Object value = super.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).floatValue();
+        }
+        if (value instanceof String) {
+            try {
+                // parseFloat自行忽略首尾空白
+                return Float.parseFloat((String) value);
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 获取双精度浮点值
+     *
+     * @param key 键
+     * @return 值，不存在或无法转换时返回0
+     */
+    public double getDouble(Object key) {
+        return getDouble(key, DEFAULT_FLOAT_VALUE);
+    }
 
-        float value;
-        if (super.containsKey(key)) {
+    public double getDouble(Object key, double defaultValue) {
+        Object value = super.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof String) {
             try {
-                value = Float.parseFloat(super.get(key).toString().trim());
-            } catch (Exception e) {
-                value = defaultValue;
-                e.printStackTrace();
+                return Double.parseDouble((String) value);
+            } catch (NumberFormatException e) {
+                return defaultValue;
             }
-        } else {
-            value = defaultValue;
         }
-        return value;
+        return defaultValue;
+    }
+
+    /**
+     * 获取嵌套对象
+     *
+     * @param key 键
+     * @return 值，不存在或不是对象时返回null
+     */
+    public JsonHashMapUtils getMap(Object key) {
+        return getMap(key, null);
+    }
+
+    public JsonHashMapUtils getMap(Object key, JsonHashMapUtils defaultValue) {
+        Object value = super.get(key);
+        return value instanceof JsonHashMapUtils ? (JsonHashMapUtils) value : defaultValue;
+    }
+
+    /**
+     * 获取数组，元素为JsonHashMapUtils、List、String、Number、Boolean或null
+     *
+     * @param key 键
+     * @return 值，不存在或不是数组时返回null
+     */
+    public List<Object> getList(Object key) {
+        return getList(key, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<Object> getList(Object key, List<Object> defaultValue) {
+        Object value = super.get(key);
+        return value instanceof List ? (List<Object>) value : defaultValue;
     }
 
     @Override
     public Object get(Object key) {
-
-        if (!this.containsKey(key)) {
+        Object value = super.get(key);
+        if (value == null && !super.containsKey(key)) {
             return NULL;
         }
-        return super.get(key);
+        return value;
+    }
+
+    // 数值转换为整数，有小数部分或超出范围时返回默认值
+    private static long toLong(Number number, long min, long max, long defaultValue) {
+        if (number instanceof Long || number instanceof Short || number instanceof Byte) {
+            long value = number.longValue();
+            return value >= min && value <= max ? value : defaultValue;
+        }
+        double value = number.doubleValue();
+        return value >= min && value <= max && value == Math.rint(value) ? (long) value : defaultValue;
+    }
+
+    // 解析十进制整数，忽略首尾空白，与Long.parseLong规则一致，失败时返回默认值
+    private static long parseLong(String text, long min, long max, long defaultValue) {
+        int start = trimStart(text);
+        int end = trimEnd(text, start);
+        if (start == end) {
+            return defaultValue;
+        }
+        boolean negative = false;
+        char first = text.charAt(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++start == end) {
+                return defaultValue;
+            }
+        }
+        // 以负数累加，避免最小值溢出
+        long limit = negative ? min : -max;
+        long multiplyMin = limit / 10;
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(text.charAt(i), 10);
+            if (digit < 0 || result < multiplyMin) {
+                return defaultValue;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return defaultValue;
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    // 与String.trim一致的首尾空白位置
+    private static int trimStart(String text) {
+        int start = 0;
+        while (start < text.length() && text.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(String text, int start) {
+        int end = text.length();
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
     }
 
 }
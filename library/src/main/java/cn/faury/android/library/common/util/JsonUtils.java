@@ -1,9 +1,15 @@
 package cn.faury.android.library.common.util;
 
+import android.util.JsonReader;
+import android.util.JsonToken;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Map.Entry;
@@ -70,6 +76,147 @@ public class JsonUtils {
         return list;
     }
 
+    /**
+     * 以流的方式将json数据转成JsonHashMapUtils&lt;String, Object&gt;对象，
+     * 不生成中间字符串和JSONObject，顶层为数组时放在fakelist键下
+     *
+     * @param reader json输入流
+     * @return JsonHashMapUtils对象
+     * @throws IOException 读取或解析异常
+     */
+    public static JsonHashMapUtils fromJson(Reader reader) throws IOException {
+        return fromJson(reader, null, null);
+    }
+
+    /**
+     * 以流的方式将json数据转成JsonHashMapUtils&lt;String, Object&gt;对象，
+     * 指定数组的元素逐个回调给监听器，不保存在返回结果中
+     *
+     * @param reader    json输入流
+     * @param arrayKey  逐个回调的数组所在的顶层键，null表示顶层数组
+     * @param listener  数组元素监听器，null表示不回调
+     * @return JsonHashMapUtils对象，不包含回调过的数组
+     * @throws IOException 读取或解析异常
+     */
+    public static JsonHashMapUtils fromJson(Reader reader, String arrayKey, OnArrayElementListener listener) throws IOException {
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.setLenient(true);
+        try {
+            JsonHashMapUtils map = new JsonHashMapUtils();
+            JsonToken token;
+            try {
+                token = jsonReader.peek();
+            } catch (EOFException e) {// 空内容
+                return map;
+            }
+            if (token == JsonToken.BEGIN_ARRAY) {
+                if (arrayKey == null && listener != null) {
+                    readArray(jsonReader, listener);
+                } else {
+                    map.put("fakelist", readArray(jsonReader, null));
+                }
+            } else if (token == JsonToken.BEGIN_OBJECT) {
+                jsonReader.beginObject();
+                while (jsonReader.hasNext()) {
+                    String key = jsonReader.nextName();
+                    if (listener != null && key.equals(arrayKey) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                        readArray(jsonReader, listener);
+                    } else {
+                        Object value = readValue(jsonReader);
+                        if (value != null) {
+                            map.put(key, value);
+                        }
+                    }
+                }
+                jsonReader.endObject();
+            } else {
+                throw new IOException("illegal json token:" + token);
+            }
+            return map;
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("json parse exception:" + e.getMessage(), e);
+        } finally {
+            jsonReader.close();
+        }
+    }
+
+    private static Object readValue(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                JsonHashMapUtils map = new JsonHashMapUtils();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String key = reader.nextName();
+                    Object value = readValue(reader);
+                    if (value != null) {
+                        map.put(key, value);
+                    }
+                }
+                reader.endObject();
+                return map;
+            case BEGIN_ARRAY:
+                return readArray(reader, null);
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                return parseNumber(reader.nextString());
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return null;
+            default:
+                throw new IOException("illegal json token:" + reader.peek());
+        }
+    }
+
+    // 读取数组，listener不为空时逐个回调元素并返回null
+    private static ArrayList<Object> readArray(JsonReader reader, OnArrayElementListener listener) throws IOException {
+        ArrayList<Object> list = listener == null ? new ArrayList<>() : null;
+        int index = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Object value = readValue(reader);
+            if (listener != null) {
+                listener.onElement(index, value);
+            } else {
+                list.add(value);
+            }
+            index++;
+        }
+        reader.endArray();
+        return list;
+    }
+
+    // 与org.json保持一致：整数优先Integer，其次Long，否则Double
+    private static Object parseNumber(String number) {
+        if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+            try {
+                long value = Long.parseLong(number);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return (int) value;
+                }
+                return value;
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return Double.parseDouble(number);
+    }
+
+    /**
+     * 数组元素监听器
+     */
+    public interface OnArrayElementListener {
+        /**
+         * 解析出一个数组元素
+         *
+         * @param index   元素下标
+         * @param element 元素：JsonHashMapUtils、ArrayList、String、Number、Boolean或null
+         * @throws IOException 处理异常，将中止解析
+         */
+        void onElement(int index, Object element) throws IOException;
+    }
+
     /**
      * 将指定的 JsonHashMapUtils&lt;String, Object&gt;对象转成json数据
      *
@@ -395,7 +395,7 @@ public class UrlUtils {
         // if this time use the follow codes to check will throws java.lang.IllegalArgumentException: Invalid XXX
         // sequence by URLDecoder.decode
 
-        Logger.v(TAG, "isEncoded，check content：" + content);
+        Logger.v(TAG, "isEncoded，check content：%s", content);
 
         for (EncodeInfo info : SPECIAL_CHARACTER_ENCODER_MAP) {
             if (info == null) {
@@ -432,8 +432,7 @@ public class UrlUtils {
 
     public static String getEncodedUrl(String url, String charset, boolean useFragment, boolean blankAsPlus) {
 
-        Logger.v(TAG, "getEncodedUrl，--------------------");
-        Logger.v(TAG, "getEncodedUrl，准备编码URL，url：" + url);
+        Logger.v(TAG, "getEncodedUrl，准备编码URL，url：%s", url);
 
         if (StringUtils.isEmpty(url)) {
             return null;
@@ -444,15 +443,11 @@ public class UrlUtils {
             // encoded url
             URL unEncodeUrl = new URL(url.trim());
 
-            Logger.v(TAG, "getEncodedUrl，开始编码URL，unEncodeUrl：" + unEncodeUrl);
-            Logger.v(TAG, "getEncodedUrl，开始编码URL，getProtocol：" + unEncodeUrl.getProtocol());
-            Logger.v(TAG, "getEncodedUrl，开始编码URL，getHost：" + unEncodeUrl.getHost());
-            Logger.v(TAG, "getEncodedUrl，开始编码URL，getUserInfo：" + unEncodeUrl.getUserInfo());
-            Logger.v(TAG, "getEncodedUrl，开始编码URL，getPort：" + unEncodeUrl.getPort());
-            Logger.v(TAG, "getEncodedUrl，开始编码URL，getFile：" + unEncodeUrl.getFile());
-            Logger.v(TAG, "getEncodedUrl，开始编码URL，getPath：" + unEncodeUrl.getPath());
-            Logger.v(TAG, "getEncodedUrl，开始编码URL，getQuery：" + unEncodeUrl.getQuery());
-            Logger.v(TAG, "getEncodedUrl，开始编码URL，getRef：" + unEncodeUrl.getRef());
+            if (Logger.isLoggable(Logger.LEVEL.VERBOSE)) {
+                Logger.v(TAG, "getEncodedUrl，开始编码URL，unEncodeUrl：%s,protocol=%s,host=%s,userInfo=%s,port=%d,path=%s,query=%s,ref=%s",
+                        unEncodeUrl, unEncodeUrl.getProtocol(), unEncodeUrl.getHost(), unEncodeUrl.getUserInfo(), unEncodeUrl.getPort(),
+                        unEncodeUrl.getPath(), unEncodeUrl.getQuery(), unEncodeUrl.getRef());
+            }
 
             //  protocol  ://  host  @  userInfo  :  port  /  path  ?  query  #  ref
             //|-protocol-|    |-------host------|  |-port-|   |--------file--------|
@@ -492,7 +487,7 @@ public class UrlUtils {
             encodedUrl = encodedUrl.replaceAll(FRAGMENT_SPLIT.needEncode, FRAGMENT_SPLIT.encoded);
         }
 
-        Logger.v(TAG, "getEncodedUrl，编码后URL，encodedUrl：" + encodedUrl);
+        Logger.v(TAG, "getEncodedUrl，编码后URL，encodedUrl：%s", encodedUrl);
 
         return encodedUrl;
     }
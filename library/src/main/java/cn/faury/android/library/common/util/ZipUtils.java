@@ -43,10 +43,9 @@ public class ZipUtils {
                 File folder = new File(outPathString + File.separator + szName);
                 folder.mkdirs();
             } else {
-                Logger.e(TAG, outPathString + File.separator + szName);
                 File file = new File(outPathString + File.separator + szName);
+                Logger.event(Logger.LEVEL.DEBUG, TAG, "unzip.entry", "file", file, "size", zipEntry.getSize());
                 if (!file.exists()) {
-                    Logger.e(TAG, "Create the file:" + outPathString + File.separator + szName);
                     file.getParentFile().mkdirs();
                     file.createNewFile();
                 }
@@ -85,10 +84,9 @@ public class ZipUtils {
                 File folder = new File(outPathString + File.separator + szName);
                 folder.mkdirs();
             } else {
-                Logger.e(TAG, outPathString + File.separator + szName);
                 File file = new File(outPathString + File.separator + szName);
+                Logger.event(Logger.LEVEL.DEBUG, TAG, "unzip.entry", "file", file, "size", zipEntry.getSize());
                 if (!file.exists()) {
-                    Logger.e(TAG, "Create the file:" + outPathString + File.separator + szName);
                     file.getParentFile().mkdirs();
                     file.createNewFile();
                 }